@@ -8,9 +8,12 @@ import java.io.ObjectInputStream;
 
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.SymmetricHashObserver;
 
 /**
- * Produces moves from a book extracted from strong players' games.
+ * Produces moves from a book extracted from strong players' games. The book
+ * has one entry for each position up to rotation and reflection, keyed by the
+ * canonical hash maintained by a SymmetricHashObserver.
  * 
  * @see FusekiBookBuilder
  */
@@ -19,18 +22,35 @@ public final class FusekiBook implements OpeningBook {
 	/** The fuseki book proper. */
 	private SmallHashMap book;
 
+	private final CoordinateSystem coords;
+
 	/** Don't bother looking in the book after this many moves into the game. */
 	private int maxMoves;
 
-	public FusekiBook() {
-		this("books");
+	/** Tracks the canonical hash of the board. */
+	private final SymmetricHashObserver symmetricHash;
+
+	/**
+	 * @param board
+	 *            The board on which nextMove() will be called. A
+	 *            SymmetricHashObserver is added to it, so no moves may have
+	 *            been played yet.
+	 */
+	public FusekiBook(Board board) {
+		this("books", board);
 	}
 
-	/** Gets the hashMap out of the file. */
+	/**
+	 * Gets the hashMap out of the file in directory, which is relative to the
+	 * Orego root unless it is absolute.
+	 */
 	@SuppressWarnings("boxing")
-	public FusekiBook(String directory) {
-		final File file = new File(OREGO_ROOT + directory + File.separator
-				+ "fuseki19.data");
+	public FusekiBook(String directory, Board board) {
+		coords = board.getCoordinateSystem();
+		symmetricHash = new SymmetricHashObserver(board);
+		final String path = new File(directory).isAbsolute() ? directory
+				: OREGO_ROOT + directory;
+		final File file = new File(path + File.separator + "fuseki19.data");
 		log("Started reading opening book");
 		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(
 				file))) {
@@ -45,10 +65,13 @@ public final class FusekiBook implements OpeningBook {
 
 	@Override
 	public short nextMove(Board board) {
-		final long fancyHash = board.getFancyHash();
 		if (board.getTurn() < maxMoves) {
+			final long fancyHash = symmetricHash.getCanonicalFancyHash();
 			if (book.containsKey(fancyHash)) {
-				final short move = book.get(fancyHash);
+				// The book move is stored in the canonical orientation
+				final short move = coords.transform(coords
+						.getInverseSymmetry(symmetricHash
+								.getCanonicalSymmetry()), book.get(fancyHash));
 				if (board.isLegal(move)) {
 					return move;
 				}
@@ -13,12 +13,15 @@ import java.util.List;
 
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.SymmetricHashObserver;
 import edu.lclark.orego.sgf.SgfParser;
 
 /**
  * Builds a fuseki book from a (possibly nested) directory of SGF files. First
  * processes the data to create a raw book, then processes this to create a
- * final book read in by FusekiBook.
+ * final book read in by FusekiBook. Positions are keyed by their canonical
+ * hash, so each position is stored once for all of its rotations and
+ * reflections, along with responses in the canonical orientation.
  */
 public final class FusekiBookBuilder {
 
@@ -40,14 +43,13 @@ public final class FusekiBookBuilder {
 	}
 
 	/**
-	 * Maps board fancy hashes to short arrays. These are either medium arrays
+	 * Maps canonical board hashes to short arrays. These are either medium arrays
 	 * (lists of moves played in response to that board) or long arrays (count
 	 * of how many times each move has been played in response to that board).
 	 */
 	private BigHashMap<short[]> bigMap;
 
-	/** For each rotation and reflection. */
-	private final Board[] boards;
+	private final Board board;
 
 	private final CoordinateSystem coords;
 
@@ -67,11 +69,14 @@ public final class FusekiBookBuilder {
 	private final String objectFilePath;
 
 	/**
-	 * Maps board fancy hashes to responses. Once there has been a second
+	 * Maps canonical board hashes to responses. Once there has been a second
 	 * response, bigMap is used.
 	 */
 	private final SmallHashMap smallMap;
 
+	/** Tracks the canonical hash of board. */
+	private final SymmetricHashObserver symmetricHash;
+
 	/** If true, prints messages to stdout indicating progress. */
 	private final boolean verbose;
 
@@ -85,12 +90,11 @@ public final class FusekiBookBuilder {
 		finalMap = new SmallHashMap();
 		this.maxMoves = maxMoves;
 		this.countThreshold = countThreshold;
-		boards = new Board[8];
 		coords = CoordinateSystem.forWidth(19);
-		for (int i = 0; i < boards.length; i++) {
-			boards[i] = new Board(coords.getWidth());
-		}
-		objectFilePath = OREGO_ROOT + directoryName;
+		board = new Board(coords.getWidth());
+		symmetricHash = new SymmetricHashObserver(board);
+		objectFilePath = new File(directoryName).isAbsolute() ? directoryName
+				: OREGO_ROOT + directoryName;
 		new File(objectFilePath).mkdir();
 		this.verbose = verbose;
 	}
@@ -187,34 +191,25 @@ public final class FusekiBookBuilder {
 
 	/** Processes the moves in game, updating bigMap and smallMap. */
 	private void processGame(List<Short> game) {
-		final short[] transformations = new short[8];
 		for (final short move : game) {
-			transformations[0] = move;
-			transformations[1] = rotate90(move);
-			transformations[2] = rotate90(transformations[1]);
-			transformations[3] = rotate90(transformations[2]);
-			transformations[4] = reflect(move);
-			transformations[5] = rotate90(transformations[4]);
-			transformations[6] = rotate90(transformations[5]);
-			transformations[7] = rotate90(transformations[6]);
-			for (int i = 0; i < transformations.length; i++) {
-				processMove(transformations[i], boards[i].getFancyHash());
-				boards[i].play(transformations[i]);
-			}
+			processMove(symmetricHash.getCanonicalMove(move),
+					symmetricHash.getCanonicalFancyHash());
+			board.play(move);
 		}
 	}
 
 	/** Updates smallMap and bigMap for all of the specified games. */
 	private void processGames(List<List<Short>> games) {
 		for (final List<Short> game : games) {
-			for (final Board board : boards) {
-				board.clear();
-			}
+			board.clear();
 			processGame(game);
 		}
 	}
 
-	/** Analyze move as a response to fancyHash, updating bigMap and smallMap. */
+	/**
+	 * Analyze move as a response to the position with canonical hash fancyHash,
+	 * updating bigMap and smallMap.
+	 */
 	private void processMove(short move, long fancyHash) {
 		if (bigMap.containsKey(fancyHash)) {
 			// The entry in bigMap is either a list of moves (medium) or a
@@ -256,26 +251,6 @@ public final class FusekiBookBuilder {
 		}
 	}
 
-	/** Returns the point at move reflected over the line c = r. */
-	public short reflect(short move) {
-		final int row = coords.row(move);
-		final int col = coords.column(move);
-		final int r2 = coords.getWidth() - 1 - col;
-		final int c2 = coords.getWidth() - 1 - row;
-		final short p = coords.at(r2, c2);
-		return p;
-	}
-
-	/** Returns the point at move rotated counterclockwise by 90 degrees. */
-	public short rotate90(short move) {
-		final int row = coords.row(move);
-		final int col = coords.column(move);
-		final int r2 = coords.getWidth() - 1 - col;
-		final int c2 = row;
-		final short p = coords.at(r2, c2);
-		return p;
-	}
-
 	/** Writes the raw book to a file. */
 	public void writeRawBook() {
 		final File directory = new File(objectFilePath + File.separator
@@ -2,14 +2,17 @@ package edu.lclark.orego.book;
 
 import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import edu.lclark.orego.core.Board;
-import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.SymmetricHashObserver;
 
 public class FusekiBookTest {
 
@@ -17,31 +20,45 @@ public class FusekiBookTest {
 
 	private Board board;
 
-	private CoordinateSystem coords;
-
 	@Before
-	public void setUp() {
-		final FusekiBookBuilder builder = new FusekiBookBuilder(20, 2, "test-books",
-				false);
+	public void setUp() throws IOException {
+		// Build into a scratch directory, so the test does not overwrite the
+		// books in test-books
+		final File directory = Files.createTempDirectory("orego").toFile();
+		directory.deleteOnExit();
+		final FusekiBookBuilder builder = new FusekiBookBuilder(20, 2,
+				directory.getPath(), false);
 		// We process the files twice because FusekiBookBuilder requires that a
 		// move be seen at least twice
 		builder.processFiles(new File("sgf-test-files/19"));
 		builder.processFiles(new File("sgf-test-files/19"));
 		builder.writeRawBook();
 		builder.buildFinalBook();
-		book = new FusekiBook("test-books");
 		board = new Board(19);
-		coords = board.getCoordinateSystem();
+		book = new FusekiBook(directory.getPath(), board);
+		for (final File file : directory.listFiles()) {
+			file.deleteOnExit();
+		}
 	}
 
 	@Test
 	public void testFusekiBook1() {
 		String[] correct;
 		correct = new String[] { "Q4", "D16", "C4" };
+		// The book may return a rotation or reflection of the correct move, so
+		// compare positions up to symmetry
+		final Board expected = new Board(19);
+		final SymmetricHashObserver expectedHash = new SymmetricHashObserver(
+				expected);
+		final SymmetricHashObserver actualHash = new SymmetricHashObserver(
+				board);
 		for (final String move : correct) {
 			final short m = book.nextMove(board);
-			assertEquals(move, coords.toString(m));
+			assertNotEquals(NO_POINT, m);
 			board.play(m);
+			expected.play(move);
+			assertEquals(expectedHash.getCanonicalFancyHash(),
+					actualHash.getCanonicalFancyHash());
 		}
 		board.play("h8");
 		assertEquals(NO_POINT, book.nextMove(board));
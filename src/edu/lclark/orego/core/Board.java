@@ -11,11 +11,11 @@ import static edu.lclark.orego.core.Legality.OK;
 import static edu.lclark.orego.core.Legality.SUICIDE;
 import static edu.lclark.orego.core.NonStoneColor.OFF_BOARD;
 import static edu.lclark.orego.core.NonStoneColor.VACANT;
-import static edu.lclark.orego.core.Point.EDGE_INCREMENT;
 import static edu.lclark.orego.core.StoneColor.BLACK;
 import static edu.lclark.orego.core.StoneColor.WHITE;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 import edu.lclark.orego.feature.BoardObserver;
 import edu.lclark.orego.util.ShortList;
@@ -25,13 +25,109 @@ import edu.lclark.orego.util.ShortSet;
 @SuppressWarnings("serial")
 public final class Board implements Serializable {
 
+	/** Journal opcode: a liberty was added to a chain. */
+	private static final int ADD_LIBERTY = 0;
+
+	/** Journal opcode: a point became vacant. */
+	private static final int ADD_VACANT = 1;
+
+	/** Colors indexed by their index() values, for decoding the journal. */
+	private static final Color[] COLORS = { BLACK, WHITE, VACANT, OFF_BOARD };
+
 	/** Locations for handicap stones. */
 	private final static String[] HANDICAP_LOCATIONS = { "d4", "q16", "q4",
 			"d16", "k10", "d10", "q10", "k4", "k16" };
 
+	/** Journal opcode: the end of the record of a move. */
+	private static final int MOVE = 2;
+
+	/** Journal opcode: a liberty was removed from a chain. */
+	private static final int REMOVE_LIBERTY = 3;
+
+	/**
+	 * Journal opcode: a point stopped being vacant, being removed from the
+	 * given index in vacantPoints.
+	 */
+	private static final int REMOVE_VACANT = 4;
+
+	/** Journal opcode: the chain id of a point changed. */
+	private static final int SET_CHAIN_ID = 5;
+
+	/** Journal opcode: the next point in a chain changed. */
+	private static final int SET_CHAIN_NEXT = 6;
+
+	/** Journal opcode: the color of a point changed. */
+	private static final int SET_COLOR = 7;
+
+	/**
+	 * Journal opcode: the liberties stored at a point were replaced. The entry
+	 * holds the old words of the point's liberty bitset, each split into two
+	 * ints, and the point.
+	 */
+	private static final int SET_LIBERTIES = 8;
+
+	/**
+	 * Journal opcode: one word of a liberty bitset changed. The entry holds the
+	 * old word, split into two ints, and the index of the word in liberties.
+	 */
+	private static final int SET_LIBERTY_WORD = 9;
+
+	/** Journal opcode: the neighbor counts of a point changed. */
+	private static final int SET_NEIGHBOR_COUNTS = 10;
+
+	/** Each neighbor count field takes up this many bits. */
+	private static final int FIELD_SIZE = 3;
+
+	/** A group of ones as wide as a field. */
+	private static final int MASK = (1 << FIELD_SIZE) - 1;
+
+	/** Maximum number of neighbors a point can have. */
+	private static final int MAX_NEIGHBORS = 4;
+
+	/** Number of bits by which each neighbor count field is shifted. */
+	private static final int[] SHIFT = { 0 * FIELD_SIZE, 1 * FIELD_SIZE,
+			2 * FIELD_SIZE };
+
+	/**
+	 * Add this to increment black and white neighbor counts and decrement
+	 * vacant neighbor count.
+	 */
+	private static final int EDGE_INCREMENT = (1 << SHIFT[BLACK.index()])
+			+ (1 << SHIFT[WHITE.index()]) - (1 << SHIFT[VACANT.index()]);
+
+	/** Counts for a point with four vacant neighbors. */
+	private static final int FOUR_VACANT_NEIGHBORS = MAX_NEIGHBORS << SHIFT[VACANT
+			.index()];
+
+	/** Masks indicating the maximum number of neighbors in each color. */
+	private static final int[] MAX_COLOR_MASK = {
+			(MAX_NEIGHBORS << SHIFT[BLACK.index()]),
+			(MAX_NEIGHBORS << SHIFT[WHITE.index()]) };
+
+	/**
+	 * Add the BLACK or WHITE element to add one neighbor of that color and
+	 * remove a vacant neighbor. Conversely, subtract to remove a stone and add
+	 * a vacant neighbor.
+	 */
+	private static final int[] NEIGHBOR_INCREMENT = {
+			(1 << SHIFT[BLACK.index()]) - (1 << SHIFT[VACANT.index()]),
+			(1 << SHIFT[WHITE.index()]) - (1 << SHIFT[VACANT.index()]) };
+
 	/** Stones captured by the last move. */
 	private final ShortList capturedStones;
 
+	/**
+	 * Identifier of the chain for each point (location of the "root" stone in
+	 * that chain). The chain id of a vacant point is the point's own location.
+	 */
+	private final short[] chainIds;
+
+	/** Next "pointers" for each point, linking points into chains. */
+	private final short[] chainNextPoints;
+
+	/** Color of each point, as given by Color.index(). */
+	private final byte[] colors;
+
 	/** The color to play next. */
 	private StoneColor colorToPlay;
 
@@ -60,12 +156,50 @@ public final class Board implements Serializable {
 	 */
 	private final ShortSet[] initialStones;
 
+	/**
+	 * Record of the changes made by moves since the journal was last reset,
+	 * used by undo(). Each entry is a group of ints ending with an opcode, so
+	 * the journal can be read backward.
+	 */
+	private int[] journal;
+
+	/** Number of ints in use in journal. */
+	private int journalSize;
+
+	/** The turn at which the journal begins. Earlier moves cannot be undone. */
+	private int journalStartTurn;
+
+	/**
+	 * Incremented whenever entries are removed from the journal (by undo or
+	 * reset), so that boards synchronized from this one can tell whether the
+	 * journal still extends the position they copied.
+	 */
+	private int journalVersion;
+
 	/** The point, if any, where the simple ko rule prohibits play. */
 	private short koPoint;
 
 	/** Direct liberties of the stone just played. */
 	private final ShortSet lastPlayLiberties;
 
+	/**
+	 * Liberties of each chain, stored at its root. The liberties of point p
+	 * are a bitset occupying libertyWords longs starting at p * libertyWords.
+	 */
+	private final long[] liberties;
+
+	/** Returned by getLiberties(). */
+	private final ShortSet libertiesFound;
+
+	/** Number of longs in each point's liberty bitset. */
+	private final int libertyWords;
+
+	/**
+	 * Stores the counts of the black, white, and vacant neighbors of each
+	 * point, using three bits of the int for each count.
+	 */
+	private final int[] neighborCounts;
+
 	/** Neighbors of a stone just captured. Used by removeStone(). */
 	private final ShortList neighborsOfCapturedStone;
 
@@ -75,9 +209,6 @@ public final class Board implements Serializable {
 	/** Number of consecutive passes just played. */
 	private short passes;
 
-	/** Point on the board (and surrounding sentinels). */
-	private final Point[] points;
-
 	/** Hash after removing captured stones. */
 	private long proposedHash;
 
@@ -87,6 +218,21 @@ public final class Board implements Serializable {
 	 */
 	private final SuperKoTable superKoTable;
 
+	/** Value of syncSource.journalSize when this board last synchronized. */
+	private int syncedJournalSize;
+
+	/** Value of syncSource.journalVersion when this board last synchronized. */
+	private int syncedJournalVersion;
+
+	/**
+	 * The board this one was last synchronized from by syncFrom(), or null if
+	 * this board has changed since then other than by playing moves.
+	 */
+	private transient Board syncSource;
+
+	/** Points that differ between this board and another. Used by syncFrom(). */
+	private final ShortSet touchedPoints;
+
 	/** @see #getTurn() */
 	private short turn;
 
@@ -95,7 +241,12 @@ public final class Board implements Serializable {
 
 	public Board(int width) {
 		coords = CoordinateSystem.forWidth(width);
-		points = new Point[coords.getFirstPointBeyondExtendedBoard()];
+		final int extended = coords.getFirstPointBeyondExtendedBoard();
+		chainIds = new short[extended];
+		chainNextPoints = new short[extended];
+		colors = new byte[extended];
+		java.util.Arrays.fill(colors, (byte) OFF_BOARD.index());
+		neighborCounts = new int[extended];
 		friendlyNeighboringChainIds = new ShortList(4);
 		enemyNeighboringChainIds = new ShortList(4);
 		capturedStones = new ShortList(coords.getArea());
@@ -103,12 +254,14 @@ public final class Board implements Serializable {
 		lastPlayLiberties = new ShortSet(n);
 		superKoTable = new SuperKoTable(coords);
 		vacantPoints = new ShortSet(n);
-		for (short p = 0; p < points.length; p++) {
-			points[p] = new Point(coords, p);
-		}
+		libertyWords = (n + 63) / 64;
+		liberties = new long[extended * libertyWords];
+		libertiesFound = new ShortSet(n);
 		neighborsOfCapturedStone = new ShortList(4);
 		observers = new BoardObserver[0];
 		initialStones = new ShortSet[] { new ShortSet(n), new ShortSet(n) };
+		journal = new int[coords.getMaxMovesPerGame() * 16];
+		touchedPoints = new ShortSet(extended);
 		clear();
 	}
 
@@ -131,14 +284,14 @@ public final class Board implements Serializable {
 		capturedStones.clear();
 		for (int i = 0; i < enemyNeighboringChainIds.size(); i++) {
 			final short enemy = enemyNeighboringChainIds.get(i);
-			if (points[enemy].isInAtari()) {
+			if (isInAtari(enemy)) {
 				short s = enemy;
 				do {
 					removeStone(s);
-					s = points[s].chainNextPoint;
+					s = chainNextPoints[s];
 				} while (s != enemy);
 			} else {
-				points[enemy].liberties.removeKnownPresent(p);
+				removeLiberty(enemy, p);
 			}
 		}
 	}
@@ -149,18 +302,23 @@ public final class Board implements Serializable {
 	 */
 	private void adjustFriendlyNeighbors(short p) {
 		if (friendlyNeighboringChainIds.size() == 0) {
-			// If there are no friendly neighbors, create a new, one-stone chain
-			points[p].becomeOneStoneChain(lastPlayLiberties);
+			// If there are no friendly neighbors, create a new, one-stone chain.
+			// The old liberties stored at p must be journaled, because p may
+			// have been the root of a chain that undoing will bring back.
+			setChainId(p, p);
+			setChainNextPoint(p, p);
+			setLiberties(p, lastPlayLiberties);
 		} else {
 			short c = friendlyNeighboringChainIds.get(0);
-			points[p].addToChain(points[c]);
-			points[c].liberties.addAll(lastPlayLiberties);
+			setChainNextPoint(p, chainNextPoints[c]);
+			setChainNextPoint(c, p);
+			setChainId(p, c);
+			addLiberties(c, lastPlayLiberties);
 			if (friendlyNeighboringChainIds.size() > 1) {
 				// If there are several friendly neighbors, merge them
 				for (int i = 1; i < friendlyNeighboringChainIds.size(); i++) {
 					final short ally = friendlyNeighboringChainIds.get(i);
-					if (points[c].liberties.size() >= points[ally].liberties
-							.size()) {
+					if (getLibertyCount(c) >= getLibertyCount(ally)) {
 						mergeChains(c, ally);
 					} else {
 						mergeChains(ally, c);
@@ -169,10 +327,60 @@ public final class Board implements Serializable {
 
 				}
 			}
-			points[c].liberties.removeKnownPresent(p);
+			removeLiberty(c, p);
 		}
 	}
 
+	/**
+	 * Adds liberty to the liberties of the chain rooted at root, journaling the
+	 * change if liberty was not already present.
+	 */
+	private void addLiberty(short root, short liberty) {
+		final int i = root * libertyWords + (liberty >>> 6);
+		final long bit = 1L << liberty;
+		if ((liberties[i] & bit) == 0) {
+			liberties[i] |= bit;
+			record(root, liberty, ADD_LIBERTY);
+		}
+	}
+
+	/**
+	 * Adds all of libertiesToAdd to the liberties of the chain rooted at root.
+	 */
+	private void addLiberties(short root, ShortSet libertiesToAdd) {
+		for (int i = 0; i < libertiesToAdd.size(); i++) {
+			addLiberty(root, libertiesToAdd.get(i));
+		}
+	}
+
+	/**
+	 * Adds the liberties of the chain rooted at other to the liberties of the
+	 * chain rooted at root.
+	 */
+	private void addLibertiesOf(short root, short other) {
+		final int start = root * libertyWords;
+		final int otherStart = other * libertyWords;
+		for (int w = 0; w < libertyWords; w++) {
+			final long old = liberties[start + w];
+			final long union = old | liberties[otherStart + w];
+			if (union != old) {
+				record((int) (old >>> 32), (int) old, start + w, SET_LIBERTY_WORD);
+				liberties[start + w] = union;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if undoTo(t) can return this board to turn t, i.e., if all
+	 * moves since t were played (rather than set up) on this board since the
+	 * journal was last reset.
+	 *
+	 * @see #undoTo(int)
+	 */
+	public boolean canUndoTo(int t) {
+		return t >= journalStartTurn && t <= turn;
+	}
+
 	/**
 	 * Returns this board to its blank state. Any initial stones are removed and
 	 * the komi is reset to a default value. This is roughly equivalent to
@@ -190,8 +398,11 @@ public final class Board implements Serializable {
 		for (final ShortSet stones : initialStones) {
 			stones.clear();
 		}
+		java.util.Arrays.fill(liberties, 0L);
 		for (final short p : coords.getAllPointsOnBoard()) {
-			points[p].clear();
+			colors[p] = (byte) VACANT.index();
+			chainIds[p] = p;
+			neighborCounts[p] = FOUR_VACANT_NEIGHBORS;
 			vacantPoints.addKnownAbsent(p);
 			int edgeCount = 0;
 			final short[] neighbors = coords.getNeighbors(p);
@@ -201,11 +412,12 @@ public final class Board implements Serializable {
 					edgeCount++;
 				}
 			}
-			points[p].neighborCounts += edgeCount * EDGE_INCREMENT;
+			neighborCounts[p] += edgeCount * EDGE_INCREMENT;
 		}
 		for (final BoardObserver observer : observers) {
 			observer.clear();
 		}
+		resetJournal();
 	}
 
 	public void clearPreservingInitialStones() {
@@ -234,12 +446,31 @@ public final class Board implements Serializable {
 			observers[i].copyDataFrom(that.observers[i]);
 		}
 		passes = that.passes;
-		for (final short p : coords.getAllPointsOnBoard()) {
-			points[p].copyDataFrom(that.points[p]);
-		}
+		System.arraycopy(that.chainIds, 0, chainIds, 0, chainIds.length);
+		System.arraycopy(that.chainNextPoints, 0, chainNextPoints, 0,
+				chainNextPoints.length);
+		System.arraycopy(that.colors, 0, colors, 0, colors.length);
+		System.arraycopy(that.liberties, 0, liberties, 0, liberties.length);
+		System.arraycopy(that.neighborCounts, 0, neighborCounts, 0,
+				neighborCounts.length);
 		superKoTable.copyDataFrom(that.superKoTable);
 		turn = that.turn;
 		vacantPoints.copyDataFrom(that.vacantPoints);
+		resetJournal();
+	}
+
+	/**
+	 * Returns the number of points with a nonzero liberty bitset, i.e., the
+	 * number of liberty records in a snapshot.
+	 */
+	private int countPointsWithLiberties() {
+		int result = 0;
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (hasLibertyBits(p)) {
+				result++;
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -252,14 +483,14 @@ public final class Board implements Serializable {
 	 */
 	private void finalizePlay(StoneColor color, short p) {
 		final int lastVacantPointCount = vacantPoints.size();
-		points[p].color = color;
-		vacantPoints.remove(p);
-		final boolean surrounded = points[p]
-				.hasMaxNeighborsForColor(color.opposite());
+		setColor(p, color);
+		record(p, vacantPoints.removeKnownPresent(p), REMOVE_VACANT);
+		final boolean surrounded = hasMaxNeighborsForColor(color.opposite(), p);
 		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
-			points[neighbors[i]].neighborCounts += Point.NEIGHBOR_INCREMENT[color
-					.index()];
+			final short n = neighbors[i];
+			setNeighborCounts(n, neighborCounts[n]
+					+ NEIGHBOR_INCREMENT[color.index()]);
 		}
 		adjustFriendlyNeighbors(p);
 		adjustEnemyNeighbors(p);
@@ -270,19 +501,49 @@ public final class Board implements Serializable {
 		}
 	}
 
+	/**
+	 * Adds to touchedPoints every point changed by the journal entries
+	 * between start and end in j, and copies any superko table slots they
+	 * changed from master.
+	 */
+	private void findTouchedPoints(int[] j, int start, int end, Board master) {
+		while (end > start) {
+			final int opcode = j[end - 1];
+			if (opcode == MOVE) {
+				final int slot = j[end - 2];
+				if (slot >= 0) {
+					superKoTable.copySlotFrom(master.superKoTable, slot);
+				}
+				end -= 9 + j[end - 9];
+			} else if (opcode == SET_LIBERTIES) {
+				touchedPoints.add((short) j[end - 2]);
+				end -= 2 + 2 * libertyWords;
+			} else if (opcode == SET_LIBERTY_WORD) {
+				touchedPoints.add((short) (j[end - 2] / libertyWords));
+				end -= 4;
+			} else if (opcode == ADD_VACANT) {
+				touchedPoints.add((short) j[end - 2]);
+				end -= 2;
+			} else {
+				touchedPoints.add((short) j[end - 3]);
+				end -= 3;
+			}
+		}
+	}
+
 	/** Returns the next point in this chain. */
 	public short getChainNextPoint(short p) {
-		return points[p].chainNextPoint;
+		return chainNextPoints[p];
 	}
 
 	/** Return the root of the chain that contains p. */
 	public short getChainRoot(short p) {
-		return points[p].chainId;
+		return chainIds[p];
 	}
 
 	/** Returns the color at point p. */
 	public Color getColorAt(short p) {
-		return points[p].color;
+		return COLORS[colors[p]];
 	}
 
 	/** Returns the color to play next. */
@@ -322,12 +583,64 @@ public final class Board implements Serializable {
 	}
 
 	/**
-	 * Returns the liberties of p.
+	 * Returns the point where the simple ko rule prohibits play, or NO_POINT
+	 * if there is no such point.
+	 */
+	public short getKoPoint() {
+		return koPoint;
+	}
+
+	/**
+	 * Returns the liberties of p. The set returned is reused by later calls to
+	 * this method, so it should not be modified or held onto.
 	 */
 	public ShortSet getLiberties(short p) {
 		assert coords.isOnBoard(p);
-		assert points[p].color != VACANT;
-		return points[points[p].chainId].liberties;
+		assert colors[p] != VACANT.index();
+		libertiesFound.clear();
+		final int start = chainIds[p] * libertyWords;
+		for (int w = 0; w < libertyWords; w++) {
+			long word = liberties[start + w];
+			while (word != 0) {
+				libertiesFound.addKnownAbsent((short) ((w << 6) + Long
+						.numberOfTrailingZeros(word)));
+				word &= word - 1;
+			}
+		}
+		return libertiesFound;
+	}
+
+	/**
+	 * Returns the number of liberties of the chain containing p. This is faster
+	 * than getLiberties(p).size().
+	 */
+	public int getLibertyCount(short p) {
+		assert coords.isOnBoard(p);
+		assert colors[p] != VACANT.index();
+		final int start = chainIds[p] * libertyWords;
+		int result = 0;
+		for (int w = 0; w < libertyWords; w++) {
+			result += Long.bitCount(liberties[start + w]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the lowest-numbered liberty of the chain containing p, or
+	 * NO_POINT if it has no liberties. If the chain is in atari, this is its
+	 * last liberty.
+	 */
+	public short getLastLiberty(short p) {
+		assert coords.isOnBoard(p);
+		assert colors[p] != VACANT.index();
+		final int start = chainIds[p] * libertyWords;
+		for (int w = 0; w < libertyWords; w++) {
+			final long word = liberties[start + w];
+			if (word != 0) {
+				return (short) ((w << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+		return NO_POINT;
 	}
 
 	/**
@@ -335,7 +648,7 @@ public final class Board implements Serializable {
 	 * Offboard points are considered both black and white.
 	 */
 	public int getNeighborsOfColor(short p, Color color) {
-		return points[p].getNeighborCount(color);
+		return (neighborCounts[p] >> SHIFT[color.index()]) & MASK;
 	}
 
 	/**
@@ -345,6 +658,24 @@ public final class Board implements Serializable {
 		return passes;
 	}
 
+	/**
+	 * Returns the number of bytes writeSnapshot() would write for the current
+	 * position.
+	 */
+	public int getSnapshotSize() {
+		// Width, color to play, ko point, passes, turn, hash
+		int result = 2 + 1 + 2 + 2 + 2 + 8;
+		// Color, chain id, next point in chain, and neighbor counts of each
+		// point
+		result += coords.getArea() * (1 + 2 + 2 + 2);
+		result += 4 + countPointsWithLiberties() * (2 + 8 * libertyWords);
+		for (final ShortSet stones : initialStones) {
+			result += 2 + 2 * stones.size();
+		}
+		result += 4 + 8 * superKoTable.size();
+		return result;
+	}
+
 	/**
 	 * Returns the current turn number (0 at the beginning of the game).
 	 */
@@ -374,23 +705,49 @@ public final class Board implements Serializable {
 		final StoneColor enemy = color.opposite();
 		for (int i = 0; i < enemyNeighboringChainIds.size(); i++) {
 			final short c = enemyNeighboringChainIds.get(i);
-			if (points[c].isInAtari()) {
+			if (isInAtari(c)) {
 				short active = c;
 				do {
 					result ^= coords.getHash(enemy, active);
-					active = points[active].chainNextPoint;
+					active = chainNextPoints[active];
 				} while (active != c);
 			}
 		}
 		return result;
 	}
 
+	/** Returns true if any bit of p's liberty bitset is set. */
+	private boolean hasLibertyBits(short p) {
+		final int start = p * libertyWords;
+		for (int w = 0; w < libertyWords; w++) {
+			if (liberties[start + w] != 0L) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Returns true if the stone at p has the maximum possible number of
 	 * neighbors of color p.
 	 */
 	public boolean hasMaxNeighborsForColor(StoneColor color, short p) {
-		return points[p].hasMaxNeighborsForColor(color);
+		return (neighborCounts[p] & MAX_COLOR_MASK[color.index()]) == MAX_COLOR_MASK[color
+				.index()];
+	}
+
+	/** Returns true if the chain rooted at root is in atari. */
+	private boolean isInAtari(short root) {
+		assert chainIds[root] == root;
+		final int start = root * libertyWords;
+		int count = 0;
+		for (int w = 0; w < libertyWords; w++) {
+			count += Long.bitCount(liberties[start + w]);
+			if (count > 1) {
+				return false;
+			}
+		}
+		return count == 1;
 	}
 
 	/**
@@ -419,18 +776,18 @@ public final class Board implements Serializable {
 		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
 			final short n = neighbors[i];
-			final Color neighborColor = points[n].color;
+			final Color neighborColor = COLORS[colors[n]];
 			if (neighborColor == VACANT) { // Vacant point
 				lastPlayLiberties.add(n);
 				suicide = false;
 			} else if (neighborColor == color) { // Friendly neighbor
-				final short chainId = points[n].chainId;
+				final short chainId = chainIds[n];
 				friendlyNeighboringChainIds.addIfNotPresent(chainId);
-				suicide &= points[chainId].isInAtari();
+				suicide &= isInAtari(chainId);
 			} else if (neighborColor != OFF_BOARD) { // Enemy neighbor
-				final short chainId = points[n].chainId;
+				final short chainId = chainIds[n];
 				enemyNeighboringChainIds.addIfNotPresent(chainId);
-				suicide &= !points[chainId].isInAtari();
+				suicide &= !isInAtari(chainId);
 			}
 		}
 		return suicide;
@@ -446,7 +803,7 @@ public final class Board implements Serializable {
 		if (turn >= coords.getMaxMovesPerGame() - 2) {
 			return GAME_TOO_LONG;
 		}
-		if (points[p].color != VACANT) {
+		if (colors[p] != VACANT.index()) {
 			return OCCUPIED;
 		}
 		if (p == koPoint) {
@@ -489,15 +846,15 @@ public final class Board implements Serializable {
 	 *            the two chains.
 	 */
 	private void mergeChains(short base, short appendage) {
-		points[base].liberties.addAll(points[appendage].liberties);
-		int active = appendage;
+		addLibertiesOf(base, appendage);
+		short active = appendage;
 		do {
-			points[active].chainId = points[base].chainId;
-			active = points[active].chainNextPoint;
+			setChainId(active, chainIds[base]);
+			active = chainNextPoints[active];
 		} while (active != appendage);
-		final short temp = points[base].chainNextPoint;
-		points[base].chainNextPoint = points[appendage].chainNextPoint;
-		points[appendage].chainNextPoint = temp;
+		final short temp = chainNextPoints[base];
+		setChainNextPoint(base, chainNextPoints[appendage]);
+		setChainNextPoint(appendage, temp);
 	}
 
 	/** Notify the observers about what has changed. */
@@ -509,6 +866,8 @@ public final class Board implements Serializable {
 
 	/** Plays a pass move. */
 	public void pass() {
+		capturedStones.clear();
+		recordMove(colorToPlay, PASS, koPoint, passes, hash, -1);
 		if (koPoint != NO_POINT) {
 			koPoint = NO_POINT;
 		}
@@ -527,6 +886,7 @@ public final class Board implements Serializable {
 		initialStones[color.index()].add(p);
 		hash = proposedHash;
 		superKoTable.add(hash);
+		resetJournal();
 		// To ensure that the board is in a stable state, this must be done last
 		notifyObservers(color, p);
 	}
@@ -544,12 +904,14 @@ public final class Board implements Serializable {
 		if (result != OK) {
 			return result;
 		}
+		final short oldKoPoint = koPoint;
 		finalizePlay(colorToPlay, p);
+		final int slot = superKoTable.add(proposedHash);
+		recordMove(colorToPlay, p, oldKoPoint, passes, hash, slot);
 		colorToPlay = colorToPlay.opposite();
 		passes = 0;
 		turn++;
 		hash = proposedHash;
-		superKoTable.add(hash);
 		// To ensure that the board is in a stable state, this must be done last
 		// The color argument is flipped back to the color of the stone played
 		notifyObservers(colorToPlay.opposite(), p);
@@ -575,7 +937,9 @@ public final class Board implements Serializable {
 		if (result != OK) {
 			return result;
 		}
+		final short oldKoPoint = koPoint;
 		finalizePlay(colorToPlay, p);
+		recordMove(colorToPlay, p, oldKoPoint, passes, hash, -1);
 		colorToPlay = colorToPlay.opposite();
 		passes = 0;
 		turn++;
@@ -585,33 +949,223 @@ public final class Board implements Serializable {
 		return OK;
 	}
 
+	/** Adds an entry with one argument to the journal. */
+	private void record(int a, int opcode) {
+		if (journalSize + 2 > journal.length) {
+			journal = java.util.Arrays.copyOf(journal, journal.length * 2);
+		}
+		journal[journalSize] = a;
+		journal[journalSize + 1] = opcode;
+		journalSize += 2;
+	}
+
+	/** Adds an entry with two arguments to the journal. */
+	private void record(int a, int b, int opcode) {
+		if (journalSize + 3 > journal.length) {
+			journal = java.util.Arrays.copyOf(journal, journal.length * 2);
+		}
+		journal[journalSize] = a;
+		journal[journalSize + 1] = b;
+		journal[journalSize + 2] = opcode;
+		journalSize += 3;
+	}
+
+	/** Adds an entry with three arguments to the journal. */
+	private void record(int a, int b, int c, int opcode) {
+		if (journalSize + 4 > journal.length) {
+			journal = java.util.Arrays.copyOf(journal, journal.length * 2);
+		}
+		journal[journalSize] = a;
+		journal[journalSize + 1] = b;
+		journal[journalSize + 2] = c;
+		journal[journalSize + 3] = opcode;
+		journalSize += 4;
+	}
+
+	/**
+	 * Adds the record of a move to the journal. This must come after the
+	 * entries for all of the changes the move made, and capturedStones must
+	 * already hold the stones it captured.
+	 *
+	 * @param slot
+	 *            The slot the move filled in the superko table, or -1 if none.
+	 */
+	private void recordMove(StoneColor color, short p, short oldKoPoint,
+			short oldPasses, long oldHash, int slot) {
+		final int n = capturedStones.size();
+		if (journalSize + n + 9 > journal.length) {
+			journal = java.util.Arrays.copyOf(journal,
+					Math.max(journal.length * 2, journalSize + n + 9));
+		}
+		for (int i = 0; i < n; i++) {
+			journal[journalSize++] = capturedStones.get(i);
+		}
+		journal[journalSize++] = n;
+		journal[journalSize++] = color.index();
+		journal[journalSize++] = p;
+		journal[journalSize++] = oldKoPoint;
+		journal[journalSize++] = oldPasses;
+		journal[journalSize++] = (int) (oldHash >>> 32);
+		journal[journalSize++] = (int) oldHash;
+		journal[journalSize++] = slot;
+		journal[journalSize++] = MOVE;
+	}
+
+	/**
+	 * Removes liberty, which is known to be present, from the chain rooted at
+	 * root.
+	 */
+	private void removeLiberty(short root, short liberty) {
+		final int i = root * libertyWords + (liberty >>> 6);
+		assert (liberties[i] & (1L << liberty)) != 0;
+		liberties[i] &= ~(1L << liberty);
+		record(root, liberty, REMOVE_LIBERTY);
+	}
+
 	/** Removes the stone at p. */
 	private void removeStone(short p) {
-		points[p].color = VACANT;
+		final StoneColor color = (StoneColor) COLORS[colors[p]];
+		setColor(p, VACANT);
 		vacantPoints.addKnownAbsent(p);
+		record(p, ADD_VACANT);
 		neighborsOfCapturedStone.clear();
 		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
 			final short n = neighbors[i];
-			points[n].neighborCounts -= Point.NEIGHBOR_INCREMENT[colorToPlay
-					.opposite().index()];
-			if (points[n].color == BLACK | points[n].color == WHITE) {
-				neighborsOfCapturedStone.addIfNotPresent(points[n].chainId);
+			setNeighborCounts(n, neighborCounts[n]
+					- NEIGHBOR_INCREMENT[color.index()]);
+			// Friendly neighbors are part of the chain being captured, so only
+			// the capturing chains gain liberties
+			if (colors[n] == color.opposite().index()) {
+				neighborsOfCapturedStone.addIfNotPresent(chainIds[n]);
 			}
 		}
 		for (int k = 0; k < neighborsOfCapturedStone.size(); k++) {
-			final int c = neighborsOfCapturedStone.get(k);
-			points[c].liberties.addKnownAbsent(p);
+			final short c = neighborsOfCapturedStone.get(k);
+			liberties[c * libertyWords + (p >>> 6)] |= 1L << p;
+			record(c, p, ADD_LIBERTY);
 		}
 		capturedStones.add(p);
 	}
 
+	/**
+	 * Empties the journal, so that moves played so far cannot be undone. This
+	 * is called whenever the board is changed other than by playing a move.
+	 */
+	private void resetJournal() {
+		journalSize = 0;
+		journalStartTurn = turn;
+		journalVersion++;
+		syncSource = null;
+	}
+
+	/**
+	 * Makes this board a copy of the position written to buffer by
+	 * writeSnapshot(), leaving buffer positioned after the snapshot. The
+	 * data are read directly into this board's arrays, without creating any
+	 * intermediate objects. Moves played before the snapshot cannot be
+	 * undone.
+	 * <p>
+	 * Observers are not part of the snapshot, so this board must not have any.
+	 * To copy a board with observers, use copyDataFrom().
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the snapshot is for a different board width
+	 */
+	public void restoreFrom(ByteBuffer buffer) {
+		assert observers.length == 0;
+		if (buffer.getShort() != coords.getWidth()) {
+			throw new IllegalArgumentException(
+					"Snapshot is for a different board width");
+		}
+		clear();
+		colorToPlay = (StoneColor) COLORS[buffer.get()];
+		koPoint = buffer.getShort();
+		passes = buffer.getShort();
+		turn = buffer.getShort();
+		hash = buffer.getLong();
+		vacantPoints.clear();
+		for (final short p : coords.getAllPointsOnBoard()) {
+			colors[p] = buffer.get();
+			chainIds[p] = buffer.getShort();
+			chainNextPoints[p] = buffer.getShort();
+			neighborCounts[p] = buffer.getShort() & 0xffff;
+			if (colors[p] == VACANT.index()) {
+				vacantPoints.addKnownAbsent(p);
+			}
+		}
+		final int n = buffer.getInt();
+		for (int i = 0; i < n; i++) {
+			final int start = buffer.getShort() * libertyWords;
+			for (int w = 0; w < libertyWords; w++) {
+				liberties[start + w] = buffer.getLong();
+			}
+		}
+		for (final ShortSet stones : initialStones) {
+			final int size = buffer.getShort();
+			for (int i = 0; i < size; i++) {
+				stones.addKnownAbsent(buffer.getShort());
+			}
+		}
+		superKoTable.readFrom(buffer);
+		resetJournal();
+	}
+
+	/** Sets the chain id of p, journaling the change. */
+	private void setChainId(short p, short chainId) {
+		record(p, chainIds[p], SET_CHAIN_ID);
+		chainIds[p] = chainId;
+	}
+
+	/** Sets the next point in p's chain, journaling the change. */
+	private void setChainNextPoint(short p, short next) {
+		record(p, chainNextPoints[p], SET_CHAIN_NEXT);
+		chainNextPoints[p] = next;
+	}
+
+	/** Sets the color of p, journaling the change. */
+	private void setColor(short p, Color color) {
+		record(p, colors[p], SET_COLOR);
+		colors[p] = (byte) color.index();
+	}
+
+	/** Replaces the liberties stored at p, journaling the change. */
+	private void setLiberties(short p, ShortSet newLiberties) {
+		final int n = 2 * libertyWords + 2;
+		if (journalSize + n > journal.length) {
+			journal = java.util.Arrays.copyOf(journal,
+					Math.max(journal.length * 2, journalSize + n));
+		}
+		final int start = p * libertyWords;
+		for (int w = 0; w < libertyWords; w++) {
+			final long word = liberties[start + w];
+			journal[journalSize++] = (int) (word >>> 32);
+			journal[journalSize++] = (int) word;
+			liberties[start + w] = 0L;
+		}
+		journal[journalSize++] = p;
+		journal[journalSize++] = SET_LIBERTIES;
+		for (int i = 0; i < newLiberties.size(); i++) {
+			final short lib = newLiberties.get(i);
+			liberties[start + (lib >>> 6)] |= 1L << lib;
+		}
+	}
+
 	/**
 	 * Sets the color to play, used with programs like GoGui to set up initial
 	 * stones.
 	 */
 	public void setColorToPlay(StoneColor stoneColor) {
-		colorToPlay = stoneColor;
+		if (stoneColor != colorToPlay) {
+			colorToPlay = stoneColor;
+			resetJournal();
+		}
+	}
+
+	/** Sets the neighbor counts of p, journaling the change. */
+	private void setNeighborCounts(short p, int counts) {
+		record(p, neighborCounts[p], SET_NEIGHBOR_COUNTS);
+		neighborCounts[p] = counts;
 	}
 
 	/**
@@ -620,7 +1174,10 @@ public final class Board implements Serializable {
 	 * determine which stones are alive.)
 	 */
 	public void setPasses(short passes) {
-		this.passes = passes;
+		if (passes != this.passes) {
+			this.passes = passes;
+			resetJournal();
+		}
 	}
 
 	public void setUpHandicap(int handicapSize) {
@@ -658,6 +1215,46 @@ public final class Board implements Serializable {
 			}
 		}
 		this.colorToPlay = colorToPlay;
+		resetJournal();
+	}
+
+	/**
+	 * Makes this board a copy of master. If this board was last synchronized
+	 * from master and both boards have only played moves since then, only the
+	 * points touched by those moves (as recorded in the two journals) are
+	 * copied. Otherwise, this is equivalent to copyDataFrom(master).
+	 */
+	public void syncFrom(Board master) {
+		if (syncSource != master || master.journalVersion != syncedJournalVersion) {
+			copyDataFrom(master);
+		} else {
+			touchedPoints.clear();
+			findTouchedPoints(journal, 0, journalSize, master);
+			findTouchedPoints(master.journal, syncedJournalSize,
+					master.journalSize, master);
+			for (int i = 0; i < touchedPoints.size(); i++) {
+				final short p = touchedPoints.get(i);
+				chainIds[p] = master.chainIds[p];
+				chainNextPoints[p] = master.chainNextPoints[p];
+				colors[p] = master.colors[p];
+				neighborCounts[p] = master.neighborCounts[p];
+				System.arraycopy(master.liberties, p * libertyWords, liberties,
+						p * libertyWords, libertyWords);
+			}
+			colorToPlay = master.colorToPlay;
+			hash = master.hash;
+			koPoint = master.koPoint;
+			for (int i = 0; i < observers.length; i++) {
+				observers[i].syncFrom(master.observers[i], journalStartTurn);
+			}
+			passes = master.passes;
+			turn = master.turn;
+			vacantPoints.copyDataFrom(master.vacantPoints);
+			resetJournal();
+		}
+		syncSource = master;
+		syncedJournalSize = master.journalSize;
+		syncedJournalVersion = master.journalVersion;
 	}
 
 	@Override
@@ -665,17 +1262,156 @@ public final class Board implements Serializable {
 		String result = "";
 		for (int r = 0; r < coords.getWidth(); r++) {
 			for (int c = 0; c < coords.getWidth(); c++) {
-				result += points[coords.at(r, c)].color.toChar();
+				result += COLORS[colors[coords.at(r, c)]].toChar();
 			}
 			result += "\n";
 		}
 		return result;
 	}
 
+	/**
+	 * Takes back the last move (including a pass) and returns true. Returns
+	 * false if there is no move to take back, because the journal has been
+	 * reset since the last move.
+	 *
+	 * @see #canUndoTo(int)
+	 */
+	public boolean undo() {
+		if (turn <= journalStartTurn) {
+			return false;
+		}
+		assert journal[journalSize - 1] == MOVE;
+		final int slot = journal[journalSize - 2];
+		final long oldHash = ((long) journal[journalSize - 4] << 32)
+				| (journal[journalSize - 3] & 0xffffffffL);
+		final short oldPasses = (short) journal[journalSize - 5];
+		final short oldKoPoint = (short) journal[journalSize - 6];
+		final short p = (short) journal[journalSize - 7];
+		final StoneColor color = (StoneColor) COLORS[journal[journalSize - 8]];
+		final int n = journal[journalSize - 9];
+		journalSize -= 9 + n;
+		journalVersion++;
+		capturedStones.clear();
+		for (int i = 0; i < n; i++) {
+			capturedStones.add((short) journal[journalSize + i]);
+		}
+		// Reverse the changes made by the move, last to first
+		while (journalSize > 0 && journal[journalSize - 1] != MOVE) {
+			final int opcode = journal[journalSize - 1];
+			if (opcode == ADD_VACANT) {
+				vacantPoints.removeKnownPresent(journal[journalSize - 2]);
+				journalSize -= 2;
+				continue;
+			}
+			if (opcode == SET_LIBERTIES) {
+				final int start = journal[journalSize - 2] * libertyWords;
+				journalSize -= 2 + 2 * libertyWords;
+				for (int w = 0; w < libertyWords; w++) {
+					liberties[start + w] = ((long) journal[journalSize + 2 * w] << 32)
+							| (journal[journalSize + 2 * w + 1] & 0xffffffffL);
+				}
+				continue;
+			}
+			if (opcode == SET_LIBERTY_WORD) {
+				liberties[journal[journalSize - 2]] = ((long) journal[journalSize - 4] << 32)
+						| (journal[journalSize - 3] & 0xffffffffL);
+				journalSize -= 4;
+				continue;
+			}
+			final short a = (short) journal[journalSize - 3];
+			final int b = journal[journalSize - 2];
+			if (opcode == ADD_LIBERTY) {
+				liberties[a * libertyWords + (b >>> 6)] &= ~(1L << b);
+			} else if (opcode == REMOVE_LIBERTY) {
+				liberties[a * libertyWords + (b >>> 6)] |= 1L << b;
+			} else if (opcode == REMOVE_VACANT) {
+				vacantPoints.restore(a, b);
+			} else if (opcode == SET_CHAIN_ID) {
+				chainIds[a] = (short) b;
+			} else if (opcode == SET_CHAIN_NEXT) {
+				chainNextPoints[a] = (short) b;
+			} else if (opcode == SET_COLOR) {
+				colors[a] = (byte) b;
+			} else {
+				assert opcode == SET_NEIGHBOR_COUNTS;
+				neighborCounts[a] = b;
+			}
+			journalSize -= 3;
+		}
+		if (slot >= 0) {
+			superKoTable.remove(slot);
+		}
+		colorToPlay = color;
+		hash = oldHash;
+		koPoint = oldKoPoint;
+		passes = oldPasses;
+		turn--;
+		// To ensure that the board is in a stable state, this must be done last
+		for (int i = observers.length - 1; i >= 0; i--) {
+			observers[i].undo(color, p, capturedStones);
+		}
+		return true;
+	}
+
+	/**
+	 * Takes back moves until the turn number is t.
+	 *
+	 * @see #canUndoTo(int)
+	 */
+	public void undoTo(int t) {
+		assert canUndoTo(t);
+		while (turn > t) {
+			undo();
+		}
+	}
+
+	/**
+	 * Writes a compact binary snapshot of this board's position to buffer,
+	 * which must have at least getSnapshotSize() bytes remaining. This
+	 * includes the colors of the points, the chains and their liberties, the
+	 * ko point, the hash, the turn number, the initial stones, and the superko
+	 * history, but not the journal or any observers.
+	 *
+	 * @see #restoreFrom(ByteBuffer)
+	 */
+	public void writeSnapshot(ByteBuffer buffer) {
+		buffer.putShort((short) coords.getWidth());
+		buffer.put((byte) colorToPlay.index());
+		buffer.putShort(koPoint);
+		buffer.putShort(passes);
+		buffer.putShort(turn);
+		buffer.putLong(hash);
+		for (final short p : coords.getAllPointsOnBoard()) {
+			buffer.put(colors[p]);
+			buffer.putShort(chainIds[p]);
+			buffer.putShort(chainNextPoints[p]);
+			assert neighborCounts[p] <= 0xffff;
+			buffer.putShort((short) neighborCounts[p]);
+		}
+		buffer.putInt(countPointsWithLiberties());
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (hasLibertyBits(p)) {
+				buffer.putShort(p);
+				final int start = p * libertyWords;
+				for (int w = 0; w < libertyWords; w++) {
+					buffer.putLong(liberties[start + w]);
+				}
+			}
+		}
+		for (final ShortSet stones : initialStones) {
+			buffer.putShort((short) stones.size());
+			for (int i = 0; i < stones.size(); i++) {
+				buffer.putShort(stones.get(i));
+			}
+		}
+		superKoTable.writeTo(buffer);
+	}
+
 	public void removeStones(ShortSet ourDead) {
 		for(int i = 0; i < ourDead.size(); i++){
-			points[ourDead.get(i)].color = VACANT;
+			colors[ourDead.get(i)] = (byte) VACANT.index();
 			vacantPoints.addKnownAbsent(ourDead.get(i));
 		}
+		resetJournal();
 	}
 }
@@ -1,14 +1,18 @@
 package edu.lclark.orego.core;
 
 import static edu.lclark.orego.core.Legality.*;
+import static edu.lclark.orego.core.NonStoneColor.*;
 import static edu.lclark.orego.core.StoneColor.*;
 import static edu.lclark.orego.core.CoordinateSystem.*;
 import static edu.lclark.orego.util.TestingTools.*;
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.lclark.orego.feature.HistoryObserver;
 import edu.lclark.orego.feature.NotEyeLike;
 import edu.lclark.orego.feature.StoneCountObserver;
 import edu.lclark.orego.move.Mover;
@@ -519,4 +523,159 @@ public class BoardTest {
 		}
 	}
 
+	@Test
+	public void testUndo() {
+		board = new Board(19);
+		coords = board.getCoordinateSystem();
+		Board copy = new Board(19);
+		StoneCountObserver counter = new StoneCountObserver(board, new ChineseFinalScorer(board, 7.5));
+		StoneCountObserver copyCounter = new StoneCountObserver(copy, new ChineseFinalScorer(copy, 7.5));
+		Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		MersenneTwisterFast random = new MersenneTwisterFast();
+		for (int i = 0; i < 50; i++) {
+			mover.selectAndPlayOneMove(random, false);
+		}
+		copy.copyDataFrom(board);
+		while (board.getPasses() < 2) {
+			mover.selectAndPlayOneMove(random, false);
+		}
+		assertTrue(board.canUndoTo(50));
+		board.undoTo(50);
+		assertEquals(copy.toString(), board.toString());
+		assertEquals(copy.getTurn(), board.getTurn());
+		assertEquals(copy.getColorToPlay(), board.getColorToPlay());
+		assertEquals(copy.getPasses(), board.getPasses());
+		assertEquals(copy.getFancyHash(), board.getFancyHash());
+		assertEquals(copy.getVacantPoints(), board.getVacantPoints());
+		assertEquals(counter.getCount(BLACK), copyCounter.getCount(BLACK));
+		assertEquals(counter.getCount(WHITE), copyCounter.getCount(WHITE));
+		for (short p : coords.getAllPointsOnBoard()) {
+			if (board.getColorAt(p) != VACANT) {
+				assertEquals(copy.getChainRoot(p), board.getChainRoot(p));
+				assertEquals(copy.getLiberties(p), board.getLiberties(p));
+			}
+			assertEquals(copy.isLegal(p), board.isLegal(p));
+		}
+		// Both boards should now behave identically
+		while (board.getPasses() < 2) {
+			short p = mover.selectAndPlayOneMove(random, false);
+			assertEquals(OK, copy.play(p));
+		}
+		assertEquals(copy.toString(), board.toString());
+		assertEquals(copy.getFancyHash(), board.getFancyHash());
+	}
+
+	@Test
+	public void testUndoKo() {
+		String[] before = {
+				".....",
+				".....",
+				".....",
+				"#O...",
+				".#O..",
+		};
+		board.setUpProblem(before, WHITE);
+		assertFalse(board.undo());
+		long hash = board.getFancyHash();
+		assertEquals(OK, board.play("a1"));
+		assertEquals(OK, board.play("e5"));
+		assertTrue(board.undo());
+		assertEquals(KO_VIOLATION, board.play("b1"));
+		assertTrue(board.undo());
+		assertEquals(asOneString(before), board.toString());
+		assertEquals(hash, board.getFancyHash());
+		assertEquals(WHITE, board.getColorToPlay());
+		assertEquals(1, board.getLiberties(at("b1")).size());
+		assertFalse(board.undo());
+		// Since the position can recur, a1 is again legal
+		assertEquals(OK, board.play("a1"));
+	}
+
+	@Test
+	public void testSyncFrom() {
+		board = new Board(19);
+		coords = board.getCoordinateSystem();
+		Board copy = new Board(19);
+		StoneCountObserver counter = new StoneCountObserver(board, new ChineseFinalScorer(board, 7.5));
+		StoneCountObserver copyCounter = new StoneCountObserver(copy, new ChineseFinalScorer(copy, 7.5));
+		HistoryObserver history = new HistoryObserver(board);
+		HistoryObserver copyHistory = new HistoryObserver(copy);
+		Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		Mover copyMover = new PredicateMover(copy, new NotEyeLike(copy));
+		MersenneTwisterFast random = new MersenneTwisterFast();
+		for (int run = 0; run < 20; run++) {
+			// Each board plays some moves of its own
+			for (int i = 0; i < 5 && board.getPasses() < 2; i++) {
+				mover.selectAndPlayOneMove(random, false);
+			}
+			copy.syncFrom(board);
+			assertEquals(board.toString(), copy.toString());
+			assertEquals(board.getFancyHash(), copy.getFancyHash());
+			assertEquals(board.getVacantPoints(), copy.getVacantPoints());
+			assertEquals(counter.getCount(BLACK), copyCounter.getCount(BLACK));
+			assertEquals(counter.getCount(WHITE), copyCounter.getCount(WHITE));
+			assertEquals(history.toString(), copyHistory.toString());
+			for (short p : coords.getAllPointsOnBoard()) {
+				if (board.getColorAt(p) != VACANT) {
+					assertEquals(board.getChainRoot(p), copy.getChainRoot(p));
+					assertEquals(board.getLiberties(p), copy.getLiberties(p));
+				}
+				assertEquals(board.isLegal(p), copy.isLegal(p));
+			}
+			for (int i = 0; i < 30 && copy.getPasses() < 2; i++) {
+				copyMover.selectAndPlayOneMove(random, i % 2 == 0);
+			}
+			if (run % 5 == 4 && board.getTurn() > 0) {
+				// Forces a full copy on the next sync
+				board.undo();
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshot() {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		board.placeInitialStone(BLACK, at("e5"));
+		final Board copy = new Board(9);
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		for (int i = 0; i < 60; i++) {
+			mover.selectAndPlayOneMove(random, false);
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(board.getSnapshotSize());
+		board.writeSnapshot(buffer);
+		assertEquals(0, buffer.remaining());
+		buffer.flip();
+		copy.restoreFrom(buffer);
+		assertEquals(0, buffer.remaining());
+		assertEquals(board.toString(), copy.toString());
+		assertEquals(board.getFancyHash(), copy.getFancyHash());
+		assertEquals(board.getKoPoint(), copy.getKoPoint());
+		assertEquals(board.getTurn(), copy.getTurn());
+		assertEquals(board.getVacantPoints(), copy.getVacantPoints());
+		for (short p : coords.getAllPointsOnBoard()) {
+			if (board.getColorAt(p) != VACANT) {
+				assertEquals(board.getChainRoot(p), copy.getChainRoot(p));
+				assertEquals(board.getLiberties(p), copy.getLiberties(p));
+			}
+		}
+		// Both boards should continue identically, including superko
+		for (int i = 0; i < 200; i++) {
+			final short p = board.getVacantPoints().get(
+					random.nextInt(board.getVacantPoints().size()));
+			assertEquals(board.play(p), copy.play(p));
+			assertEquals(board.toString(), copy.toString());
+			assertEquals(board.getHash(), copy.getHash());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSnapshotWrongWidth() {
+		final ByteBuffer buffer = ByteBuffer.allocate(board.getSnapshotSize());
+		board.writeSnapshot(buffer);
+		buffer.flip();
+		new Board(9).restoreFrom(buffer);
+	}
+
 }
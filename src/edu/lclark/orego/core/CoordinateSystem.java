@@ -76,6 +76,13 @@ public final class CoordinateSystem implements Serializable {
 	/** Index into an array returned by getNeighbors. */
 	public static final int SOUTH_NEIGHBOR = 3;
 
+	/**
+	 * Number of rotations and reflections of the board.
+	 *
+	 * @see #transform(int, short)
+	 */
+	public static final int SYMMETRIES = 8;
+
 	/** Index into an array returned by getNeighbors. */
 	public static final int SOUTHEAST_NEIGHBOR = 7;
 
@@ -121,6 +128,11 @@ public final class CoordinateSystem implements Serializable {
 	 */
 	private final short[] allPointsOnBoard;
 
+	/**
+	 * @see #getInverseSymmetry(int)
+	 */
+	private final int[] inverseSymmetries;
+
 	/**
 	 * @see #getMaxMovesPerGame()
 	 */
@@ -134,6 +146,11 @@ public final class CoordinateSystem implements Serializable {
 	/** Added to a point to find the one to the south. */
 	private final short south;
 
+	/**
+	 * @see #transform(int, short)
+	 */
+	private final short[][] symmetries;
+
 	/** Width of the board. */
 	private final int width;
 
@@ -169,6 +186,34 @@ public final class CoordinateSystem implements Serializable {
 				zobristHashes[i][p] = random.nextLong();
 			}
 		}
+		symmetries = new short[SYMMETRIES][n];
+		for (int t = 0; t < SYMMETRIES; t++) {
+			for (short p = 0; p < n; p++) {
+				symmetries[t][p] = p;
+			}
+		}
+		for (final short p : allPointsOnBoard) {
+			symmetries[1][p] = rotate90(p);
+			symmetries[2][p] = rotate90(symmetries[1][p]);
+			symmetries[3][p] = rotate90(symmetries[2][p]);
+			symmetries[4][p] = reflect(p);
+			symmetries[5][p] = rotate90(symmetries[4][p]);
+			symmetries[6][p] = rotate90(symmetries[5][p]);
+			symmetries[7][p] = rotate90(symmetries[6][p]);
+		}
+		inverseSymmetries = new int[SYMMETRIES];
+		for (int t = 0; t < SYMMETRIES; t++) {
+			for (int u = 0; u < SYMMETRIES; u++) {
+				// A symmetry is determined by where it sends two adjacent
+				// corners
+				final short a = at(0, 0);
+				final short b = at(0, width - 1);
+				if (symmetries[u][symmetries[t][a]] == a
+						&& symmetries[u][symmetries[t][b]] == b) {
+					inverseSymmetries[t] = u;
+				}
+			}
+		}
 	}
 
 	/** Returns the short representation of the point at row r, column c. */
@@ -239,6 +284,15 @@ public final class CoordinateSystem implements Serializable {
 		return zobristHashes[color.index()][p];
 	}
 
+	/**
+	 * Returns the index of the symmetry that undoes symmetry t.
+	 *
+	 * @see #transform(int, short)
+	 */
+	public int getInverseSymmetry(int t) {
+		return inverseSymmetries[t];
+	}
+
 	/**
 	 * Returns the maximum number of moves per game. It should be extremely rare
 	 * to actually play this many moves, but a playout (which doesn't check
@@ -295,6 +349,16 @@ public final class CoordinateSystem implements Serializable {
 		return forWidth(width);
 	}
 
+	/** Returns the point p reflected over the line c = r. */
+	private short reflect(short p) {
+		return at(width - 1 - column(p), width - 1 - row(p));
+	}
+
+	/** Returns the point p rotated counterclockwise by 90 degrees. */
+	private short rotate90(short p) {
+		return at(width - 1 - column(p), row(p));
+	}
+
 	/** Returns the row of point p. */
 	public int row(short p) {
 		return p / south - 1;
@@ -318,4 +382,14 @@ public final class CoordinateSystem implements Serializable {
 		}
 	}
 
+	/**
+	 * Returns p transformed by symmetry t. Symmetry 0 is the identity, 1-3 are
+	 * counterclockwise rotations by 90, 180, and 270 degrees, 4 is reflection
+	 * over the line c = r, and 5-7 are that reflection followed by the
+	 * rotations. Points not on the board (such as PASS) are unchanged.
+	 */
+	public short transform(int t, short p) {
+		return symmetries[t][p];
+	}
+
 }
@@ -115,4 +115,20 @@ public class CoordinateSystemTest {
 	public void testIsOnBoard() {
 		assertFalse(c19.isOnBoard(c19.getFirstPointBeyondBoard()));
 	}
+	@Test
+	public void testTransform() {
+		assertEquals(c19.at("q4"), c19.transform(0, c19.at("q4")));
+		assertEquals(c19.at("q16"), c19.transform(1, c19.at("q4")));
+		assertEquals(c19.at("d16"), c19.transform(2, c19.at("q4")));
+		assertEquals(c19.at("d4"), c19.transform(3, c19.at("q4")));
+		assertEquals(c19.at("c16"), c19.transform(4, c19.at("q3")));
+		assertEquals(PASS, c19.transform(5, PASS));
+		for (int t = 0; t < SYMMETRIES; t++) {
+			for (short p : c5.getAllPointsOnBoard()) {
+				assertEquals(p, c5.transform(c5.getInverseSymmetry(t),
+						c5.transform(t, p)));
+			}
+		}
+	}
+
 }
@@ -0,0 +1,438 @@
+package edu.lclark.orego.core;
+
+import static edu.lclark.orego.core.CoordinateSystem.FIRST_DIAGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.FIRST_ORTHOGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.LAST_DIAGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.LAST_ORTHOGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
+import static edu.lclark.orego.core.Legality.GAME_TOO_LONG;
+import static edu.lclark.orego.core.Legality.KO_VIOLATION;
+import static edu.lclark.orego.core.Legality.OK;
+import static edu.lclark.orego.core.Legality.SUICIDE;
+import static edu.lclark.orego.core.NonStoneColor.OFF_BOARD;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+
+import java.io.Serializable;
+
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * A stripped-down board for the fast part of a playout. It is seeded from a
+ * Board by copyDataFrom() and then only supports playFast() and pass(). It
+ * keeps pseudo-liberties rather than exact liberty sets, ignores superko, has
+ * no observers, and cannot undo moves.
+ * <p>
+ * The pseudo-liberties of a chain are the pairs (stone, vacant neighbor), so a
+ * point can be counted more than once. Along with their number, the sum and
+ * sum of squares of these points are kept. A chain is in atari exactly when
+ * all of its pseudo-liberties are the same point, i.e., when count * sum of
+ * squares == sum * sum.
+ */
+@SuppressWarnings("serial")
+public final class PlayoutBoard implements Serializable {
+
+	/** Colors indexed by their index() values. */
+	private static final Color[] COLORS = { BLACK, WHITE, VACANT, OFF_BOARD };
+
+	/** Value of colors for a vacant point. */
+	private static final byte VACANT_INDEX = (byte) VACANT.index();
+
+	/**
+	 * Identifier of the chain for each point (location of the "root" stone in
+	 * that chain). The chain id of a vacant point is the point's own location.
+	 */
+	private final short[] chainIds;
+
+	/** Next "pointers" for each point, linking points into chains. */
+	private final short[] chainNextPoints;
+
+	/** Color of each point, as given by Color.index(). */
+	private final byte[] colors;
+
+	/** The color to play next. */
+	private StoneColor colorToPlay;
+
+	/** Coordinate system based on board width. */
+	private final CoordinateSystem coords;
+
+	/**
+	 * Number of effective diagonal enemies at each point due to being on the
+	 * edge. (This is 1 at an edge, 0 elsewhere.)
+	 *
+	 * @see edu.lclark.orego.feature.NotEyeLike
+	 */
+	private final int[] edgeEnemies;
+
+	/** The point, if any, where the simple ko rule prohibits play. */
+	private short koPoint;
+
+	/** Number of consecutive passes just played. */
+	private short passes;
+
+	/** Number of pseudo-liberties of each chain, stored at its root. */
+	private final int[] pseudoLibertyCounts;
+
+	/** Sum of the pseudo-liberties of each chain, stored at its root. */
+	private final int[] pseudoLibertySums;
+
+	/**
+	 * Sum of the squares of the pseudo-liberties of each chain, stored at its
+	 * root.
+	 */
+	private final int[] pseudoLibertySquareSums;
+
+	/** Number of stones of each color. */
+	private final int[] stoneCounts;
+
+	/** The current turn number. */
+	private int turn;
+
+	/** The set of vacant points. */
+	private final ShortSet vacantPoints;
+
+	public PlayoutBoard(int width) {
+		coords = CoordinateSystem.forWidth(width);
+		final int extended = coords.getFirstPointBeyondExtendedBoard();
+		chainIds = new short[extended];
+		chainNextPoints = new short[extended];
+		colors = new byte[extended];
+		java.util.Arrays.fill(colors, (byte) OFF_BOARD.index());
+		pseudoLibertyCounts = new int[extended];
+		pseudoLibertySums = new int[extended];
+		pseudoLibertySquareSums = new int[extended];
+		stoneCounts = new int[2];
+		vacantPoints = new ShortSet(coords.getFirstPointBeyondBoard());
+		edgeEnemies = new int[coords.getFirstPointBeyondBoard()];
+		for (final short p : coords.getAllPointsOnBoard()) {
+			for (int i = FIRST_DIAGONAL_NEIGHBOR; i <= LAST_DIAGONAL_NEIGHBOR; i++) {
+				if (!coords.isOnBoard(coords.getNeighbors(p)[i])) {
+					edgeEnemies[p] = 1;
+				}
+			}
+		}
+	}
+
+	/** Adds the pseudo-liberty p to the chain rooted at root. */
+	private void addPseudoLiberty(short root, short p) {
+		pseudoLibertyCounts[root]++;
+		pseudoLibertySums[root] += p;
+		pseudoLibertySquareSums[root] += p * p;
+	}
+
+	/** Removes the chain rooted at root from the board. */
+	private void captureChain(short root) {
+		final int enemy = colors[root];
+		short s = root;
+		do {
+			colors[s] = VACANT_INDEX;
+			vacantPoints.addKnownAbsent(s);
+			stoneCounts[enemy]--;
+			s = chainNextPoints[s];
+		} while (s != root);
+		// The vacated points are new pseudo-liberties of their neighbors
+		do {
+			final short[] neighbors = coords.getNeighbors(s);
+			for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+				final short n = neighbors[i];
+				if (colors[n] == BLACK.index() || colors[n] == WHITE.index()) {
+					addPseudoLiberty(chainIds[n], s);
+				}
+			}
+			final short next = chainNextPoints[s];
+			chainIds[s] = s;
+			s = next;
+		} while (s != root);
+	}
+
+	/** Makes this board a copy of the position on board. */
+	public void copyDataFrom(Board board) {
+		java.util.Arrays.fill(pseudoLibertyCounts, 0);
+		java.util.Arrays.fill(pseudoLibertySums, 0);
+		java.util.Arrays.fill(pseudoLibertySquareSums, 0);
+		stoneCounts[0] = 0;
+		stoneCounts[1] = 0;
+		final short[] pointsOnBoard = coords.getAllPointsOnBoard();
+		for (final short p : pointsOnBoard) {
+			final Color color = board.getColorAt(p);
+			colors[p] = (byte) color.index();
+			if (color == VACANT) {
+				chainIds[p] = p;
+			} else {
+				chainIds[p] = board.getChainRoot(p);
+				chainNextPoints[p] = board.getChainNextPoint(p);
+				stoneCounts[color.index()]++;
+			}
+		}
+		for (final short p : pointsOnBoard) {
+			if (colors[p] != VACANT_INDEX) {
+				final short[] neighbors = coords.getNeighbors(p);
+				for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+					final short n = neighbors[i];
+					if (colors[n] == VACANT_INDEX) {
+						addPseudoLiberty(chainIds[p], n);
+					}
+				}
+			}
+		}
+		vacantPoints.copyDataFrom(board.getVacantPoints());
+		colorToPlay = board.getColorToPlay();
+		koPoint = board.getKoPoint();
+		passes = board.getPasses();
+		turn = board.getTurn();
+	}
+
+	/** Returns the color at point p. */
+	public Color getColorAt(short p) {
+		return COLORS[colors[p]];
+	}
+
+	/** Returns the color to play next. */
+	public StoneColor getColorToPlay() {
+		return colorToPlay;
+	}
+
+	/** Returns the CoordinateSystem associated with this board. */
+	public CoordinateSystem getCoordinateSystem() {
+		return coords;
+	}
+
+	/**
+	 * Returns the number of consecutive passes ending the move sequence so far.
+	 */
+	public short getPasses() {
+		return passes;
+	}
+
+	/** Returns the number of stones of color on the board. */
+	public int getStoneCount(StoneColor color) {
+		return stoneCounts[color.index()];
+	}
+
+	/** Returns the current turn number. */
+	public int getTurn() {
+		return turn;
+	}
+
+	/** Returns the set of vacant points on this board. */
+	public ShortSet getVacantPoints() {
+		return vacantPoints;
+	}
+
+	/**
+	 * Returns true if the chain rooted at root has exactly one liberty. This
+	 * is true when its pseudo-liberties are all the same point.
+	 */
+	private boolean isInAtari(short root) {
+		final long count = pseudoLibertyCounts[root];
+		final long sum = pseudoLibertySums[root];
+		return count > 0 && count * pseudoLibertySquareSums[root] == sum * sum;
+	}
+
+	/**
+	 * Returns true if p is a vacant point that is not "eyelike" for the color to
+	 * play. This is the same test as NotEyeLike.
+	 *
+	 * @see edu.lclark.orego.feature.NotEyeLike
+	 */
+	public boolean isNotEyeLike(short p) {
+		assert colors[p] == VACANT_INDEX;
+		final int friendly = colorToPlay.index();
+		final short[] neighbors = coords.getNeighbors(p);
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final byte color = colors[neighbors[i]];
+			if (color != friendly && color != OFF_BOARD.index()) {
+				return true;
+			}
+		}
+		int count = edgeEnemies[p];
+		final int enemy = colorToPlay.opposite().index();
+		for (int i = FIRST_DIAGONAL_NEIGHBOR; i <= LAST_DIAGONAL_NEIGHBOR; i++) {
+			if (colors[neighbors[i]] == enemy) {
+				count++;
+				if (count >= 2) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Merges the chain rooted at appendage into the chain rooted at base.
+	 */
+	private void mergeChains(short base, short appendage) {
+		short active = appendage;
+		do {
+			chainIds[active] = base;
+			active = chainNextPoints[active];
+		} while (active != appendage);
+		final short temp = chainNextPoints[base];
+		chainNextPoints[base] = chainNextPoints[appendage];
+		chainNextPoints[appendage] = temp;
+		pseudoLibertyCounts[base] += pseudoLibertyCounts[appendage];
+		pseudoLibertySums[base] += pseudoLibertySums[appendage];
+		pseudoLibertySquareSums[base] += pseudoLibertySquareSums[appendage];
+	}
+
+	/** Plays a pass move. */
+	public void pass() {
+		koPoint = NO_POINT;
+		colorToPlay = colorToPlay.opposite();
+		passes++;
+		turn++;
+	}
+
+	/**
+	 * Plays a stone at p, which must be a vacant point on the board, if that is
+	 * legal under the simple ko rule. Has no effect if the move is illegal.
+	 * Returns the legality of the move.
+	 */
+	public Legality playFast(short p) {
+		assert colors[p] == VACANT_INDEX;
+		if (turn >= coords.getMaxMovesPerGame() - 2) {
+			return GAME_TOO_LONG;
+		}
+		if (p == koPoint) {
+			return KO_VIOLATION;
+		}
+		final int friendly = colorToPlay.index();
+		final int enemy = colorToPlay.opposite().index();
+		final short[] neighbors = coords.getNeighbors(p);
+		boolean suicide = true;
+		boolean surrounded = true;
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final short n = neighbors[i];
+			final byte color = colors[n];
+			if (color == VACANT_INDEX) {
+				suicide = false;
+				surrounded = false;
+			} else if (color == friendly) {
+				// A chain in atari has p as its last liberty
+				suicide &= isInAtari(chainIds[n]);
+				surrounded = false;
+			} else if (color == enemy) {
+				suicide &= !isInAtari(chainIds[n]);
+			}
+		}
+		if (suicide) {
+			return SUICIDE;
+		}
+		// Place the stone as a one-stone chain
+		colors[p] = (byte) friendly;
+		vacantPoints.remove(p);
+		stoneCounts[friendly]++;
+		chainIds[p] = p;
+		chainNextPoints[p] = p;
+		pseudoLibertyCounts[p] = 0;
+		pseudoLibertySums[p] = 0;
+		pseudoLibertySquareSums[p] = 0;
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final short n = neighbors[i];
+			final byte color = colors[n];
+			if (color == VACANT_INDEX) {
+				addPseudoLiberty(p, n);
+			} else if (color == friendly || color == enemy) {
+				removePseudoLiberty(chainIds[n], p);
+			}
+		}
+		// Merge with friendly neighbors
+		short root = p;
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final short n = neighbors[i];
+			if (colors[n] == friendly && chainIds[n] != root) {
+				final short other = chainIds[n];
+				if (pseudoLibertyCounts[other] >= pseudoLibertyCounts[root]) {
+					mergeChains(other, root);
+					root = other;
+				} else {
+					mergeChains(root, other);
+				}
+			}
+		}
+		// Capture enemy neighbors with no liberties left
+		int captured = 0;
+		short lastCaptured = NO_POINT;
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final short n = neighbors[i];
+			if (colors[n] == enemy && pseudoLibertyCounts[chainIds[n]] == 0) {
+				captured += stoneCounts[enemy];
+				captureChain(chainIds[n]);
+				captured -= stoneCounts[enemy];
+				lastCaptured = n;
+			}
+		}
+		if (captured == 1 && surrounded) {
+			koPoint = lastCaptured;
+		} else {
+			koPoint = NO_POINT;
+		}
+		colorToPlay = colorToPlay.opposite();
+		passes = 0;
+		turn++;
+		return OK;
+	}
+
+	/** Removes the pseudo-liberty p from the chain rooted at root. */
+	private void removePseudoLiberty(short root, short p) {
+		pseudoLibertyCounts[root]--;
+		pseudoLibertySums[root] -= p;
+		pseudoLibertySquareSums[root] -= p * p;
+	}
+
+	/**
+	 * Returns the score under Chinese (area) rules, from black's point of
+	 * view, in the same way as ChinesePlayoutScorer. Vacant points all of
+	 * whose neighbors are of one color count for that color.
+	 *
+	 * @see edu.lclark.orego.score.ChinesePlayoutScorer
+	 */
+	public double score(double komi) {
+		double result = stoneCounts[BLACK.index()]
+				- stoneCounts[WHITE.index()] - komi;
+		for (int i = 0; i < vacantPoints.size(); i++) {
+			final short[] neighbors = coords.getNeighbors(vacantPoints.get(i));
+			boolean black = true;
+			boolean white = true;
+			for (int j = FIRST_ORTHOGONAL_NEIGHBOR; j <= LAST_ORTHOGONAL_NEIGHBOR; j++) {
+				final byte color = colors[neighbors[j]];
+				black &= color == BLACK.index() || color == OFF_BOARD.index();
+				white &= color == WHITE.index() || color == OFF_BOARD.index();
+			}
+			if (black) {
+				result++;
+			} else if (white) {
+				result--;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		String result = "";
+		for (int r = 0; r < coords.getWidth(); r++) {
+			for (int c = 0; c < coords.getWidth(); c++) {
+				result += getColorAt(coords.at(r, c)).toChar();
+			}
+			result += "\n";
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the winner (BLACK, WHITE, or VACANT for a tie) under Chinese
+	 * rules with the given komi.
+	 */
+	public Color winner(double komi) {
+		final double score = score(komi);
+		if (score > 0) {
+			return BLACK;
+		} else if (score < 0) {
+			return WHITE;
+		}
+		return VACANT;
+	}
+
+}
@@ -0,0 +1,179 @@
+package edu.lclark.orego.core;
+
+import static edu.lclark.orego.core.Legality.*;
+import static edu.lclark.orego.core.StoneColor.*;
+import static edu.lclark.orego.util.TestingTools.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.score.ChinesePlayoutScorer;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortList;
+
+public class PlayoutBoardTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private PlayoutBoard playoutBoard;
+
+	/** Delegate method to call at on coords. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		coords = board.getCoordinateSystem();
+		playoutBoard = new PlayoutBoard(5);
+	}
+
+	@Test
+	public void testSuicide() {
+		String[] before = {
+				".O.#.",
+				".##..",
+				".....",
+				".##..",
+				"#O.#.",
+		};
+		board.setUpProblem(before, WHITE);
+		playoutBoard.copyDataFrom(board);
+		assertEquals(SUICIDE, playoutBoard.playFast(at("c1")));
+		assertEquals(OK, playoutBoard.playFast(at("c5")));
+		String[] after = {
+				".OO#.",
+				".##..",
+				".....",
+				".##..",
+				"#O.#.",
+		};
+		assertEquals(asOneString(after), playoutBoard.toString());
+	}
+
+	@Test
+	public void testMultipleCapture() {
+		String[] before = {
+				".O#O.",
+				"OO#O.",
+				"##.##",
+				"OO#OO",
+				".O#O.",
+		};
+		board.setUpProblem(before, WHITE);
+		playoutBoard.copyDataFrom(board);
+		assertEquals(OK, playoutBoard.playFast(at("c3")));
+		String[] after = {
+				".O.O.",
+				"OO.O.",
+				"..O##",
+				"OO.OO",
+				".O.O.",
+		};
+		assertEquals(asOneString(after), playoutBoard.toString());
+		assertEquals(2, playoutBoard.getStoneCount(BLACK));
+		assertEquals(12, playoutBoard.getStoneCount(WHITE));
+		assertEquals(11, playoutBoard.getVacantPoints().size());
+	}
+
+	@Test
+	public void testSimpleKo() {
+		String[] before = {
+				".....",
+				".....",
+				".....",
+				"#O...",
+				".#O..",
+		};
+		board.setUpProblem(before, WHITE);
+		playoutBoard.copyDataFrom(board);
+		assertEquals(OK, playoutBoard.playFast(at("a1")));
+		assertEquals(KO_VIOLATION, playoutBoard.playFast(at("b1")));
+		playoutBoard.pass();
+		playoutBoard.pass();
+		assertEquals(OK, playoutBoard.playFast(at("b1")));
+	}
+
+	@Test
+	public void testKoPointCopied() {
+		String[] before = {
+				".....",
+				".....",
+				".....",
+				"#O...",
+				".#O..",
+		};
+		board.setUpProblem(before, WHITE);
+		board.play("a1");
+		playoutBoard.copyDataFrom(board);
+		assertEquals(KO_VIOLATION, playoutBoard.playFast(at("b1")));
+	}
+
+	@Test
+	public void testNotEyeLike() {
+		String[] before = {
+				".#...",
+				"#.#..",
+				".#...",
+				"...O.",
+				"..O.O",
+		};
+		board.setUpProblem(before, BLACK);
+		playoutBoard.copyDataFrom(board);
+		assertFalse(playoutBoard.isNotEyeLike(at("b4")));
+		assertFalse(playoutBoard.isNotEyeLike(at("a5")));
+		assertTrue(playoutBoard.isNotEyeLike(at("d1")));
+		assertTrue(playoutBoard.isNotEyeLike(at("c3")));
+	}
+
+	/** Plays the same random games on a Board and a PlayoutBoard. */
+	@Test
+	public void testMatchesBoard() {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		playoutBoard = new PlayoutBoard(9);
+		final ChinesePlayoutScorer scorer = new ChinesePlayoutScorer(board, 7.5);
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final ShortList candidates = new ShortList(coords.getArea());
+		for (int game = 0; game < 20; game++) {
+			board.clear();
+			// Play a few moves on the board before seeding the playout board
+			for (int i = 0; i < 10; i++) {
+				board.play(board.getVacantPoints().get(
+						random.nextInt(board.getVacantPoints().size())));
+			}
+			playoutBoard.copyDataFrom(board);
+			while (board.getPasses() < 2) {
+				candidates.clear();
+				candidates.addAll(board.getVacantPoints());
+				Legality legality = null;
+				while (candidates.size() > 0) {
+					final short p = candidates.removeRandom(random);
+					if (playoutBoard.isNotEyeLike(p)) {
+						legality = board.playFast(p);
+						assertEquals(legality, playoutBoard.playFast(p));
+						if (legality == OK) {
+							break;
+						}
+					}
+				}
+				if (legality != OK) {
+					board.pass();
+					playoutBoard.pass();
+				}
+				assertEquals(board.toString(), playoutBoard.toString());
+				assertEquals(board.getColorToPlay(),
+						playoutBoard.getColorToPlay());
+				assertEquals(board.getVacantPoints().size(), playoutBoard
+						.getVacantPoints().size());
+			}
+			assertEquals(scorer.score(), playoutBoard.score(7.5), 0.001);
+			assertEquals(scorer.winner(), playoutBoard.winner(7.5));
+		}
+	}
+
+}
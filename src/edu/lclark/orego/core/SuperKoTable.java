@@ -1,11 +1,13 @@
 package edu.lclark.orego.core;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * Set of Zobrist hashes (longs) from previous board positions. This is a hash
  * table, but without all of the overhead of java.util.HashSet. It only supports
- * insertion, search, and copying. Collisions are resolved by linear probing.
+ * insertion, search, copying, and removal of the most recently added keys
+ * (for undoing moves). Collisions are resolved by linear probing.
  * The special value EMPTY is always considered to be in the table.
  */
 @SuppressWarnings("serial")
@@ -30,18 +32,24 @@ public final class SuperKoTable implements Serializable {
 		data = new long[coords.getMaxMovesPerGame() * 2];
 	}
 
-	/** Adds key to this table. */
-	public void add(long key) {
+	/**
+	 * Adds key to this table.
+	 * 
+	 * @return The slot where key was stored, or -1 if key was already present.
+	 */
+	public int add(long key) {
 		if (key != EMPTY) {
 			int slot = ((int) key & IGNORE_SIGN_BIT) % data.length;
 			while (data[slot] != EMPTY) {
 				if (data[slot] == key) {
-					return;
+					return -1;
 				}
 				slot = (slot + 1) % data.length;
 			}
 			data[slot] = key;
+			return slot;
 		}
+		return -1;
 	}
 
 	/** Returns the number of slots in the table. */
@@ -77,4 +85,57 @@ public final class SuperKoTable implements Serializable {
 		System.arraycopy(that.data, 0, data, 0, data.length);
 	}
 
+	/** Copies one slot, as returned by add(), from that. */
+	void copySlotFrom(SuperKoTable that, int slot) {
+		data[slot] = that.data[slot];
+	}
+
+	/**
+	 * Replaces the contents of this table with the keys written to buffer by
+	 * writeTo(). The keys may end up in different slots than they were in the
+	 * original table, so slots returned by earlier calls to add() are no
+	 * longer valid.
+	 */
+	void readFrom(ByteBuffer buffer) {
+		clear();
+		final int n = buffer.getInt();
+		for (int i = 0; i < n; i++) {
+			add(buffer.getLong());
+		}
+	}
+
+	/**
+	 * Empties a slot returned by add(). Because of linear probing, this is only
+	 * safe if every key added after that one has already been removed.
+	 */
+	void remove(int slot) {
+		data[slot] = EMPTY;
+	}
+
+	/** Returns the number of keys in this table. */
+	int size() {
+		int result = 0;
+		for (final long key : data) {
+			if (key != EMPTY) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the number of keys in this table, followed by the keys, to
+	 * buffer.
+	 *
+	 * @see #readFrom(ByteBuffer)
+	 */
+	void writeTo(ByteBuffer buffer) {
+		buffer.putInt(size());
+		for (final long key : data) {
+			if (key != EMPTY) {
+				buffer.putLong(key);
+			}
+		}
+	}
+
 }
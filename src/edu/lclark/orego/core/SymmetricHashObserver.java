@@ -0,0 +1,150 @@
+package edu.lclark.orego.core;
+
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.CoordinateSystem.SYMMETRIES;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import edu.lclark.orego.feature.BoardObserver;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Keeps track of the Zobrist hash of each of the eight rotations and
+ * reflections of the board, so that positions that are the same except for
+ * symmetry can share a hash. The canonical hash is the smallest of the eight
+ * fancy hashes. Each move updates all eight hashes incrementally.
+ *
+ * @see CoordinateSystem#transform(int, short)
+ * @see edu.lclark.orego.book.FusekiBook
+ */
+@SuppressWarnings("serial")
+public final class SymmetricHashObserver implements BoardObserver {
+
+	private final Board board;
+
+	private final CoordinateSystem coords;
+
+	/**
+	 * Zobrist hash of the position transformed by each symmetry, not including
+	 * the ko point or color to play.
+	 */
+	private final long[] hashes;
+
+	public SymmetricHashObserver(Board board) {
+		this.board = board;
+		coords = board.getCoordinateSystem();
+		hashes = new long[SYMMETRIES];
+		board.addObserver(this);
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		java.util.Arrays.fill(hashes, SuperKoTable.EMPTY);
+		for (final short p : coords.getAllPointsOnBoard()) {
+			final Color color = board.getColorAt(p);
+			if (color instanceof StoneColor) {
+				toggle(color, p);
+			}
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final SymmetricHashObserver original = (SymmetricHashObserver) that;
+		System.arraycopy(original.hashes, 0, hashes, 0, hashes.length);
+	}
+
+	/** Returns the smallest of the fancy hashes of the symmetries. */
+	public long getCanonicalFancyHash() {
+		return getFancyHash(getCanonicalSymmetry());
+	}
+
+	/**
+	 * Returns move, made in the current position, as it would be stored with
+	 * the canonical hash. If the position is itself symmetric, several
+	 * symmetries give the canonical hash; the smallest transformation of move
+	 * is returned, so that equivalent moves are stored the same way.
+	 */
+	public short getCanonicalMove(short move) {
+		final long canonical = getCanonicalFancyHash();
+		short result = coords.transform(0, move);
+		for (int t = 1; t < SYMMETRIES; t++) {
+			if (getFancyHash(t) == canonical) {
+				final short p = coords.transform(t, move);
+				if (p < result) {
+					result = p;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the index of the symmetry whose fancy hash is smallest. To turn a
+	 * move stored with the canonical hash into a move in the current position,
+	 * apply the inverse of this symmetry.
+	 *
+	 * @see CoordinateSystem#getInverseSymmetry(int)
+	 */
+	public int getCanonicalSymmetry() {
+		int result = 0;
+		long min = getFancyHash(0);
+		for (int t = 1; t < SYMMETRIES; t++) {
+			final long h = getFancyHash(t);
+			if (h < min) {
+				min = h;
+				result = t;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the fancy hash of the position transformed by symmetry t. The
+	 * fancy hash for symmetry 0 is the same as Board.getFancyHash().
+	 */
+	public long getFancyHash(int t) {
+		long result = hashes[t];
+		final short koPoint = board.getKoPoint();
+		if (koPoint != NO_POINT) {
+			result ^= coords.getHash(board.getColorToPlay(),
+					coords.transform(t, koPoint));
+		}
+		if (board.getColorToPlay() == WHITE) {
+			result = ~result;
+		}
+		return result;
+	}
+
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		copyDataFrom(that);
+	}
+
+	/** Adds or removes a stone of color at p in all of the hashes. */
+	private void toggle(Color color, short p) {
+		for (int t = 0; t < SYMMETRIES; t++) {
+			hashes[t] ^= coords.getHash(color, coords.transform(t, p));
+		}
+	}
+
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		// Toggling a stone is its own inverse
+		update(color, location, capturedStones);
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location == PASS) {
+			return;
+		}
+		toggle(color, location);
+		final StoneColor enemy = color.opposite();
+		for (int i = 0; i < capturedStones.size(); i++) {
+			toggle(enemy, capturedStones.get(i));
+		}
+	}
+
+}
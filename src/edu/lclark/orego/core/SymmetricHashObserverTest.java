@@ -0,0 +1,99 @@
+package edu.lclark.orego.core;
+
+import static edu.lclark.orego.core.CoordinateSystem.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class SymmetricHashObserverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private SymmetricHashObserver symmetricHash;
+
+	/** Delegate method to call at on coords. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		coords = board.getCoordinateSystem();
+		symmetricHash = new SymmetricHashObserver(board);
+	}
+
+	@Test
+	public void testIdentity() {
+		assertEquals(board.getFancyHash(), symmetricHash.getFancyHash(0));
+		board.play("b2");
+		board.play("c3");
+		assertEquals(board.getFancyHash(), symmetricHash.getFancyHash(0));
+	}
+
+	@Test
+	public void testCanonicalMove() {
+		// On an empty board, all four corners are the same move
+		final short move = symmetricHash.getCanonicalMove(at("a1"));
+		assertEquals(move, symmetricHash.getCanonicalMove(at("e1")));
+		assertEquals(move, symmetricHash.getCanonicalMove(at("a5")));
+		assertEquals(move, symmetricHash.getCanonicalMove(at("e5")));
+		assertNotEquals(move, symmetricHash.getCanonicalMove(at("c3")));
+		board.play("b2");
+		final int inverse = coords.getInverseSymmetry(symmetricHash
+				.getCanonicalSymmetry());
+		assertEquals(at("b2"), coords.transform(inverse, coords.transform(
+				symmetricHash.getCanonicalSymmetry(), at("b2"))));
+	}
+
+	/**
+	 * Plays random games on boards transformed by each symmetry, checking that
+	 * all have the same canonical hash, including after captures and undo.
+	 */
+	@Test
+	public void testRandomGames() {
+		final Board[] boards = new Board[SYMMETRIES];
+		final SymmetricHashObserver[] hashes = new SymmetricHashObserver[SYMMETRIES];
+		for (int t = 0; t < SYMMETRIES; t++) {
+			boards[t] = new Board(5);
+			hashes[t] = new SymmetricHashObserver(boards[t]);
+		}
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int game = 0; game < 10; game++) {
+			for (final Board b : boards) {
+				b.clear();
+			}
+			for (int i = 0; i < 60; i++) {
+				final short p = boards[0].getVacantPoints().get(
+						random.nextInt(boards[0].getVacantPoints().size()));
+				if (boards[0].play(p) != Legality.OK) {
+					continue;
+				}
+				for (int t = 1; t < SYMMETRIES; t++) {
+					assertEquals(Legality.OK, boards[t].play(coords.transform(t, p)));
+				}
+				for (int t = 0; t < SYMMETRIES; t++) {
+					assertEquals(boards[t].getFancyHash(), hashes[t].getFancyHash(0));
+					assertEquals(hashes[0].getCanonicalFancyHash(),
+							hashes[t].getCanonicalFancyHash());
+				}
+				if (random.nextInt(4) == 0) {
+					for (final Board b : boards) {
+						b.undo();
+					}
+					for (int t = 0; t < SYMMETRIES; t++) {
+						assertEquals(boards[t].getFancyHash(), hashes[t].getFancyHash(0));
+						assertEquals(hashes[0].getCanonicalFancyHash(),
+								hashes[t].getCanonicalFancyHash());
+					}
+				}
+			}
+		}
+	}
+
+}
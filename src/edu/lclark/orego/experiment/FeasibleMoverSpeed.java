@@ -0,0 +1,65 @@
+package edu.lclark.orego.experiment;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.feature.FeasibleMovesObserver;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.move.MoverFactory;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+/**
+ * Compares the speed of the two ways of generating feasible playout moves:
+ * testing randomly-drawn vacant points with a Predicate (PredicateMover) and
+ * drawing from the candidates maintained by a FeasibleMovesObserver
+ * (FeasibleMover). As in McRunnable, each playout is undone afterward, so the
+ * observer's work on undo is included.
+ */
+public final class FeasibleMoverSpeed {
+
+	/** Number of moves played before the playouts begin. */
+	private static final int OPENING_MOVES = 10;
+
+	/** Time, in ms, for each trial. */
+	private static final int MSEC = 4000;
+
+	public static void main(String[] args) {
+		// Run each several times so that the later timings are after JIT
+		// compilation
+		for (int trial = 0; trial < 3; trial++) {
+			Board board = new Board(19);
+			System.out.println("PredicateMover: "
+					+ countPlayouts(board, MoverFactory.feasible(board))
+					+ " playouts");
+			board = new Board(19);
+			final FeasibleMovesObserver observer = new FeasibleMovesObserver(
+					board);
+			System.out.println("FeasibleMover: "
+					+ countPlayouts(board,
+							MoverFactory.feasible(board, observer))
+					+ " playouts");
+		}
+	}
+
+	/**
+	 * Returns the number of playouts mover completes on board in MSEC ms,
+	 * starting from the same random opening.
+	 */
+	private static int countPlayouts(Board board, Mover mover) {
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < OPENING_MOVES; i++) {
+			mover.selectAndPlayOneMove(random, false);
+		}
+		final int start = board.getTurn();
+		final int maxMoves = board.getCoordinateSystem().getMaxMovesPerGame();
+		int playouts = 0;
+		final long end = System.currentTimeMillis() + MSEC;
+		while (System.currentTimeMillis() < end) {
+			while (board.getPasses() < 2 && board.getTurn() < maxMoves) {
+				mover.selectAndPlayOneMove(random, true);
+			}
+			board.undoTo(start);
+			playouts++;
+		}
+		return playouts;
+	}
+
+}
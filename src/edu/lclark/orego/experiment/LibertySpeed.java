@@ -0,0 +1,108 @@
+package edu.lclark.orego.experiment;
+
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Compares the speed of the two ways of storing chain liberties: a ShortSet
+ * per point (as Board used to do) and a bitset of longs per point (as Board
+ * does now). Each representation performs the operations a playout makes
+ * most often: merging two chains' liberties, counting liberties, finding the
+ * last liberty of a chain, and copying the liberties of a whole board.
+ */
+public final class LibertySpeed {
+
+	/** Number of chains with random liberties. */
+	private static final int CHAINS = 64;
+
+	/** Number of times through the operations. */
+	private static final int ITERATIONS = 200000;
+
+	/** Maximum number of liberties for each random chain. */
+	private static final int MAX_LIBERTIES = 20;
+
+	public static void main(String[] args) {
+		final CoordinateSystem coords = CoordinateSystem.forWidth(19);
+		final int n = coords.getFirstPointBeyondBoard();
+		final int words = (n + 63) / 64;
+		final short[] points = coords.getAllPointsOnBoard();
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final ShortSet[] sets = new ShortSet[CHAINS];
+		final long[] bits = new long[CHAINS * words];
+		for (int c = 0; c < CHAINS; c++) {
+			sets[c] = new ShortSet(n);
+			final int count = 1 + random.nextInt(MAX_LIBERTIES);
+			for (int i = 0; i < count; i++) {
+				final short p = points[random.nextInt(points.length)];
+				sets[c].add(p);
+				bits[c * words + (p >>> 6)] |= 1L << p;
+			}
+		}
+		// Run each twice so that the second timings are after JIT compilation
+		for (int trial = 0; trial < 2; trial++) {
+			System.out.println("ShortSet: " + timeShortSets(sets, n)
+					+ " ms");
+			System.out.println("Bitset: " + timeBitsets(bits, words)
+					+ " ms");
+		}
+	}
+
+	/** Returns the time, in ms, to perform the operations on bitsets. */
+	private static long timeBitsets(long[] bits, int words) {
+		final long[] merged = new long[words];
+		final long[] board = new long[bits.length];
+		long checksum = 0;
+		final long before = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			final int a = (i % CHAINS) * words;
+			final int b = ((i * 7 + 3) % CHAINS) * words;
+			int count = 0;
+			for (int w = 0; w < words; w++) {
+				merged[w] = bits[a + w] | bits[b + w];
+				count += Long.bitCount(merged[w]);
+			}
+			checksum += count;
+			for (int w = 0; w < words; w++) {
+				if (merged[w] != 0) {
+					checksum += (w << 6) + Long.numberOfTrailingZeros(merged[w]);
+					break;
+				}
+			}
+			if (i % CHAINS == 0) {
+				System.arraycopy(bits, 0, board, 0, bits.length);
+			}
+		}
+		final long result = (System.nanoTime() - before) / 1000000;
+		System.out.println("(checksum " + checksum + ")");
+		return result;
+	}
+
+	/** Returns the time, in ms, to perform the operations on ShortSets. */
+	private static long timeShortSets(ShortSet[] sets, int n) {
+		final ShortSet merged = new ShortSet(n);
+		final ShortSet[] board = new ShortSet[sets.length];
+		for (int c = 0; c < sets.length; c++) {
+			board[c] = new ShortSet(n);
+		}
+		long checksum = 0;
+		final long before = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			final ShortSet a = sets[i % CHAINS];
+			final ShortSet b = sets[(i * 7 + 3) % CHAINS];
+			merged.copyDataFrom(a);
+			merged.addAll(b);
+			checksum += merged.size();
+			checksum += merged.get(0);
+			if (i % CHAINS == 0) {
+				for (int c = 0; c < sets.length; c++) {
+					board[c].copyDataFrom(sets[c]);
+				}
+			}
+		}
+		final long result = (System.nanoTime() - before) / 1000000;
+		System.out.println("(checksum " + checksum + ")");
+		return result;
+	}
+
+}
@@ -14,6 +14,7 @@ public final class PlayoutSpeed {
 				.shape(true)
 				.shapeScalingFactor(0.999f).shapeBias(10).shapeMinStones(8)
 //				.liveShape(true)
+//				.lightPlayouts(true)
 				.build();
 		player.bestMove();
 		long runs = 0;
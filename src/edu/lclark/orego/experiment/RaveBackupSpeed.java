@@ -0,0 +1,122 @@
+package edu.lclark.orego.experiment;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.mcts.McRunnable;
+import edu.lclark.orego.mcts.Player;
+import edu.lclark.orego.mcts.PlayerBuilder;
+import edu.lclark.orego.mcts.RaveMoves;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Compares the cost of finding the RAVE moves for every node along a run in
+ * two ways: walking the rest of the run from each node (as RaveNode used to
+ * do) and a single backward pass with RaveMoves (as the tree updaters do now).
+ * The runs are real 19x19 playouts from the empty board, and each is treated
+ * as passing through DEPTH tree nodes.
+ */
+public final class RaveBackupSpeed {
+
+	/** Number of tree nodes along each run. */
+	private static final int DEPTH = 16;
+
+	/** Number of playouts. */
+	private static final int PLAYOUTS = 1000;
+
+	/** Number of times through all of the playouts. */
+	private static final int REPETITIONS = 20;
+
+	public static void main(String[] args) {
+		final Player player = new PlayerBuilder().threads(1).boardWidth(19)
+				.memorySize(64).openingBook(false).build();
+		final McRunnable runnable = player.getMcRunnable(0);
+		final CoordinateSystem coords = player.getBoard()
+				.getCoordinateSystem();
+		final HistoryObserver[] histories = new HistoryObserver[PLAYOUTS];
+		final int[] turns = new int[PLAYOUTS];
+		long moves = 0;
+		for (int i = 0; i < PLAYOUTS; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.playout(false);
+			histories[i] = new HistoryObserver(coords);
+			histories[i].copyDataFrom(runnable.getHistoryObserver());
+			turns[i] = runnable.getTurn();
+			moves += turns[i];
+		}
+		System.out.println("Average playout length: " + moves / PLAYOUTS);
+		// Run each twice so that the second timings are after JIT compilation
+		for (int trial = 0; trial < 2; trial++) {
+			final double walk = timeWalks(histories, turns, coords);
+			final double pass = timeBackwardPass(histories, turns, coords);
+			System.out.printf("Walk from each node: %.2f usec per run\n",
+					walk);
+			System.out.printf("Backward pass: %.2f usec per run\n", pass);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Returns the time, in microseconds per run, to find the RAVE moves with
+	 * RaveMoves.
+	 */
+	private static double timeBackwardPass(HistoryObserver[] histories,
+			int[] turns, CoordinateSystem coords) {
+		final RaveMoves raveMoves = new RaveMoves(coords);
+		long checksum = 0;
+		final long before = System.nanoTime();
+		for (int r = 0; r < REPETITIONS; r++) {
+			for (int i = 0; i < histories.length; i++) {
+				raveMoves.reset(histories[i], turns[i]);
+				for (int t = DEPTH - 1; t >= 0; t--) {
+					final ShortSet moves = raveMoves.get(t);
+					for (int j = 0; j < moves.size(); j++) {
+						checksum += moves.get(j);
+					}
+				}
+			}
+		}
+		final long elapsed = System.nanoTime() - before;
+		System.out.println("(checksum " + checksum + ")");
+		return elapsed / 1000.0 / (REPETITIONS * histories.length);
+	}
+
+	/**
+	 * Returns the time, in microseconds per run, to find the RAVE moves by
+	 * walking from each node to the end of the run.
+	 */
+	private static double timeWalks(HistoryObserver[] histories, int[] turns,
+			CoordinateSystem coords) {
+		final ShortSet playedPoints = new ShortSet(
+				coords.getFirstPointBeyondBoard());
+		long checksum = 0;
+		final long before = System.nanoTime();
+		for (int r = 0; r < REPETITIONS; r++) {
+			for (int i = 0; i < histories.length; i++) {
+				final HistoryObserver history = histories[i];
+				for (int t = 0; t < DEPTH; t++) {
+					playedPoints.clear();
+					int u = t;
+					while (u < turns[i]) {
+						short move = history.get(u);
+						if (move != PASS && !playedPoints.contains(move)) {
+							playedPoints.addKnownAbsent(move);
+							checksum += move;
+						}
+						u++;
+						if (u >= turns[i]) {
+							break;
+						}
+						move = history.get(u);
+						playedPoints.add(move);
+						u++;
+					}
+				}
+			}
+		}
+		final long elapsed = System.nanoTime() - before;
+		System.out.println("(checksum " + checksum + ")");
+		return elapsed / 1000.0 / (REPETITIONS * histories.length);
+	}
+
+}
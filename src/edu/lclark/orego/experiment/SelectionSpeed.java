@@ -0,0 +1,100 @@
+package edu.lclark.orego.experiment;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.mcts.AbstractDescender;
+import edu.lclark.orego.mcts.McRunnable;
+import edu.lclark.orego.mcts.Player;
+import edu.lclark.orego.mcts.PlayerBuilder;
+import edu.lclark.orego.mcts.SearchNode;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Compares the cost of choosing a move from one tree node in two ways: calling
+ * searchValue for each vacant point in random order (as bestSearchMove used to
+ * do) and the bulk path now used by bestSearchMove. The node is the root of a
+ * 19x19 tree after some real searching, so its statistics are realistic.
+ */
+public final class SelectionSpeed {
+
+	/** Number of selections timed in each trial. */
+	private static final int SELECTIONS = 200000;
+
+	public static void main(String[] args) {
+		for (final boolean rave : new boolean[] { false, true }) {
+			final Player player = new PlayerBuilder().threads(1)
+					.boardWidth(19).memorySize(64).openingBook(false)
+					.msecPerMove(1000).rave(rave).build();
+			player.bestMove();
+			final McRunnable runnable = player.getMcRunnable(0);
+			runnable.copyDataFrom(player.getBoard());
+			final AbstractDescender descender = (AbstractDescender) player
+					.getDescender();
+			final SearchNode root = player.getRoot();
+			System.out.println(rave ? "RAVE:" : "UCT:");
+			// Run each twice so that the second timings are after JIT
+			// compilation
+			for (int trial = 0; trial < 2; trial++) {
+				final double each = timeEachPoint(descender, root, runnable);
+				final double bulk = timeBulk(descender, root, runnable);
+				System.out.printf("Each point: %.3f usec per selection\n",
+						each);
+				System.out.printf("Bulk: %.3f usec per selection\n", bulk);
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Returns the time, in microseconds per selection, to choose a move with
+	 * bestSearchMove.
+	 */
+	private static double timeBulk(AbstractDescender descender,
+			SearchNode node, McRunnable runnable) {
+		long checksum = 0;
+		final long before = System.nanoTime();
+		for (int i = 0; i < SELECTIONS; i++) {
+			checksum += descender.bestSearchMove(node, runnable);
+		}
+		final long elapsed = System.nanoTime() - before;
+		System.out.println("(checksum " + checksum + ")");
+		return elapsed / 1000.0 / SELECTIONS;
+	}
+
+	/**
+	 * Returns the time, in microseconds per selection, to choose a move by
+	 * calling searchValue for each vacant point in random order.
+	 */
+	private static double timeEachPoint(AbstractDescender descender,
+			SearchNode node, McRunnable runnable) {
+		final Board board = runnable.getBoard();
+		final MersenneTwisterFast random = runnable.getRandom();
+		final ShortList candidates = runnable.getCandidates();
+		long checksum = 0;
+		final long before = System.nanoTime();
+		for (int i = 0; i < SELECTIONS; i++) {
+			float bestSearchValue = descender.searchValue(node, PASS);
+			short result = PASS;
+			candidates.clear();
+			candidates.addAll(board.getVacantPoints());
+			while (candidates.size() > 0) {
+				final short p = candidates.removeRandom(random);
+				final float searchValue = descender.searchValue(node, p);
+				if (searchValue > bestSearchValue) {
+					if (runnable.isFeasible(p) && board.isLegal(p)) {
+						bestSearchValue = searchValue;
+						result = p;
+					} else {
+						node.exclude(p);
+					}
+				}
+			}
+			checksum += result;
+		}
+		final long elapsed = System.nanoTime() - before;
+		System.out.println("(checksum " + checksum + ")");
+		return elapsed / 1000.0 / SELECTIONS;
+	}
+
+}
@@ -0,0 +1,33 @@
+package edu.lclark.orego.experiment;
+
+import edu.lclark.orego.mcts.Player;
+import edu.lclark.orego.mcts.PlayerBuilder;
+
+/**
+ * Measures how playout speed scales with the number of threads, from 1 up to
+ * the number of available processors (or the number given as the first
+ * command-line argument). With a lock-free transposition table, playouts per
+ * second should keep growing with the number of cores.
+ */
+public final class ThreadScaling {
+
+	public static void main(String[] args) {
+		final int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors();
+		final int msec = 10000;
+		for (int threads = 1; threads <= maxThreads; threads++) {
+			final Player player = new PlayerBuilder().threads(threads)
+					.msecPerMove(msec).openingBook(false).build();
+			player.bestMove();
+			long runs = 0;
+			for (int i = 0; i < threads; i++) {
+				runs += player.getMcRunnable(i).getPlayoutsCompleted();
+			}
+			System.out.println(threads + " threads: " + (double) runs / msec
+					+ " kpps");
+		}
+		// This kills the thread executors inside the players
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,57 @@
+package edu.lclark.orego.experiment;
+
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.mcts.Player;
+import edu.lclark.orego.mcts.PlayerBuilder;
+import edu.lclark.orego.mcts.SearchNode;
+
+/**
+ * Compares search with and without virtual loss at 2, 4, 8, and 16 threads.
+ * For each setting, reports playouts per second per thread and the diversity
+ * of the search: the number of root moves tried more than a few times and the
+ * share of root runs spent on the most-visited move. (Playing strength must be
+ * measured separately, e.g., with GameBatch.)
+ */
+public final class VirtualLossComparison {
+
+	/** Virtual loss counts to compare. */
+	private static final int[] VIRTUAL_LOSSES = { 0, 1, 3 };
+
+	public static void main(String[] args) {
+		final int msec = 10000;
+		for (int threads = 2; threads <= 16; threads *= 2) {
+			for (final int virtualLoss : VIRTUAL_LOSSES) {
+				final Player player = new PlayerBuilder().threads(threads)
+						.msecPerMove(msec).openingBook(false)
+						.virtualLoss(virtualLoss).build();
+				player.bestMove();
+				long runs = 0;
+				for (int i = 0; i < threads; i++) {
+					runs += player.getMcRunnable(i).getPlayoutsCompleted();
+				}
+				final SearchNode root = player.getRoot();
+				final CoordinateSystem coords = player.getBoard()
+						.getCoordinateSystem();
+				int explored = 0;
+				int mostRuns = 0;
+				long totalRuns = 0;
+				for (final short p : coords.getAllPointsOnBoard()) {
+					final int r = root.getRuns(p);
+					if (r > 10) {
+						explored++;
+					}
+					mostRuns = Math.max(mostRuns, r);
+					totalRuns += r;
+				}
+				System.out.println(threads + " threads, virtual loss "
+						+ virtualLoss + ": " + (double) runs / msec / threads
+						+ " kpps per thread, " + explored
+						+ " root moves explored, " + (double) mostRuns
+						/ totalRuns + " of root runs on best move");
+			}
+		}
+		// This kills the thread executors inside the players
+		System.exit(0);
+	}
+
+}
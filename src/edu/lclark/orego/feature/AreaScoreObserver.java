@@ -0,0 +1,128 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.CoordinateSystem.FIRST_ORTHOGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.LAST_ORTHOGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.Color;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Keeps track of the Chinese (area) score, without komi, as
+ * ChinesePlayoutScorer would compute it: each stone counts for its color, as
+ * does each vacant point whose orthogonal neighbors are all of that color.
+ * Only the points whose contribution may have changed (the points played or
+ * captured and their orthogonal neighbors) are reexamined after each move.
+ *
+ * @see edu.lclark.orego.score.ChinesePlayoutScorer
+ */
+@SuppressWarnings("serial")
+public final class AreaScoreObserver implements BoardObserver {
+
+	private final Board board;
+
+	/**
+	 * The contribution of each point to the score: 1 if it counts for black,
+	 * -1 if it counts for white, 0 otherwise.
+	 */
+	private final byte[] contributions;
+
+	private final CoordinateSystem coords;
+
+	/** Black's area minus white's area. */
+	private int score;
+
+	public AreaScoreObserver(Board board) {
+		this.board = board;
+		coords = board.getCoordinateSystem();
+		contributions = new byte[coords.getFirstPointBeyondBoard()];
+		board.addObserver(this);
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		score = 0;
+		for (final short p : coords.getAllPointsOnBoard()) {
+			contributions[p] = 0;
+			refresh(p);
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final AreaScoreObserver original = (AreaScoreObserver) that;
+		System.arraycopy(original.contributions, 0, contributions, 0,
+				contributions.length);
+		score = original.score;
+	}
+
+	/**
+	 * Returns black's area minus white's area, not counting komi. This is
+	 * exact at the end of a playout (when every vacant point is an eye) and a
+	 * reasonable estimate before then.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/** Recomputes the contribution of p, which is on the board, to score. */
+	private void refresh(short p) {
+		final Color color = board.getColorAt(p);
+		final byte contribution;
+		if (color == BLACK) {
+			contribution = 1;
+		} else if (color == WHITE) {
+			contribution = -1;
+		} else if (board.hasMaxNeighborsForColor(BLACK, p)) {
+			contribution = 1;
+		} else if (board.hasMaxNeighborsForColor(WHITE, p)) {
+			contribution = -1;
+		} else {
+			contribution = 0;
+		}
+		score += contribution - contributions[p];
+		contributions[p] = contribution;
+	}
+
+	/** Recomputes the contributions of p and its neighbors. */
+	private void refreshAround(short p) {
+		refresh(p);
+		final short[] neighbors = coords.getNeighbors(p);
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final short n = neighbors[i];
+			if (coords.isOnBoard(n)) {
+				refresh(n);
+			}
+		}
+	}
+
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		copyDataFrom(that);
+	}
+
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		// The board has already been returned to its earlier state, so this is
+		// the same as update
+		update(color, location, capturedStones);
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location == PASS) {
+			return;
+		}
+		refreshAround(location);
+		for (int i = 0; i < capturedStones.size(); i++) {
+			refreshAround(capturedStones.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.move.MoverFactory;
+import edu.lclark.orego.score.ChinesePlayoutScorer;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class AreaScoreObserverTest {
+
+	private AreaScoreObserver areaScore;
+
+	private Board board;
+
+	/** Scans the board, for comparison. */
+	private ChinesePlayoutScorer scorer;
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		areaScore = new AreaScoreObserver(board);
+		scorer = new ChinesePlayoutScorer(board, 0);
+	}
+
+	@Test
+	public void testEyes() {
+		String[] diagram = {
+				".#.O.",
+				"##.OO",
+				".....",
+				"##OO.",
+				".#O.O",
+		};
+		board.setUpProblem(diagram, BLACK);
+		// Black has 6 stones and 2 eyes, white has 7 stones and 2 eyes
+		assertEquals(-1, areaScore.getScore());
+		board.play("c5");
+		assertEquals(0, areaScore.getScore());
+		assertEquals(scorer.score(), areaScore.getScore(), 0.001);
+	}
+
+	@Test
+	public void testCaptureAndUndo() {
+		String[] diagram = {
+				".#O..",
+				"#O...",
+				".....",
+				".....",
+				".....",
+		};
+		board.setUpProblem(diagram, BLACK);
+		board.play("c4");
+		board.play("e1");
+		board.play("a5");
+		assertEquals(scorer.score(), areaScore.getScore(), 0.001);
+		board.undo();
+		assertEquals(scorer.score(), areaScore.getScore(), 0.001);
+	}
+
+	/** Plays and takes back random games, checking against a full scan. */
+	@Test
+	public void testRandomGames() {
+		board = new Board(9);
+		areaScore = new AreaScoreObserver(board);
+		scorer = new ChinesePlayoutScorer(board, 0);
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final Mover mover = MoverFactory.simpleRandom(board);
+		for (int game = 0; game < 10; game++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random, true);
+				assertEquals(scorer.score(), areaScore.getScore(), 0.001);
+				if (random.nextInt(4) == 0 && board.getTurn() > 1) {
+					board.undo();
+					assertEquals(scorer.score(), areaScore.getScore(), 0.001);
+				}
+			}
+		}
+	}
+
+}
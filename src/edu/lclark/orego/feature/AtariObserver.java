@@ -7,6 +7,7 @@ import static edu.lclark.orego.core.NonStoneColor.VACANT;
 import static edu.lclark.orego.core.StoneColor.BLACK;
 import static edu.lclark.orego.core.StoneColor.WHITE;
 import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.Color;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.core.StoneColor;
 import edu.lclark.orego.util.ShortList;
@@ -43,11 +44,30 @@ public final class AtariObserver implements BoardObserver {
 		chainsInAtari[WHITE.index()].copyDataFrom(original.chainsInAtari[WHITE.index()]);
 	}
 
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		// The lists of chains in atari are small, so they are simply copied
+		copyDataFrom(that);
+	}
+
 	/** Returns the IDs of all the chains of a given color that are in atari. */
 	public ShortSet getChainsInAtari(StoneColor color) {
 		return chainsInAtari[color.index()];
 	}
 
+	/**
+	 * Adds the chain at p, if any, to the appropriate atari list if it is in
+	 * atari.
+	 */
+	private void addIfInAtari(short p) {
+		final Color color = board.getColorAt(p);
+		if ((color == BLACK || color == WHITE)
+				&& board.getLibertyCount(p) == 1) {
+			chainsInAtari[((StoneColor) color).index()].add(board
+					.getChainRoot(p));
+		}
+	}
+
 	/**
 	 * Removes any chains in the atari lists that are either no longer chains or
 	 * no longer in atari.
@@ -57,7 +77,7 @@ public final class AtariObserver implements BoardObserver {
 		final ShortSet chains = chainsInAtari[index];
 		for (int i = 0; i < chains.size(); i++) {
 			final short p = chains.get(i);
-			if (board.getColorAt(p) == VACANT || board.getChainRoot(p) != p || board.getLiberties(p).size() > 1) {
+			if (board.getColorAt(p) == VACANT || board.getChainRoot(p) != p || board.getLibertyCount(p) > 1) {
 				chains.remove(p);
 				i--;
 			}
@@ -70,14 +90,14 @@ public final class AtariObserver implements BoardObserver {
 		if (location != PASS) {
 			removeInvalidChains(color);
 			removeInvalidChains(color.opposite());
-			if (board.getLiberties(location).size() == 1) {
+			if (board.getLibertyCount(location) == 1) {
 				chainsInAtari[color.index()].add(board.getChainRoot(location));
 			}
 			final short[] neighbors = coords.getNeighbors(location);
 			for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
 				final short n = neighbors[i];
 				if (board.getColorAt(n) == color.opposite()
-						&& board.getLiberties(n).size() == 1) {
+						&& board.getLibertyCount(n) == 1) {
 					chainsInAtari[color.opposite().index()].add(board
 							.getChainRoot(n));
 				}
@@ -85,4 +105,25 @@ public final class AtariObserver implements BoardObserver {
 		}
 	}
 
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		if (location != PASS) {
+			removeInvalidChains(color);
+			removeInvalidChains(color.opposite());
+			// Only chains next to the move or the stones it captured (including
+			// those captured chains themselves) can have changed
+			final short[] neighbors = coords.getNeighbors(location);
+			for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+				addIfInAtari(neighbors[i]);
+			}
+			for (int i = 0; i < capturedStones.size(); i++) {
+				final short[] captureNeighbors = coords
+						.getNeighbors(capturedStones.get(i));
+				for (int j = FIRST_ORTHOGONAL_NEIGHBOR; j <= LAST_ORTHOGONAL_NEIGHBOR; j++) {
+					addIfInAtari(captureNeighbors[j]);
+				}
+			}
+		}
+	}
+
 }
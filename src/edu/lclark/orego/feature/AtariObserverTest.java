@@ -60,6 +60,26 @@ public class AtariObserverTest {
 		assertTrue(atari.getChainsInAtari(WHITE).contains(board.getChainRoot(at("a4"))));
 	}
 	
+	@Test
+	public void testUndo() {
+		String[] diagram = {
+				".O#..",
+				".##..",
+				".....",
+				".....",
+				".....",
+		};
+		board.setUpProblem(diagram, BLACK);
+		board.play("a5");
+		board.play("a4");
+		board.undo();
+		assertEquals(0, atari.getChainsInAtari(BLACK).size());
+		assertEquals(0, atari.getChainsInAtari(WHITE).size());
+		board.undo();
+		assertTrue(atari.getChainsInAtari(WHITE).contains(board.getChainRoot(at("b5"))));
+		assertEquals(0, atari.getChainsInAtari(BLACK).size());
+	}
+
 	@Test
 	public void testMultipleCaptures() {
 		String[] diagram = {
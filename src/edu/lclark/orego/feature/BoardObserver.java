@@ -22,4 +22,18 @@ public interface BoardObserver extends Serializable {
 	 */
 	public void copyDataFrom(BoardObserver that);
 
+	/**
+	 * Like copyDataFrom(), but may assume that this observer already agrees
+	 * with that about all moves before the given turn. This is called by
+	 * Board.syncFrom().
+	 */
+	public void syncFrom(BoardObserver that, int turn);
+
+	/**
+	 * Update this observer after a move is taken back. The arguments are the
+	 * same as those given to update() when the move was played. When this is
+	 * called, the board has already been returned to its state before the move.
+	 */
+	public void undo(StoneColor color, short location, ShortList capturedStones);
+
 }
@@ -68,7 +68,7 @@ public final class EscapeSuggester implements Suggester {
 				final Color color = board.getColorAt(n);
 				if (color == enemy) {
 					if (enemiesInAtari.contains(board.getChainRoot(n))) {
-						movesToEscape.add(board.getLiberties(n).get(0));
+						movesToEscape.add(board.getLastLiberty(n));
 					}
 				}
 			}
@@ -91,8 +91,8 @@ public final class EscapeSuggester implements Suggester {
 			if (board.getColorAt(n) == VACANT) {
 				tempLiberties.add(n);
 			} else if (board.getColorAt(n) == board.getColorToPlay()) {
-				final ShortSet neighborsLiberties = board.getLiberties(n);
-				if (neighborsLiberties.size() > 1) {
+				if (board.getLibertyCount(n) > 1) {
+					final ShortSet neighborsLiberties = board.getLiberties(n);
 					for (int j = 0; j < neighborsLiberties.size(); j++) {
 						tempLiberties.add(neighborsLiberties.get(j));
 						// 3 because there need to be 2 left not counting
@@ -119,7 +119,7 @@ public final class EscapeSuggester implements Suggester {
 		final ShortSet chainsInAtari = atariObserver.getChainsInAtari(colorToPlay);
 		for (int i = 0; i < chainsInAtari.size(); i++) {
 			final short chain = chainsInAtari.get(i);
-			final short p = board.getLiberties(chain).get(0);
+			final short p = board.getLastLiberty(chain);
 			if (board.getNeighborsOfColor(p, VACANT) >= 2) {
 				movesToEscape.add(p);
 			} else if (board.getNeighborsOfColor(p, colorToPlay) > 0) {
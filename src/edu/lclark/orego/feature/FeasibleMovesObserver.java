@@ -0,0 +1,161 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.ShortList;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Keeps track of the vacant points that are on the third or fourth line or
+ * near another stone. Only the points whose status may have changed (the
+ * points played or captured and the points that just became or stopped being
+ * near another stone) are reexamined after each move. This lets a Mover
+ * sample feasible moves without examining every vacant point.
+ * <p>
+ * Whether a point is eyelike or suicide is not maintained incrementally,
+ * because it can change at many points after each move. Every move in a
+ * playout is later undone, so it is cheaper for the Mover to check those
+ * conditions (with NotEyeLike and the board's legality test) only for the
+ * points actually sampled.
+ */
+@SuppressWarnings("serial")
+public final class FeasibleMovesObserver implements BoardObserver {
+
+	private final Board board;
+
+	/** Vacant points on the third or fourth line or near another stone. */
+	private final ShortSet candidates;
+
+	private final CoordinateSystem coords;
+
+	/**
+	 * Number of stones in the large-knight neighborhood of each point.
+	 *
+	 * @see NearAnotherStone
+	 */
+	private final int[] nearbyStones;
+
+	/** Large-knight neighborhoods, as used by NearAnotherStone. */
+	private final short[][] neighborhoods;
+
+	private final OnThirdOrFourthLine onThirdOrFourthLine;
+
+	public FeasibleMovesObserver(Board board) {
+		this.board = board;
+		coords = board.getCoordinateSystem();
+		final int n = coords.getFirstPointBeyondBoard();
+		candidates = new ShortSet(n);
+		nearbyStones = new int[n];
+		neighborhoods = NearAnotherStone.getNeighborhoods(coords);
+		onThirdOrFourthLine = OnThirdOrFourthLine.forWidth(coords.getWidth());
+		board.addObserver(this);
+		clear();
+	}
+
+	/**
+	 * Adds a stone at p to the counts of nearby stones, updating any point
+	 * that just became near another stone.
+	 */
+	private void addStone(short p) {
+		for (final short q : neighborhoods[p]) {
+			nearbyStones[q]++;
+			if (nearbyStones[q] == 1) {
+				update(q);
+			}
+		}
+		update(p);
+	}
+
+	@Override
+	public void clear() {
+		java.util.Arrays.fill(nearbyStones, 0);
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (board.getColorAt(p) != VACANT) {
+				for (final short q : neighborhoods[p]) {
+					nearbyStones[q]++;
+				}
+			}
+		}
+		candidates.clear();
+		for (final short p : coords.getAllPointsOnBoard()) {
+			update(p);
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final FeasibleMovesObserver original = (FeasibleMovesObserver) that;
+		candidates.copyDataFrom(original.candidates);
+		System.arraycopy(original.nearbyStones, 0, nearbyStones, 0,
+				nearbyStones.length);
+	}
+
+	/**
+	 * Returns the vacant points that are on the third or fourth line or near
+	 * another stone. Every feasible move for either color is in this set. The
+	 * set is modified as moves are played, so it should be copied before
+	 * playing moves from it.
+	 */
+	public ShortSet getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Removes a stone at p from the counts of nearby stones, updating any
+	 * point that is no longer near another stone.
+	 */
+	private void removeStone(short p) {
+		for (final short q : neighborhoods[p]) {
+			nearbyStones[q]--;
+			if (nearbyStones[q] == 0) {
+				update(q);
+			}
+		}
+		update(p);
+	}
+
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		copyDataFrom(that);
+	}
+
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		if (location == PASS) {
+			return;
+		}
+		removeStone(location);
+		for (int i = 0; i < capturedStones.size(); i++) {
+			addStone(capturedStones.get(i));
+		}
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location == PASS) {
+			return;
+		}
+		addStone(location);
+		for (int i = 0; i < capturedStones.size(); i++) {
+			removeStone(capturedStones.get(i));
+		}
+	}
+
+	/**
+	 * Adds p to or removes p from candidates. The board has already been
+	 * updated, so this is correct even in the middle of processing a move.
+	 */
+	private void update(short p) {
+		if (board.getColorAt(p) == VACANT
+				&& (nearbyStones[p] > 0 || onThirdOrFourthLine.at(p))) {
+			candidates.add(p);
+		} else if (candidates.contains(p)) {
+			candidates.remove(p);
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.move.MoverFactory;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class FeasibleMovesObserverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	/** The predicate used by PredicateMover for the same purpose. */
+	private Predicate filter;
+
+	private FeasibleMovesObserver observer;
+
+	/** Delegate method to call at on coords. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	/**
+	 * Asserts that observer's candidates agree with those of a new observer
+	 * built from scratch on a copy of board's position, and include every
+	 * move that passes the usual playout filter.
+	 */
+	private void assertMatchesFromScratch() {
+		final Board fresh = new Board(coords.getWidth());
+		final FeasibleMovesObserver expected = new FeasibleMovesObserver(fresh);
+		fresh.setUpProblem(board.toString().split("\n"),
+				board.getColorToPlay());
+		// Recompute everything rather than relying on incremental updates
+		expected.clear();
+		assertEquals(expected.getCandidates(), observer.getCandidates());
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (board.getColorAt(p) == VACANT && filter.at(p)) {
+				assertTrue(observer.getCandidates().contains(p));
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		observer = new FeasibleMovesObserver(board);
+		filter = new Conjunction(new NotEyeLike(board), new Disjunction(
+				OnThirdOrFourthLine.forWidth(coords.getWidth()),
+				new NearAnotherStone(board)));
+	}
+
+	@Test
+	public void testEmptyBoard() {
+		// Only the 3rd and 4th lines are feasible
+		assertEquals(24, observer.getCandidates().size());
+		assertTrue(observer.getCandidates().contains(at("c3")));
+		assertFalse(observer.getCandidates().contains(at("e5")));
+		assertFalse(observer.getCandidates().contains(at("a1")));
+	}
+
+	@Test
+	public void testNearStone() {
+		board.play("e5");
+		assertFalse(observer.getCandidates().contains(at("e5")));
+		assertTrue(observer.getCandidates().contains(at("e6")));
+		assertTrue(observer.getCandidates().contains(at("f7")));
+		assertFalse(observer.getCandidates().contains(at("b2")));
+		board.play("b2");
+		assertTrue(observer.getCandidates().contains(at("a1")));
+	}
+
+	@Test
+	public void testCapture() {
+		String[] diagram = {
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				"O........",
+				"#........",
+		};
+		board.setUpProblem(diagram, WHITE);
+		assertFalse(observer.getCandidates().contains(at("a1")));
+		board.play("b1");
+		// The captured point is vacant again
+		assertTrue(observer.getCandidates().contains(at("a1")));
+		assertFalse(observer.getCandidates().contains(at("b1")));
+		board.undo();
+		assertFalse(observer.getCandidates().contains(at("a1")));
+		assertTrue(observer.getCandidates().contains(at("b1")));
+	}
+
+	/** Plays and takes back random games, checking against a fresh observer. */
+	@Test
+	public void testRandomGames() {
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final Mover mover = MoverFactory.simpleRandom(board);
+		for (int game = 0; game < 5; game++) {
+			board.clear();
+			assertMatchesFromScratch();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random, true);
+				assertMatchesFromScratch();
+				if (random.nextInt(4) == 0 && board.getTurn() > 1) {
+					board.undo();
+					assertMatchesFromScratch();
+				}
+			}
+		}
+	}
+
+}
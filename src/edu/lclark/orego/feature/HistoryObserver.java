@@ -57,6 +57,12 @@ public final class HistoryObserver implements BoardObserver {
 		return history.size();
 	}
 
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		final HistoryObserver original = (HistoryObserver) that;
+		history.copyDataFrom(original.history, Math.min(turn, history.size()));
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder result = new StringBuilder();
@@ -83,4 +89,9 @@ public final class HistoryObserver implements BoardObserver {
 		}
 	}
 
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		history.removeLast();
+	}
+
 }
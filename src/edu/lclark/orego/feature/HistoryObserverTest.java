@@ -89,6 +89,17 @@ public class HistoryObserverTest {
 		assertEquals(at("a2"), copy.get(2));
 	}
 
+	@Test
+	public void testUndo() {
+		board.play("c4");
+		board.play("e1");
+		board.undo();
+		board.play("b2");
+		assertEquals(2, observer.size());
+		assertEquals(at("c4"), observer.get(0));
+		assertEquals(at("b2"), observer.get(1));
+	}
+
 	@Test
 	public void testBeforeBeginningOfGame() {
 		assertEquals(NO_POINT, observer.get(-1));
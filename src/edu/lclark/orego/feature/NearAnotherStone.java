@@ -44,6 +44,25 @@ public final class NearAnotherStone implements Predicate {
 		return java.util.Arrays.copyOf(result, count);
 	}
 
+	/**
+	 * Returns the large-knight neighborhoods around points for coords. The
+	 * first index is the point around which the neighborhood is defined. The
+	 * relation is symmetric: q is in p's neighborhood iff p is in q's.
+	 */
+	public static short[][] getNeighborhoods(CoordinateSystem coords) {
+		final int width = coords.getWidth();
+		if (NEIGHBORHOODS[width] == null) {
+			final short[] pointsOnBoard = coords.getAllPointsOnBoard();
+			final short[][] neighborhoods = new short[coords
+					.getFirstPointBeyondBoard()][];
+			for (final short p : pointsOnBoard) {
+				neighborhoods[p] = findNeighborhood(p, coords);
+			}
+			NEIGHBORHOODS[width] = neighborhoods;
+		}
+		return NEIGHBORHOODS[width];
+	}
+
 	private final Board board;
 
 	/**
@@ -54,16 +73,7 @@ public final class NearAnotherStone implements Predicate {
 
 	public NearAnotherStone(Board board) {
 		this.board = board;
-		final CoordinateSystem coords = board.getCoordinateSystem();
-		final int width = coords.getWidth();
-		if (NEIGHBORHOODS[width] == null) {
-			final short[] pointsOnBoard = coords.getAllPointsOnBoard();
-			NEIGHBORHOODS[width] = new short[coords.getFirstPointBeyondBoard()][];
-			for (final short p : pointsOnBoard) {
-				NEIGHBORHOODS[width][p] = findNeighborhood(p, coords);
-			}
-		}
-		neighborhoods = NEIGHBORHOODS[width];
+		neighborhoods = getNeighborhoods(board.getCoordinateSystem());
 	}
 
 	@Override
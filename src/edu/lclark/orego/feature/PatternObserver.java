@@ -0,0 +1,168 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.CoordinateSystem.FIRST_ORTHOGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.LAST_DIAGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.Color;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Keeps track of the 3x3 pattern around each point. A pattern is a 16-bit
+ * char holding two bits for each of the 8 neighbors (in the order given by
+ * CoordinateSystem.getNeighbors()): 0 for an enemy stone, 1 for a friendly
+ * stone, 2 for a vacant point, and 3 for an off-board point. Patterns are
+ * stored as seen by black; patterns for white are found by table lookup.
+ * <p>
+ * When a stone is placed or removed, only the patterns of the (up to 8)
+ * points around it change.
+ *
+ * @see PatternSuggester
+ * @see edu.lclark.orego.patterns.PatternExtractor
+ */
+@SuppressWarnings("serial")
+public final class PatternObserver implements BoardObserver {
+
+	/**
+	 * SWAPPED[pattern] is pattern with friendly and enemy stones exchanged,
+	 * i.e., seen by the other color.
+	 */
+	private static final char[] SWAPPED = new char[Character.MAX_VALUE + 1];
+
+	static {
+		for (int pattern = 0; pattern < SWAPPED.length; pattern++) {
+			int swapped = 0;
+			for (int i = 0; i < 8; i++) {
+				int value = (pattern >>> 2 * i) & 3;
+				if (value < 2) {
+					value ^= 1;
+				}
+				swapped |= value << 2 * i;
+			}
+			SWAPPED[pattern] = (char) swapped;
+		}
+	}
+
+	/**
+	 * Two-bit value stored for a neighbor of each color (indexed by color
+	 * index), as seen by black.
+	 */
+	private static final int[] VALUES = { 1, 0, 2, 3 };
+
+	/**
+	 * Returns the index of the neighbor of p's ith neighbor that is p. For
+	 * example, p is the south neighbor of its north neighbor.
+	 */
+	private static int opposite(int i) {
+		return i < 4 ? 3 - i : 11 - i;
+	}
+
+	private final Board board;
+
+	private final CoordinateSystem coords;
+
+	/** Patterns around each point, as seen by black. */
+	private final char[] patterns;
+
+	public PatternObserver(Board board) {
+		this.board = board;
+		coords = board.getCoordinateSystem();
+		patterns = new char[coords.getFirstPointBeyondBoard()];
+		board.addObserver(this);
+		clear();
+	}
+
+	/**
+	 * Returns the pattern around p, computed from scratch, as seen by the
+	 * color to play. This is slower than getPattern().
+	 */
+	char calculatePattern(short p) {
+		char pattern = 0;
+		final short[] neighbors = coords.getNeighbors(p);
+		for (int i = 0; i < neighbors.length; i++) {
+			final Color color = board.getColorAt(neighbors[i]);
+			if (color == board.getColorToPlay()) {
+				// Friendly stone at this neighbor
+				pattern |= 1 << i * 2;
+			} else if (color != board.getColorToPlay().opposite()) {
+				// neighbor is vacant or off board
+				pattern |= color.index() << i * 2;
+			} // else do nothing, no need to OR 0 with 0
+		}
+		return pattern;
+	}
+
+	@Override
+	public void clear() {
+		for (final short p : coords.getAllPointsOnBoard()) {
+			char pattern = 0;
+			final short[] neighbors = coords.getNeighbors(p);
+			for (int i = 0; i < neighbors.length; i++) {
+				pattern |= VALUES[board.getColorAt(neighbors[i]).index()] << 2 * i;
+			}
+			patterns[p] = pattern;
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final PatternObserver original = (PatternObserver) that;
+		System.arraycopy(original.patterns, 0, patterns, 0, patterns.length);
+	}
+
+	/** Returns the pattern around p as seen by the color to play. */
+	public char getPattern(short p) {
+		return getPattern(p, board.getColorToPlay());
+	}
+
+	/** Returns the pattern around p as seen by color. */
+	public char getPattern(short p, StoneColor color) {
+		if (color == BLACK) {
+			return patterns[p];
+		}
+		return SWAPPED[patterns[p]];
+	}
+
+	/**
+	 * Updates the patterns around p to reflect the current color of p.
+	 */
+	private void refresh(short p) {
+		final int value = VALUES[board.getColorAt(p).index()];
+		final short[] neighbors = coords.getNeighbors(p);
+		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_DIAGONAL_NEIGHBOR; i++) {
+			final short n = neighbors[i];
+			if (coords.isOnBoard(n)) {
+				final int shift = 2 * opposite(i);
+				patterns[n] = (char) (patterns[n] & ~(3 << shift) | value << shift);
+			}
+		}
+	}
+
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		copyDataFrom(that);
+	}
+
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		update(color, location, capturedStones);
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		// The board has already been updated, so the same code handles
+		// playing and undoing a move
+		if (location == PASS) {
+			return;
+		}
+		refresh(location);
+		for (int i = 0; i < capturedStones.size(); i++) {
+			refresh(capturedStones.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.move.MoverFactory;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class PatternObserverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private PatternObserver patterns;
+
+	/** Delegate method to call at on coords. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	/**
+	 * Asserts that the incremental pattern around every point agrees with the
+	 * pattern computed from scratch.
+	 */
+	private void assertMatchesCalculation() {
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(patterns.calculatePattern(p), patterns.getPattern(p));
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		coords = board.getCoordinateSystem();
+		patterns = new PatternObserver(board);
+	}
+
+	@Test
+	public void testEmptyBoard() {
+		// All vacant
+		assertEquals(43690, patterns.getPattern(at("c3")));
+		assertMatchesCalculation();
+	}
+
+	@Test
+	public void testColors() {
+		String[] diagram = {
+				".....",
+				".....",
+				"..#O.",
+				".....",
+				".....",
+		};
+		board.setUpProblem(diagram, BLACK);
+		// East neighbor (index 2) of c3 is white, west neighbor (index 1) of d3
+		// is black
+		assertEquals(0, (patterns.getPattern(at("c3"), BLACK) >>> 4) & 3);
+		assertEquals(1, (patterns.getPattern(at("c3"), WHITE) >>> 4) & 3);
+		assertEquals(1, (patterns.getPattern(at("d3"), BLACK) >>> 2) & 3);
+		assertEquals(0, (patterns.getPattern(at("d3"), WHITE) >>> 2) & 3);
+		assertMatchesCalculation();
+	}
+
+	@Test
+	public void testCapture() {
+		String[] diagram = {
+				".#O..",
+				"#O...",
+				".....",
+				".....",
+				".....",
+		};
+		board.setUpProblem(diagram, BLACK);
+		board.play("c4");
+		board.play("e1");
+		board.play("a5");
+		assertMatchesCalculation();
+		board.undo();
+		assertMatchesCalculation();
+	}
+
+	/** Plays and takes back random games, checking every pattern. */
+	@Test
+	public void testRandomGames() {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		patterns = new PatternObserver(board);
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final Mover mover = MoverFactory.simpleRandom(board);
+		for (int game = 0; game < 5; game++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random, true);
+				assertMatchesCalculation();
+				if (random.nextInt(4) == 0 && board.getTurn() > 1) {
+					board.undo();
+					assertMatchesCalculation();
+				}
+			}
+		}
+	}
+
+}
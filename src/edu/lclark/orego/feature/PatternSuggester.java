@@ -7,7 +7,6 @@ import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 
 import edu.lclark.orego.core.Board;
-import edu.lclark.orego.core.Color;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.util.BitVector;
 import edu.lclark.orego.util.ShortSet;
@@ -34,16 +33,22 @@ public final class PatternSuggester implements Suggester {
 	private final HistoryObserver history;
 
 	private final ShortSet moves;
+
+	/** Keeps track of the pattern around each point. */
+	private final PatternObserver patterns;
 	
-	public PatternSuggester(Board board, HistoryObserver history) {
-		this(board, history, 0);
+	public PatternSuggester(Board board, HistoryObserver history,
+			PatternObserver patterns) {
+		this(board, history, patterns, 0);
 	}
 
-	public PatternSuggester(Board board, HistoryObserver history, int bias) {
+	public PatternSuggester(Board board, HistoryObserver history,
+			PatternObserver patterns, int bias) {
 		this.bias = bias;
 		this.board = board;
 		coords = board.getCoordinateSystem();
 		this.history = history;
+		this.patterns = patterns;
 		moves = new ShortSet(coords.getFirstPointBeyondBoard());
 		try (ObjectInputStream objectInputStream = new ObjectInputStream(
 				new FileInputStream(OREGO_ROOT
@@ -62,23 +67,6 @@ public final class PatternSuggester implements Suggester {
 		}
 	}
 
-	/** Returns a 16-bit char indicating the colors of the 8 points around p. */
-	private char calculatePattern(short p) {
-		char pattern = 0;
-		final short[] neighbors = coords.getNeighbors(p);
-		for (int i = 0; i < neighbors.length; i++) {
-			final Color color = board.getColorAt(neighbors[i]);
-			if (color == board.getColorToPlay()) {
-				// Friendly stone at this neighbor
-				pattern |= 1 << i * 2;
-			} else if (color != board.getColorToPlay().opposite()) {
-				// neighbor is vacant or off board
-				pattern |= color.index() << i * 2;
-			} // else do nothing, no need to OR 0 with 0
-		}
-		return pattern;
-	}
-
 	@Override
 	public int getBias() {
 		return bias;
@@ -98,7 +86,7 @@ public final class PatternSuggester implements Suggester {
 		final short[] neighbors = coords.getNeighbors(p);
 		for (final short n : neighbors) {
 			if (board.getColorAt(n) == VACANT) {
-				final char pattern = calculatePattern(n);
+				final char pattern = patterns.getPattern(n);
 				if (goodPatterns.get(pattern)) {
 					moves.add(n);
 				}
@@ -19,7 +19,7 @@ public class PatternSuggesterTest {
 	public void setUp() throws Exception {
 		board = new Board(5);
 		history = new HistoryObserver(board);
-		patterns = new PatternSuggester(board, history);
+		patterns = new PatternSuggester(board, history, new PatternObserver(board));
 	}
 
 	@Test
@@ -52,7 +52,23 @@ public final class StoneCountObserver implements BoardObserver {
 	 * other color. If there is no such color, returns null.
 	 */
 	public StoneColor mercyWinner() {
-		final int difference = counts[BLACK.index()] - counts[WHITE.index()];
+		return mercyWinner(counts[BLACK.index()], counts[WHITE.index()]);
+	}
+
+	/**
+	 * Like mercyWinner(), but for the given stone counts rather than those on
+	 * the observed board. Used for playouts on a PlayoutBoard.
+	 */
+	public StoneColor mercyWinner(int blackStones, int whiteStones) {
+		return mercyWinner(blackStones - whiteStones);
+	}
+
+	/**
+	 * Like mercyWinner(), but for the given difference between black's and
+	 * white's scores. This may be an area score (e.g., from an
+	 * AreaScoreObserver) rather than a difference in stone counts.
+	 */
+	public StoneColor mercyWinner(int difference) {
 		if (difference >= blackMercyThreshold) {
 			return BLACK;
 		} else if (difference <= whiteMercyThreshold) {
@@ -61,6 +77,11 @@ public final class StoneCountObserver implements BoardObserver {
 		return null;
 	}
 
+	@Override
+	public void syncFrom(BoardObserver that, int turn) {
+		copyDataFrom(that);
+	}
+
 	@Override
 	public void update(StoneColor color, short location,
 			ShortList capturedStones) {
@@ -70,4 +91,12 @@ public final class StoneCountObserver implements BoardObserver {
 		}
 	}
 
+	@Override
+	public void undo(StoneColor color, short location, ShortList capturedStones) {
+		if (location != PASS) {
+			counts[color.index()]--;
+			counts[color.opposite().index()] += capturedStones.size();
+		}
+	}
+
 }
@@ -37,6 +37,22 @@ public class StoneCountObserverTest {
 		assertEquals(6, counter.getCount(WHITE));
 	}
 
+	@Test
+	public void testUndo() {
+		String[] diagram = {
+				"##.#O",
+				"OO.O.",
+				"....O",
+				".#...",
+				".#...",
+		};
+		board.setUpProblem(diagram, WHITE);
+		board.play("c5");
+		board.undo();
+		assertEquals(5, counter.getCount(BLACK));
+		assertEquals(5, counter.getCount(WHITE));
+	}
+
 	@Test
 	public void testClear() {
 		String[] diagram = {
@@ -82,6 +98,16 @@ public class StoneCountObserverTest {
 		assertEquals(WHITE, counter.mercyWinner());	
 	}
 
+	@Test
+	public void testMercyForDifference() {
+		// With komi 7.5 on a 5x5 board, black needs 23 points more than white
+		// and white needs 8 more than black
+		assertEquals(BLACK, counter.mercyWinner(23));
+		assertNull(counter.mercyWinner(22));
+		assertEquals(WHITE, counter.mercyWinner(-8));
+		assertNull(counter.mercyWinner(-7));
+	}
+
 	@Test
 	public void testMercyAfterCopying() {
 		Board boardCopy = new Board(5);
@@ -6,7 +6,6 @@ import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.CoordinateSystem.RESIGN;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.thirdparty.MersenneTwisterFast;
-import edu.lclark.orego.util.ShortList;
 import edu.lclark.orego.util.ShortSet;
 
 /** Always chooses the move with the best win rate, with no exploration. */
@@ -15,20 +14,83 @@ public abstract class AbstractDescender implements TreeDescender {
 	/** If our win rate falls below this, resign. */
 	public static final float RESIGN_PARAMETER = 0.1f;
 
+	/**
+	 * Under progressive widening, each move is admitted after this many times
+	 * as many runs as the previous one, as in Coulom's "Computing Elo Ratings
+	 * of Move Patterns in the Game of Go".
+	 */
+	public static final double WIDENING_GROWTH = 1.4;
+
 	/**
 	 * Bias is not updated unless there have been this many runs through a node.
 	 */
 	private final int biasDelay;
 
+	/**
+	 * Computes biases off the search threads, or null if they are computed
+	 * inline.
+	 */
+	private BiasWorker biasWorker;
+
 	private final Board board;
 
 	private final TranspositionTable table;
 
+	/**
+	 * Under progressive widening, the kth move beyond the first wideningMoves
+	 * is admitted once a node has had unlockRuns[k] runs since it was ranked.
+	 */
+	private int[] unlockRuns;
+
+	/**
+	 * Number of best moves listed at each node with more than biasDelay runs,
+	 * or 0 if these lists are not used.
+	 */
+	private int topMoveCount;
+
+	/** Number of runs after which a node's list of best moves is refreshed. */
+	private int topMovesInterval;
+
+	/**
+	 * Number of runs added as a virtual loss to each move selected during a
+	 * descent. If this is 0, there are no virtual losses.
+	 */
+	private final int virtualLoss;
+
+	/**
+	 * Win rate of each virtual run: 0 for a true loss, 0.5 for a virtual tie.
+	 */
+	private final float virtualLossWinRate;
+
+	/**
+	 * Number of moves initially admitted from each node's ranking under
+	 * progressive widening, or 0 if progressive widening is not used.
+	 */
+	private int wideningMoves;
+
+	/** Runs after ranking at which the first additional move is admitted. */
+	private int wideningRuns;
+
 	public AbstractDescender(Board board, TranspositionTable table,
 			int biasDelay) {
+		this(board, table, biasDelay, 0, 0);
+	}
+
+	/**
+	 * @param virtualLoss
+	 *            Number of virtual runs added to each move as a thread
+	 *            descends through it, so that other threads tend to explore
+	 *            elsewhere. They are removed when the tree is updated.
+	 * @param virtualLossWinRate
+	 *            Win rate of those virtual runs.
+	 */
+	public AbstractDescender(Board board, TranspositionTable table,
+			int biasDelay, int virtualLoss, float virtualLossWinRate) {
 		this.board = board;
 		this.table = table;
 		this.biasDelay = biasDelay;
+		this.virtualLoss = virtualLoss;
+		this.virtualLossWinRate = virtualLossWinRate;
 	}
 
 	@Override
@@ -63,59 +125,88 @@ public abstract class AbstractDescender implements TreeDescender {
 		return result;
 	}
 
-	/** Returns the best move to make from here during a playout. */
-	short bestSearchMove(SearchNode node, McRunnable runnable) {
+	/**
+	 * Returns the best move to make from here during a playout. All of the
+	 * vacant points are evaluated at once by searchValues; moves are then
+	 * taken in decreasing order of value, excluding any that turn out to be
+	 * infeasible or illegal, until one beats passing.
+	 * <p>
+	 * If top moves are in use, a node with more than biasDelay runs keeps a
+	 * list of its best moves, which is consulted first. The full evaluation is
+	 * only done if none of the listed moves beats the best move outside the
+	 * list (as of when the list was made), or if the list has not been
+	 * refreshed in topMovesInterval runs.
+	 * <p>
+	 * If progressive widening is in use, only the moves admitted from the
+	 * node's MoveRanking are considered, unless none of them beats passing.
+	 */
+	public short bestSearchMove(SearchNode node, McRunnable runnable) {
 		final Board runnableBoard = runnable.getBoard();
-		final MersenneTwisterFast random = runnable.getRandom();
 		short result = node.getWinningMove();
 		if (result != NO_POINT && runnableBoard.isLegal(result)) {
 			// The isLegal() check is necessary to avoid superko violations
 			return result;
 		}
-		float bestSearchValue = searchValue(node, PASS);
-		result = PASS;
-		final ShortList candidates = runnable.getCandidates();
-		candidates.clear();
-		candidates.addAll(runnableBoard.getVacantPoints());
-		while (candidates.size() > 0) {
-			final short p = candidates.removeRandom(random);
-			final float searchValue = searchValue(node, p);
-			if (searchValue > bestSearchValue) {
-				if (runnable.isFeasible(p) && runnableBoard.isLegal(p)) {
-					bestSearchValue = searchValue;
-					result = p;
-				} else {
-					node.exclude(p);
+		final float passSearchValue = searchValue(node, PASS);
+		final SearchValues values = runnable.getSearchValues();
+		final MoveRanking ranking = widen(node, runnableBoard);
+		final boolean useTopMoves = topMoveCount > 0
+				&& node.getTotalRuns() > biasDelay;
+		if (useTopMoves) {
+			final TopMoves top = node.getTopMoves();
+			if (top != null
+					&& node.getTotalRuns() - top.getRefreshedAt() < topMovesInterval) {
+				values.setMoves(top.getMoves(), top.size());
+				searchValues(node, values);
+				result = bestSearchMove(node, runnable, values,
+						Math.max(passSearchValue, top.getThreshold()));
+				if (result != NO_POINT) {
+					return result;
 				}
+				// A move outside the list might be better, so look at all moves
 			}
-		} 
-		
-		
-//		
-//		
-//		final ShortSet vacantPoints = runnableBoard.getVacantPoints();
-//		
-//		
-//		int start;
-//		start = random.nextInt(vacantPoints.size());
-//		int i = start;
-//		final int skip = PRIMES[random.nextInt(PRIMES.length)];
-//		do {
-//			final short move = vacantPoints.get(i);
-//			final float searchValue = searchValue(node, move);
-//			if (searchValue > bestSearchValue) {
-//				if (runnable.isFeasible(move) && runnableBoard.isLegal(move)) {
-//					bestSearchValue = searchValue;
-//					result = move;
-//				} else {
-//					node.exclude(move);
-//				}
-//			}
-//			// Advancing by a random prime skips through the array
-//			// in a manner analogous to double hashing.
-//			i = (i + skip) % vacantPoints.size();
-//		} while (i != start);
-		return result;
+		}
+		if (ranking != null) {
+			values.setMoves(ranking.getMoves(), ranking.getAdmitted());
+		} else {
+			values.setMoves(runnableBoard.getVacantPoints());
+		}
+		searchValues(node, values);
+		if (useTopMoves) {
+			node.setTopMoves(new TopMoves(values, topMoveCount,
+					node.getTotalRuns()));
+		}
+		result = bestSearchMove(node, runnable, values, passSearchValue);
+		if (result == NO_POINT && ranking != null
+				&& ranking.getAdmitted() < ranking.size()) {
+			// None of the admitted moves beats passing, so try the rest
+			values.setMoves(runnableBoard.getVacantPoints());
+			searchValues(node, values);
+			result = bestSearchMove(node, runnable, values, passSearchValue);
+		}
+		return result == NO_POINT ? PASS : result;
+	}
+
+	/**
+	 * Returns the feasible, legal move with the highest value in values, or
+	 * NO_POINT if no such move has a value above floor. Moves found to be
+	 * infeasible or illegal are excluded from node.
+	 */
+	private static short bestSearchMove(SearchNode node, McRunnable runnable,
+			SearchValues values, float floor) {
+		final Board runnableBoard = runnable.getBoard();
+		final MersenneTwisterFast random = runnable.getRandom();
+		int i = values.argmax(random);
+		while (i >= 0 && values.getValue(i) > floor) {
+			final short p = values.getMove(i);
+			if (runnable.isFeasible(p) && runnableBoard.isLegal(p)) {
+				return p;
+			}
+			node.exclude(p);
+			values.remove(i);
+			i = values.argmax(random);
+		}
+		return NO_POINT;
 	}
 
 	@Override
@@ -136,7 +227,11 @@ public abstract class AbstractDescender implements TreeDescender {
 				return; // No child
 			}
 			if (child.getTotalRuns() > biasDelay && !child.biasUpdated()) {
-				child.updateBias(runnable);
+				if (biasWorker != null) {
+					biasWorker.enqueue(child, runnable.getBoard());
+				} else {
+					child.updateBias(runnable);
+				}
 			}
 			node = child;
 		}
@@ -178,10 +273,88 @@ public abstract class AbstractDescender implements TreeDescender {
 		return table;
 	}
 
+	/** Returns the number of best moves listed at each high-visit node. */
+	public int getTopMoveCount() {
+		return topMoveCount;
+	}
+
+	/** Returns the number of runs after which a list of best moves expires. */
+	public int getTopMovesInterval() {
+		return topMovesInterval;
+	}
+
+	/** Returns the number of moves initially admitted by widening. */
+	public int getWideningMoves() {
+		return wideningMoves;
+	}
+
+	/** Returns the runs after which widening admits its first extra move. */
+	public int getWideningRuns() {
+		return wideningRuns;
+	}
+
+	/**
+	 * Stores, in values, the search value of each of its moves from node. This
+	 * default calls searchValue for each move; subclasses override it to
+	 * evaluate their formula over the node's statistics in one loop.
+	 */
+	void searchValues(SearchNode node, SearchValues values) {
+		final short[] moves = values.getMoves();
+		final float[] result = values.getValues();
+		for (int i = 0; i < values.size(); i++) {
+			result[i] = searchValue(node, moves[i]);
+		}
+	}
+
+
+	/**
+	 * Makes descend hand nodes that need their bias updated to worker, rather
+	 * than updating them inline. If worker is null, biases are updated inline.
+	 */
+	public void setBiasWorker(BiasWorker worker) {
+		biasWorker = worker;
+	}
+
+	/**
+	 * Makes each node with more than biasDelay runs keep a list of its count
+	 * best moves, refreshed after interval runs, so that most selections need
+	 * not evaluate every move. A count of 0 turns this off.
+	 */
+	public void setTopMoves(int count, int interval) {
+		topMoveCount = count;
+		topMovesInterval = interval;
+	}
 
-	/** Selects and plays one move in the search tree. */
+	/**
+	 * Turns on progressive widening. Once a node's bias has been updated, its
+	 * moves are ranked and only the best few are considered during selection:
+	 * moves at first, one more after runs more runs, and each further one
+	 * after WIDENING_GROWTH times as many runs as the last. A moves value of 0
+	 * turns this off.
+	 */
+	public void setWidening(int moves, int runs) {
+		wideningMoves = moves;
+		wideningRuns = runs;
+		unlockRuns = new int[Math.max(0, board.getCoordinateSystem().getArea()
+				- moves)];
+		double threshold = runs;
+		for (int k = 0; k < unlockRuns.length; k++) {
+			// The cast saturates at Integer.MAX_VALUE
+			unlockRuns[k] = (int) threshold;
+			threshold *= WIDENING_GROWTH;
+		}
+	}
+
+	/**
+	 * Selects and plays one move in the search tree, adding a virtual loss to
+	 * that move if virtual losses are in use.
+	 */
 	short selectAndPlayMove(SearchNode node, McRunnable runnable) {
 		final short move = bestSearchMove(node, runnable);
+		if (virtualLoss > 0) {
+			runnable.addVirtualLoss(node, move, virtualLoss, virtualLoss
+					* virtualLossWinRate);
+		}
 		runnable.acceptMove(move);
 		return move;
 	}
@@ -191,4 +364,35 @@ public abstract class AbstractDescender implements TreeDescender {
 		return getRoot().deepToString(board, table, 0);
 	}
 
+	/**
+	 * Returns node's ranking of moves, with the number admitted brought up to
+	 * date, or null if progressive widening does not apply to node. The moves
+	 * are ranked the first time this is called after node's bias is updated.
+	 */
+	private MoveRanking widen(SearchNode node, Board runnableBoard) {
+		if (wideningMoves == 0 || !node.biasUpdated()) {
+			return null;
+		}
+		MoveRanking ranking = node.getMoveRanking();
+		if (ranking == null) {
+			ranking = new MoveRanking(node, runnableBoard.getVacantPoints(),
+					wideningMoves);
+			node.setMoveRanking(ranking);
+			return ranking;
+		}
+		final int runs = node.getTotalRuns() - ranking.getRankedAt();
+		final int before = ranking.getAdmitted();
+		int admitted = before;
+		while (admitted < ranking.size()
+				&& runs >= unlockRuns[admitted - wideningMoves]) {
+			admitted++;
+		}
+		if (admitted != before) {
+			ranking.setAdmitted(admitted);
+			// The list of top moves may be missing the new moves
+			node.setTopMoves(null);
+		}
+		return ranking;
+	}
+
 }
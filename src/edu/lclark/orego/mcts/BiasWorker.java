@@ -0,0 +1,220 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+
+/**
+ * Updates the biases of search nodes on a thread of its own, so that a search
+ * thread reaching a node with more than biasDelay runs need not stop for the
+ * Suggesters and Raters (e.g., a full-board SHAPE pattern sweep). The search
+ * thread only copies its board into one of a fixed number of snapshots and
+ * moves on; the node is searched without bias until the priors arrive.
+ * <p>
+ * The priors are computed into a scratch node and then added to the real node
+ * all at once, under the node's lock, provided it still represents the same
+ * position and has not been biased in the meantime.
+ */
+public final class BiasWorker implements Runnable {
+
+	/** A node waiting for its bias, with a snapshot of the board there. */
+	private static final class Job {
+
+		/** Snapshot of the board at the node. */
+		private final Board board;
+
+		/** Time (from System.nanoTime()) when this job was queued. */
+		private long enqueuedAt;
+
+		/** Hash of the position when this job was queued. */
+		private long fancyHash;
+
+		/** Node to be biased, or null if this job is not in use. */
+		private volatile SearchNode node;
+
+		Job(Board board) {
+			this.board = board;
+		}
+
+	}
+
+	/** Runs given to each move in a freshly cleared node. */
+	private static final int INITIAL_RUNS = 2;
+
+	/** Wins given to each move in a freshly cleared node. */
+	private static final int INITIAL_WINS = 1;
+
+	/** Number of jobs whose priors have been applied (or found stale). */
+	private final AtomicLong completedJobs;
+
+	private final CoordinateSystem coords;
+
+	/** Number of nodes not queued because all snapshots were in use. */
+	private final AtomicLong droppedJobs;
+
+	/** Jobs not currently in use. */
+	private final ArrayBlockingQueue<Job> free;
+
+	/** All jobs, for checking whether a node is already queued. */
+	private final Job[] jobs;
+
+	/** Jobs waiting to be processed. */
+	private final ArrayBlockingQueue<Job> pending;
+
+	/** Scratch node into which priors are computed. */
+	private final SimpleSearchNode priors;
+
+	/** Thread on which this worker runs. */
+	private final Thread thread;
+
+	/** Provides the Suggesters and Raters, on a copy of each snapshot. */
+	private final McRunnable runnable;
+
+	/** Total nanoseconds from queueing to completion over all jobs. */
+	private final AtomicLong totalLatency;
+
+	/**
+	 * Creates the worker and starts its thread.
+	 *
+	 * @param stuff
+	 *            The structure from which player's McRunnables were made.
+	 * @param capacity
+	 *            Number of nodes that can be waiting at once.
+	 */
+	public BiasWorker(Player player, CopiableStructure stuff, int capacity) {
+		runnable = new McRunnable(player, stuff);
+		coords = runnable.getBoard().getCoordinateSystem();
+		priors = new SimpleSearchNode(coords);
+		jobs = new Job[capacity];
+		free = new ArrayBlockingQueue<>(capacity);
+		pending = new ArrayBlockingQueue<>(capacity);
+		for (int i = 0; i < capacity; i++) {
+			// A board from a copy of stuff has the same observers as the
+			// McRunnables' boards, so they can be copied into it
+			jobs[i] = new Job(stuff.copy().get(Board.class));
+			free.add(jobs[i]);
+		}
+		completedJobs = new AtomicLong();
+		droppedJobs = new AtomicLong();
+		totalLatency = new AtomicLong();
+		thread = new Thread(this, "Bias worker");
+		// Don't keep the JVM alive just for an idle worker
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues node, whose position is on board, to have its bias updated.
+	 * Returns false if it was not queued, because it already is or because
+	 * all of the snapshots are in use; in the latter case it will be queued
+	 * on a later visit.
+	 */
+	public boolean enqueue(SearchNode node, Board board) {
+		for (final Job job : jobs) {
+			if (job.node == node) {
+				return false;
+			}
+		}
+		final Job job = free.poll();
+		if (job == null) {
+			droppedJobs.incrementAndGet();
+			return false;
+		}
+		job.board.copyDataFrom(board);
+		job.fancyHash = node.getFancyHash();
+		job.enqueuedAt = System.nanoTime();
+		job.node = node;
+		pending.add(job);
+		return true;
+	}
+
+	/** Returns the number of nodes whose bias has been computed. */
+	public long getCompletedJobs() {
+		return completedJobs.get();
+	}
+
+	/**
+	 * Returns the number of times a node could not be queued because all
+	 * snapshots were in use.
+	 */
+	public long getDroppedJobs() {
+		return droppedJobs.get();
+	}
+
+	/**
+	 * Returns the mean time, in microseconds, from queueing a node to applying
+	 * its bias.
+	 */
+	public double getMeanLatency() {
+		final long completed = completedJobs.get();
+		if (completed == 0) {
+			return 0;
+		}
+		return totalLatency.get() / 1000.0 / completed;
+	}
+
+	/** Returns the number of nodes waiting for their bias. */
+	public int getPendingJobs() {
+		return jobs.length - free.size();
+	}
+
+	/** Computes the priors for job's node and applies them. */
+	private void process(Job job) {
+		final SearchNode node = job.node;
+		runnable.copyDataFrom(job.board);
+		priors.clear(job.fancyHash, coords);
+		priors.updateBias(runnable);
+		synchronized (node) {
+			if (node.isInUse() && node.getFancyHash() == job.fancyHash
+					&& !node.biasUpdated()) {
+				for (final short p : coords.getAllPointsOnBoard()) {
+					final int runs = priors.getRuns(p) - INITIAL_RUNS;
+					if (runs != 0) {
+						node.update(p, runs, priors.getWins(p) - INITIAL_WINS);
+					}
+				}
+				node.setBiasUpdated(true);
+			}
+		}
+		totalLatency.addAndGet(System.nanoTime() - job.enqueuedAt);
+		completedJobs.incrementAndGet();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				final Job job = pending.take();
+				process(job);
+				job.node = null;
+				free.add(job);
+			}
+		} catch (final InterruptedException e) {
+			// Nothing to do; the thread simply ends
+		}
+	}
+
+	/**
+	 * Stops this worker's thread, abandoning any pending jobs, and waits for it
+	 * to end.
+	 */
+	public void shutdown() {
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (final InterruptedException e) {
+			// Stop waiting; the thread still ends
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"Bias jobs: %d pending, %d completed, %d dropped, %.1f usec mean latency",
+				getPendingJobs(), getCompletedJobs(), getDroppedJobs(),
+				getMeanLatency());
+	}
+
+}
@@ -0,0 +1,96 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class BiasWorkerTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private Player player;
+
+	private BiasWorker worker;
+
+	/** Returns a fresh node for the position on board. */
+	private SearchNode newNode() {
+		final SearchNode result = new SimpleSearchNode(coords);
+		result.clear(board.getFancyHash(), coords);
+		return result;
+	}
+
+	/** Waits until worker has completed n jobs. */
+	private void awaitCompletedJobs(long n) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (worker.getCompletedJobs() < n
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(n, worker.getCompletedJobs());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		player = new PlayerBuilder().threads(1).boardWidth(5).memorySize(1)
+				.openingBook(false).asyncBias(true).build();
+		worker = player.getBiasWorker();
+		board = player.getBoard();
+		coords = board.getCoordinateSystem();
+		String[] diagram = {
+				".....",
+				".....",
+				".....",
+				".....",
+				"O#...",
+		};
+		board.setUpProblem(diagram, BLACK);
+	}
+
+	@Test
+	public void testSameBiasAsInline() throws InterruptedException {
+		final SearchNode inline = newNode();
+		final McRunnable runnable = player.getMcRunnable(0);
+		runnable.copyDataFrom(board);
+		inline.updateBias(runnable);
+		// Black's capture at a2 is suggested
+		assertTrue(inline.getRuns(coords.at("a2")) > 2);
+		final SearchNode async = newNode();
+		assertTrue(worker.enqueue(async, board));
+		awaitCompletedJobs(1);
+		assertTrue(async.biasUpdated());
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(inline.getRuns(p), async.getRuns(p));
+			assertEquals(inline.getWins(p), async.getWins(p), 0.001);
+		}
+		assertEquals(inline.getTotalRuns(), async.getTotalRuns());
+		assertEquals(0, worker.getPendingJobs());
+		assertTrue(worker.getMeanLatency() > 0);
+	}
+
+	@Test
+	public void testStaleNodeUnchanged() throws InterruptedException {
+		final SearchNode node = newNode();
+		node.setBiasUpdated(true);
+		assertTrue(worker.enqueue(node, board));
+		awaitCompletedJobs(1);
+		assertEquals(2 * coords.getArea() + 10, node.getTotalRuns());
+	}
+
+	@Test
+	public void testSearch() {
+		player = new PlayerBuilder().threads(1).boardWidth(5).memorySize(1)
+				.openingBook(false).asyncBias(true).biasDelay(0)
+				.msecPerMove(100).build();
+		player.bestMove();
+		worker = player.getBiasWorker();
+		assertTrue(worker.getCompletedJobs() + worker.getPendingJobs() > 0);
+	}
+
+}
@@ -0,0 +1,87 @@
+package edu.lclark.orego.mcts;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.Color;
+
+/**
+ * Updates the tree with the results of runs, but only after each McRunnable
+ * has collected a batch of them in its PlayoutBuffer. The runs in a batch are
+ * merged, so each node is updated once per move rather than once per run,
+ * reducing contention on nodes near the root.
+ */
+public final class BufferedTreeUpdater implements TreeUpdater {
+
+	private final Board board;
+
+	/** Number of runs each McRunnable collects before updating the tree. */
+	private final int bufferSize;
+
+	/** True if the nodes in table keep RAVE statistics. */
+	private final boolean rave;
+
+	private final TranspositionTable table;
+
+	/** Handles everything other than incorporating runs. */
+	private final SimpleTreeUpdater updater;
+
+	/**
+	 * @param bufferSize
+	 *            Number of runs each McRunnable collects before updating the
+	 *            tree.
+	 * @param rave
+	 *            True if the nodes in table keep RAVE statistics.
+	 */
+	public BufferedTreeUpdater(Board board, TranspositionTable table,
+			int gestation, int bufferSize, boolean rave) {
+		this.board = board;
+		this.table = table;
+		this.bufferSize = bufferSize;
+		this.rave = rave;
+		updater = new SimpleTreeUpdater(board, table, gestation);
+	}
+
+	@Override
+	public void clear() {
+		updater.clear();
+	}
+
+	@Override
+	public void flush(McRunnable runnable) {
+		final PlayoutBuffer buffer = runnable.getPlayoutBuffer();
+		if (buffer != null) {
+			buffer.flush(table, getGestation(), rave);
+		}
+	}
+
+	@Override
+	public int getGestation() {
+		return updater.getGestation();
+	}
+
+	@Override
+	public SearchNode getRoot() {
+		return updater.getRoot();
+	}
+
+	@Override
+	public void updateForAcceptMove() {
+		updater.updateForAcceptMove();
+	}
+
+	@Override
+	public void updateTree(Color winner, McRunnable runnable) {
+		runnable.revertVirtualLosses();
+		PlayoutBuffer buffer = runnable.getPlayoutBuffer();
+		if (buffer == null || buffer.getCapacity() != bufferSize) {
+			buffer = new PlayoutBuffer(bufferSize,
+					board.getCoordinateSystem());
+			runnable.setPlayoutBuffer(buffer);
+		}
+		buffer.add(runnable, board.getTurn(), runnable.getBatchWins(
+				board.getColorToPlay(), winner) / runnable.getBatchSize());
+		if (buffer.isFull()) {
+			buffer.flush(table, getGestation(), rave);
+		}
+	}
+
+}
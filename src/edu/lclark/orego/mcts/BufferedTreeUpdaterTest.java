@@ -0,0 +1,101 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Color;
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class BufferedTreeUpdaterTest {
+
+	private Player player;
+
+	private BufferedTreeUpdater updater;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return player.getBoard().getCoordinateSystem().at(label);
+	}
+
+	/** Feeds updater a run consisting of moves, won by winner. */
+	private static void run(TreeUpdater updater, McRunnable runnable,
+			Color winner, String... moves) {
+		final CoordinateSystem coords = runnable.getBoard()
+				.getCoordinateSystem();
+		runnable.copyDataFrom(runnable.getPlayer().getBoard());
+		for (final String move : moves) {
+			runnable.acceptMove(coords.at(move));
+		}
+		updater.updateTree(winner, runnable);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		player = new PlayerBuilder().threads(1).memorySize(1).boardWidth(5)
+				.rave(false).gestation(0).biasDelay(0).lgrf2(false)
+				.bufferedUpdates(2).build();
+		updater = (BufferedTreeUpdater) player.getUpdater();
+	}
+
+	@Test
+	public void testMergedUpdate() {
+		final McRunnable runnable = player.getMcRunnable(0);
+		run(updater, runnable, BLACK, "b1", "c4", "a2");
+		// Nothing happens until the buffer is full
+		assertEquals(60, updater.getRoot().getTotalRuns());
+		run(updater, runnable, WHITE, "b1", "c4", "a2");
+		final SearchNode root = updater.getRoot();
+		assertEquals(62, root.getTotalRuns());
+		assertEquals(4, root.getRuns(at("b1")));
+		assertEquals(2, root.getWins(at("b1")), 0.001);
+		assertTrue(root.hasChild(at("b1")));
+	}
+
+	@Test
+	public void testFlush() {
+		final McRunnable runnable = player.getMcRunnable(0);
+		run(updater, runnable, BLACK, "b1", "c4", "a2");
+		updater.flush(runnable);
+		assertEquals(61, updater.getRoot().getTotalRuns());
+		assertEquals(2, updater.getRoot().getWins(at("b1")), 0.001);
+		// Flushing an empty buffer does nothing
+		updater.flush(runnable);
+		assertEquals(61, updater.getRoot().getTotalRuns());
+	}
+
+	@Test
+	public void testSameResultsAsSimpleUpdater() {
+		final Player simple = new PlayerBuilder().threads(1).memorySize(1)
+				.boardWidth(5).gestation(0).biasDelay(0).lgrf2(false).build();
+		player = new PlayerBuilder().threads(1).memorySize(1).boardWidth(5)
+				.gestation(0).biasDelay(0).lgrf2(false).bufferedUpdates(8)
+				.build();
+		final String[][] runs = { { "b1", "c4", "a2", "d2" },
+				{ "b1", "c4", "d4", "e5", "a1" }, { "c3", "b1", "c4" },
+				{ "b1", "d4", "c4" } };
+		final Color[] winners = { BLACK, WHITE, BLACK, BLACK };
+		for (int i = 0; i < runs.length; i++) {
+			run(simple.getUpdater(), simple.getMcRunnable(0), winners[i],
+					runs[i]);
+			run(player.getUpdater(), player.getMcRunnable(0), winners[i],
+					runs[i]);
+		}
+		player.getUpdater().flush(player.getMcRunnable(0));
+		final RaveSearchNode expected = (RaveSearchNode) simple.getRoot();
+		final RaveSearchNode actual = (RaveSearchNode) player.getRoot();
+		for (final short p : player.getBoard().getCoordinateSystem()
+				.getAllPointsOnBoard()) {
+			assertEquals(expected.getRuns(p), actual.getRuns(p));
+			assertEquals(expected.getWins(p), actual.getWins(p), 0.001);
+			assertEquals(expected.getRaveRuns(p), actual.getRaveRuns(p));
+			assertEquals(expected.getRaveWinRate(p), actual.getRaveWinRate(p),
+					0.001);
+		}
+		assertEquals(expected.getWinningMove(), actual.getWinningMove());
+	}
+
+}
@@ -13,6 +13,7 @@ import edu.lclark.orego.feature.LgrfTable;
 import edu.lclark.orego.feature.NearAnotherStone;
 import edu.lclark.orego.feature.NotEyeLike;
 import edu.lclark.orego.feature.OnThirdOrFourthLine;
+import edu.lclark.orego.feature.PatternObserver;
 import edu.lclark.orego.feature.PatternSuggester;
 import edu.lclark.orego.feature.Rater;
 import edu.lclark.orego.feature.ShapeRater;
@@ -29,7 +30,13 @@ import edu.lclark.orego.score.ChinesePlayoutScorer;
 /** Static methods for creating some particular, widely-used CopiableStructures. */
 public final class CopiableStructureFactory {
 
-	/** Returns a structure with a board, scorers, and a stone counter. */
+	/**
+	 * Returns a structure with a board, scorers, and a stone counter. An
+	 * AreaScoreObserver is not included: updating it after every playout move
+	 * costs more than scanning the board once at the end of each playout.
+	 *
+	 * @see PlayerBuilder#areaScore(boolean)
+	 */
 	public static CopiableStructure basicParts(int width, double komi) {
 		final Board board = new Board(width);
 		final ChinesePlayoutScorer scorer = new ChinesePlayoutScorer(board, komi);
@@ -100,6 +107,7 @@ public final class CopiableStructureFactory {
 		// Observers
 		final AtariObserver atariObserver = new AtariObserver(board);
 		final HistoryObserver historyObserver = base.get(HistoryObserver.class);
+		final PatternObserver patternObserver = new PatternObserver(board);
 		// Filter
 		Predicate filter = new Conjunction(new NotEyeLike(board),
 				new Disjunction(OnThirdOrFourthLine.forWidth(board
@@ -121,7 +129,7 @@ public final class CopiableStructureFactory {
 		final EscapeSuggester escape = new EscapeSuggester(board,
 				atariObserver, 20);
 		final PatternSuggester patterns = new PatternSuggester(board,
-				historyObserver, 20);
+				historyObserver, patternObserver, 20);
 		final CaptureSuggester capture = new CaptureSuggester(board,
 				atariObserver, 20);
 		// Bias
@@ -150,11 +158,12 @@ public final class CopiableStructureFactory {
 		// Observers
 		final AtariObserver atariObserver = new AtariObserver(board);
 		final HistoryObserver historyObserver = base.get(HistoryObserver.class);
+		final PatternObserver patternObserver = new PatternObserver(board);
 		// Suggesters
 		final EscapeSuggester escape = new EscapeSuggester(board,
 				atariObserver, 20);
 		final PatternSuggester patterns = new PatternSuggester(board,
-				historyObserver, 20);
+				historyObserver, patternObserver, 20);
 		final CaptureSuggester capture = new CaptureSuggester(board,
 				atariObserver, 20);
 		// Bias
@@ -183,6 +192,7 @@ public final class CopiableStructureFactory {
 		// Observers
 		final AtariObserver atariObserver = new AtariObserver(board);
 		final HistoryObserver historyObserver = base.get(HistoryObserver.class);
+		final PatternObserver patternObserver = new PatternObserver(board);
 		// Filter
 		Predicate filter = new Conjunction(new NotEyeLike(board),
 				new Disjunction(OnThirdOrFourthLine.forWidth(board
@@ -208,7 +218,7 @@ public final class CopiableStructureFactory {
 		final EscapeSuggester escape = new EscapeSuggester(board,
 				atariObserver, 20);
 		final PatternSuggester patterns = new PatternSuggester(board,
-				historyObserver, 20);
+				historyObserver, patternObserver, 20);
 		final CaptureSuggester capture = new CaptureSuggester(board,
 				atariObserver, 20);
 		// Shape
@@ -29,6 +29,11 @@ public final class DoNothing implements TreeDescender, TreeUpdater, OpeningBook
 		// Does nothing
 	}
 
+	@Override
+	public void flush(McRunnable mcRunnable) {
+		// Does nothing
+	}
+
 	@Override
 	public int getBiasDelay() {
 		return 0;
@@ -25,6 +25,11 @@ public final class LgrfUpdater implements TreeUpdater {
 		updater.clear();
 	}
 
+	@Override
+	public void flush(McRunnable runnable) {
+		updater.flush(runnable);
+	}
+
 	@Override
 	public int getGestation() {
 		return updater.getGestation();
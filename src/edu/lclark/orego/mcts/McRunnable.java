@@ -1,11 +1,17 @@
 package edu.lclark.orego.mcts;
 
 import static edu.lclark.orego.core.Legality.OK;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.Color;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.core.Legality;
+import edu.lclark.orego.core.PlayoutBoard;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.feature.AreaScoreObserver;
 import edu.lclark.orego.feature.HistoryObserver;
 import edu.lclark.orego.feature.LgrfSuggester;
 import edu.lclark.orego.feature.LgrfTable;
@@ -20,7 +26,6 @@ import edu.lclark.orego.score.ChinesePlayoutScorer;
 import edu.lclark.orego.score.PlayoutScorer;
 import edu.lclark.orego.thirdparty.MersenneTwisterFast;
 import edu.lclark.orego.util.ShortList;
-import edu.lclark.orego.util.ShortSet;
 import static edu.lclark.orego.experiment.Logging.*;
 
 /**
@@ -29,6 +34,18 @@ import static edu.lclark.orego.experiment.Logging.*;
  */
 public final class McRunnable implements Runnable {
 
+	/**
+	 * Keeps track of the area score, if present, for scoring and mercy
+	 * cutoffs.
+	 */
+	private final AreaScoreObserver areaScore;
+
+	/**
+	 * Number of playouts from the current leaf, including the last one, whose
+	 * winner is passed to the tree updater.
+	 */
+	private int batchSize;
+
 	/** The board on which this McRunnable plays its moves. */
 	private final Board board;
 
@@ -39,6 +56,12 @@ public final class McRunnable implements Runnable {
 	/** @see #getFancyHashes() */
 	private final long[] fancyHashes;
 
+	/**
+	 * Wins for black in the playouts from the current leaf before the last
+	 * one. Ties count as half wins.
+	 */
+	private float earlierBlackWins;
+
 	/** Moves not passing this filter should never be played. */
 	private final Predicate filter;
 
@@ -51,11 +74,18 @@ public final class McRunnable implements Runnable {
 	/** Generates moves beyond the tree. */
 	private final Mover mover;
 
+
 	/**
-	 * Used by RaveNode.recordPlayout. It is stored here rather than in RaveNode
-	 * to avoid creating millions of ShortSets.
+	 * If not null, the fast part of each playout is played on this board
+	 * rather than on board.
 	 */
-	private final ShortSet playedPoints;
+	private final PlayoutBoard playoutBoard;
+
+	/**
+	 * Holds the results of runs for a BufferedTreeUpdater; null if no such
+	 * updater is used.
+	 */
+	private PlayoutBuffer playoutBuffer;
 
 	/** The Player that launches the thread wrapped around this McRunnable. */
 	private final Player player;
@@ -63,18 +93,63 @@ public final class McRunnable implements Runnable {
 	/** Number of playouts completed. */
 	private long playoutsCompleted;
 
+	/** Number of playouts played from each leaf reached by descending. */
+	private int playoutsPerDescent;
+
+	/**
+	 * Fancy hash of the player's board when it was last copied to this
+	 * McRunnable's board.
+	 */
+	private long syncedFancyHash;
+
+	/** Number of passes on the player's board when it was last copied. */
+	private short syncedPasses;
+
+	/** Turn of the player's board when it was last copied. */
+	private int syncedTurn;
+
+	/**
+	 * Used by RAVE nodes to find the moves they update. It is stored here
+	 * rather than in the nodes to avoid creating millions of ShortSets.
+	 */
+	private final RaveMoves raveMoves;
+
 	/** Random number generator. */
 	private final MersenneTwisterFast random;
 
 	/** Determines winners of playouts. */
 	private final PlayoutScorer scorer;
 
+	/** Scratch space for evaluating the moves from a tree node. */
+	private final SearchValues searchValues;
+
+	/** Nodes along the current run, indexed by turn, for the tree updater. */
+	private final SearchNode[] treePath;
+
 	/** An array of suggesters used for updating bias. */
 	private Suggester[] suggesters;
 	
 	/** An array of raters used for updating bias. */
 	private Rater[] raters;
 
+	/** Number of virtual losses applied during the current descent. */
+	private int virtualLossCount;
+
+	/** Fancy hash of each node in virtualLossNodes when the loss was applied. */
+	private final long[] virtualLossHashes;
+
+	/** Moves in virtualLossNodes through which virtual losses were applied. */
+	private final short[] virtualLossMoves;
+
+	/** Nodes to which virtual losses were applied during the current descent. */
+	private final SearchNode[] virtualLossNodes;
+
+	/** Runs added by each virtual loss. */
+	private int virtualLossRuns;
+
+	/** Wins added by each virtual loss. */
+	private float virtualLossWins;
+
 	public McRunnable(Player player, CopiableStructure stuff) {
 		LgrfTable table = null;
 		try {
@@ -86,6 +161,7 @@ public final class McRunnable implements Runnable {
 		board = copy.get(Board.class);
 		coords = board.getCoordinateSystem();
 		candidates = new ShortList(coords.getArea());
+		searchValues = new SearchValues(coords.getArea());
 		ShapeTable shapeTable = null;
 		ShapeRater shape = null;
 		try {
@@ -111,12 +187,38 @@ public final class McRunnable implements Runnable {
 			final LgrfSuggester lgrf = copy.get(LgrfSuggester.class);
 			lgrf.setTable(table);
 		}
-		scorer = copy.get(ChinesePlayoutScorer.class);
+		AreaScoreObserver area = null;
+		try {
+			area = copy.get(AreaScoreObserver.class);
+		} catch (final IllegalArgumentException e) {
+			// If we get here, mercy cutoffs use stone counts
+		}
+		areaScore = area;
+		final ChinesePlayoutScorer chinese = copy.get(ChinesePlayoutScorer.class);
+		if (area == null) {
+			scorer = chinese;
+		} else {
+			// Read the score from the observer rather than scanning the board
+			scorer = new ChinesePlayoutScorer(board, chinese.getKomi(), area);
+		}
 		mercyObserver = copy.get(StoneCountObserver.class);
 		historyObserver = copy.get(HistoryObserver.class);
 		filter = copy.get(Predicate.class);
+		PlayoutBoard light = null;
+		try {
+			light = copy.get(PlayoutBoard.class);
+		} catch (final IllegalArgumentException e) {
+			// If we get here, we're not using light playouts
+		}
+		playoutBoard = light;
 		fancyHashes = new long[coords.getMaxMovesPerGame() + 1];
-		playedPoints = new ShortSet(coords.getFirstPointBeyondBoard());
+		raveMoves = new RaveMoves(coords);
+		treePath = new SearchNode[coords.getMaxMovesPerGame() + 1];
+		virtualLossNodes = new SearchNode[coords.getMaxMovesPerGame() + 1];
+		virtualLossHashes = new long[coords.getMaxMovesPerGame() + 1];
+		virtualLossMoves = new short[coords.getMaxMovesPerGame() + 1];
+		batchSize = 1;
+		playoutsPerDescent = 1;
 	}
 
 	/**
@@ -133,12 +235,74 @@ public final class McRunnable implements Runnable {
 		fancyHashes[board.getTurn()] = board.getFancyHash();
 	}
 
+	/**
+	 * Adds runs runs and wins wins to move in node, discouraging other threads
+	 * from descending through the same move until revertVirtualLosses() is
+	 * called.
+	 */
+	void addVirtualLoss(SearchNode node, short move, int runs, float wins) {
+		node.update(move, runs, wins);
+		virtualLossNodes[virtualLossCount] = node;
+		virtualLossHashes[virtualLossCount] = node.getFancyHash();
+		virtualLossMoves[virtualLossCount] = move;
+		virtualLossCount++;
+		virtualLossRuns = runs;
+		virtualLossWins = wins;
+	}
+
 	/** Copies data from that (the player's real board) to the local board. */
 	public void copyDataFrom(Board that) {
-		board.copyDataFrom(that);
+		board.syncFrom(that);
+		syncedFancyHash = that.getFancyHash();
+		syncedPasses = that.getPasses();
+		syncedTurn = that.getTurn();
 		fancyHashes[board.getTurn()] = board.getFancyHash();
 	}
 
+	/**
+	 * Makes the local board match that (the player's real board). If that has
+	 * not changed since it was last copied, this is done by undoing the moves
+	 * of the previous run, which is much faster than copying the entire board.
+	 */
+	private void synchronizeWith(Board that) {
+		if (that.getTurn() == syncedTurn
+				&& that.getFancyHash() == syncedFancyHash
+				&& that.getPasses() == syncedPasses
+				&& board.canUndoTo(syncedTurn)) {
+			board.undoTo(syncedTurn);
+		} else {
+			copyDataFrom(that);
+		}
+	}
+
+	/** Returns the AreaScoreObserver used for scoring, or null if there is none. */
+	AreaScoreObserver getAreaScore() {
+		return areaScore;
+	}
+
+	/**
+	 * Returns the number of playouts from the current leaf. The tree updater
+	 * incorporates all of them at once.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Returns the number of wins for color among the playouts from the current
+	 * leaf, the last of which was won by lastWinner. Ties count as half wins.
+	 */
+	public float getBatchWins(StoneColor color, Color lastWinner) {
+		float result = color == BLACK ? earlierBlackWins : batchSize - 1
+				- earlierBlackWins;
+		if (lastWinner == color) {
+			result++;
+		} else if (lastWinner == VACANT) {
+			result += 0.5f;
+		}
+		return result;
+	}
+
 	/** Returns the board associated with this runnable. */
 	public Board getBoard() {
 		return board;
@@ -157,11 +321,9 @@ public final class McRunnable implements Runnable {
 		return historyObserver;
 	}
 
-	/**
-	 * @return the playedMoves
-	 */
-	public ShortSet getPlayedPoints() {
-		return playedPoints;
+	/** Returns the buffer used by a BufferedTreeUpdater, or null. */
+	PlayoutBuffer getPlayoutBuffer() {
+		return playoutBuffer;
 	}
 
 	/** @return the player associated with this runnable */
@@ -174,16 +336,37 @@ public final class McRunnable implements Runnable {
 		return playoutsCompleted;
 	}
 
+	/** Returns the object that finds RAVE moves for the current run. */
+	public RaveMoves getRaveMoves() {
+		return raveMoves;
+	}
+
 	/** Returns the random number generator associated with this runnable. */
 	public MersenneTwisterFast getRandom() {
 		return random;
 	}
 
+	/**
+	 * Returns the scratch space used by the descender to evaluate all of the
+	 * moves from a tree node.
+	 */
+	SearchValues getSearchValues() {
+		return searchValues;
+	}
+
 	/** Returns the list of suggesters used for updating biases. */
 	public Suggester[] getSuggesters() {
 		return suggesters;
 	}
 
+	/**
+	 * Returns an array for the tree updater to hold the nodes along the
+	 * current run, indexed by turn.
+	 */
+	SearchNode[] getTreePath() {
+		return treePath;
+	}
+
 	/** Returns the current turn number on this runnable's board. */
 	public int getTurn() {
 		return board.getTurn();
@@ -194,6 +377,19 @@ public final class McRunnable implements Runnable {
 		return filter.at(p);
 	}
 
+	/**
+	 * Returns the color, if any, that is far enough ahead to be declared the
+	 * winner of the current playout, or null if there is no such color. Uses
+	 * the area score if there is an AreaScoreObserver, otherwise the stone
+	 * counts.
+	 */
+	private Color mercyWinner() {
+		if (areaScore != null) {
+			return mercyObserver.mercyWinner(areaScore.getScore());
+		}
+		return mercyObserver.mercyWinner();
+	}
+
 	/**
 	 * Performs a single Monte Carlo run and incorporates it into player's
 	 * search tree. The player should generate moves to the frontier of the
@@ -208,16 +404,32 @@ public final class McRunnable implements Runnable {
 	
 	/** @param mercy True if we should abandon the playout when one color has many more stones than the other. */
 	public Color performMcRun(boolean mercy) {
-		copyDataFrom(player.getBoard());
+		synchronizeWith(player.getBoard());
 		player.descend(this);
 		Color winner;
 		if (board.getPasses() == 2) {
 			winner = scorer.winner();
 		} else {
+			// Further playouts from the same leaf are played by undoing the
+			// previous one, saving a descent and a tree update for each
+			final int leafTurn = board.getTurn();
 			winner = playout(mercy);
+			while (batchSize < playoutsPerDescent
+					&& board.canUndoTo(leafTurn)) {
+				if (winner == BLACK) {
+					earlierBlackWins++;
+				} else if (winner == VACANT) {
+					earlierBlackWins += 0.5f;
+				}
+				batchSize++;
+				board.undoTo(leafTurn);
+				winner = playout(mercy);
+			}
 		}
 		player.updateTree(winner, this);
-		playoutsCompleted++;
+		playoutsCompleted += batchSize;
+		batchSize = 1;
+		earlierBlackWins = 0;
 		return winner;
 	}
 
@@ -243,12 +455,15 @@ public final class McRunnable implements Runnable {
 			return scorer.winner();
 		}
 		if (mercy) {
-			final Color mercyWinner = mercyObserver.mercyWinner();
+			final Color mercyWinner = mercyWinner();
 			if (mercyWinner != null) {
-				// One player has far more stones on the board
+				// One player is far ahead
 				return mercyWinner;
 			}
 		}
+		if (playoutBoard != null) {
+			return playoutLightly(mercy);
+		}
 		// All subsequent moves are played fast
 		do {
 			if (board.getTurn() >= coords.getMaxMovesPerGame()) {
@@ -263,7 +478,39 @@ public final class McRunnable implements Runnable {
 				return scorer.winner();
 			}
 			if (mercy) {
-				final Color mercyWinner = mercyObserver.mercyWinner();
+				final Color mercyWinner = mercyWinner();
+				if (mercyWinner != null) {
+					// One player is far ahead
+					return mercyWinner;
+				}
+			}
+		} while (true);
+	}
+
+	/**
+	 * Finishes a playout on playoutBoard and returns the winner, as playout()
+	 * does. The moves are uniformly random, except that they never fill
+	 * eyelike points. They are not recorded in board's history, so RAVE and
+	 * LGRF learn only from the moves before the playout started here.
+	 */
+	private Color playoutLightly(boolean mercy) {
+		playoutBoard.copyDataFrom(board);
+		do {
+			if (playoutBoard.getTurn() >= coords.getMaxMovesPerGame()) {
+				// Playout ran out of moves, probably due to superko
+				return VACANT;
+			}
+			if (playoutBoard.getPasses() < 2) {
+				selectAndPlayOneLightMove();
+			}
+			if (playoutBoard.getPasses() >= 2) {
+				// Game ended
+				return playoutBoard.winner(scorer.getKomi());
+			}
+			if (mercy) {
+				final Color mercyWinner = mercyObserver.mercyWinner(
+						playoutBoard.getStoneCount(BLACK),
+						playoutBoard.getStoneCount(WHITE));
 				if (mercyWinner != null) {
 					// One player has far more stones on the board
 					return mercyWinner;
@@ -273,8 +520,25 @@ public final class McRunnable implements Runnable {
 	}
 
 	/**
-	 * Performs runs and incorporate them into player's search tree until this
-	 * thread is interrupted.
+	 * Removes the virtual losses added during the current descent.
+	 *
+	 * @see #addVirtualLoss(SearchNode, short, int, float)
+	 */
+	void revertVirtualLosses() {
+		for (int i = 0; i < virtualLossCount; i++) {
+			// A node evicted and reused since then no longer has the loss
+			if (virtualLossNodes[i].getFancyHash() == virtualLossHashes[i]) {
+				virtualLossNodes[i].update(virtualLossMoves[i],
+						-virtualLossRuns, -virtualLossWins);
+			}
+			virtualLossNodes[i] = null;
+		}
+		virtualLossCount = 0;
+	}
+
+	/**
+	 * Performs runs and incorporate them into player's search tree until the
+	 * player says to stop.
 	 */
 	@Override
 	public void run() {
@@ -282,8 +546,8 @@ public final class McRunnable implements Runnable {
 		while (getPlayer().shouldKeepRunning()) {
 			performMcRun();
 		}
+		player.flushUpdates(this);
 		log("Playouts completed: " + playoutsCompleted);
-		player.notifyMcRunnableDone();
 	}
 
 	/**
@@ -293,6 +557,33 @@ public final class McRunnable implements Runnable {
 		return mover.selectAndPlayOneMove(random, fast);
 	}
 
+	/** Plays a random move on playoutBoard, or passes if there is none. */
+	private short selectAndPlayOneLightMove() {
+		candidates.clear();
+		candidates.addAll(playoutBoard.getVacantPoints());
+		while (candidates.size() > 0) {
+			final short p = candidates.removeRandom(random);
+			if (playoutBoard.isNotEyeLike(p) && playoutBoard.playFast(p) == OK) {
+				return p;
+			}
+		}
+		playoutBoard.pass();
+		return PASS;
+	}
+
+	/** Sets the buffer used by a BufferedTreeUpdater. */
+	void setPlayoutBuffer(PlayoutBuffer buffer) {
+		playoutBuffer = buffer;
+	}
+
+	/**
+	 * Sets the number of playouts to play from each leaf reached by
+	 * descending.
+	 */
+	void setPlayoutsPerDescent(int playouts) {
+		playoutsPerDescent = playouts;
+	}
+
 	public Rater[] getRaters() {
 		return raters;
 	}
@@ -8,6 +8,10 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.PlayoutBoard;
+import edu.lclark.orego.feature.AreaScoreObserver;
+
 public class McRunnableTest {
 
 	private Player player;
@@ -64,6 +68,41 @@ public class McRunnableTest {
 		assertEquals(BLACK, runnable.performMcRun());
 	}
 
+	@Test
+	public void testLightPlayout() {
+		player = new Player(1, CopiableStructureFactory.feasible(5).add(
+				new PlayoutBoard(5)));
+		player.clear();
+		runnable = player.getMcRunnable(0);
+		String[] blackWins = {
+				".##O.",
+				"..#OO",
+				"###O.",
+				"..#OO",
+				".####",
+		};
+		player.getBoard().setUpProblem(blackWins, WHITE);
+		assertEquals(BLACK, runnable.performMcRun());
+	}
+
+	@Test
+	public void testAreaScorePlayout() {
+		final CopiableStructure stuff = CopiableStructureFactory.feasible(5);
+		stuff.add(new AreaScoreObserver(stuff.get(Board.class)));
+		player = new Player(1, stuff);
+		player.clear();
+		runnable = player.getMcRunnable(0);
+		String[] blackWins = {
+				".##O.",
+				"..#OO",
+				"###O.",
+				"..#OO",
+				".####",
+		};
+		player.getBoard().setUpProblem(blackWins, WHITE);
+		assertEquals(BLACK, runnable.performMcRun());
+	}
+
 	@Test
 	public void testCopyDataFrom() {
 		player.acceptMove(at("c3"));
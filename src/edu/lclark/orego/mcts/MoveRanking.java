@@ -0,0 +1,75 @@
+package edu.lclark.orego.mcts;
+
+import java.util.Arrays;
+
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * The moves from a node in decreasing order of win rate just after the node's
+ * bias was updated, so the order reflects the priors from Suggesters and
+ * Raters. Under progressive widening, only a prefix of this ranking is
+ * considered during selection; the prefix grows as runs accumulate.
+ *
+ * @see AbstractDescender#setWidening(int, int)
+ */
+public final class MoveRanking {
+
+	/**
+	 * Number of moves currently admitted. This is only a cache of a function
+	 * of the node's runs, so races between threads updating it are harmless.
+	 */
+	private volatile int admitted;
+
+	/** The moves, best first. */
+	private final short[] moves;
+
+	/** Total runs through the node when it was ranked. */
+	private final int rankedAt;
+
+	/** Ranks the moves in vacantPoints by their win rates in node. */
+	MoveRanking(SearchNode node, ShortSet vacantPoints, int admitted) {
+		rankedAt = node.getTotalRuns();
+		final int n = vacantPoints.size();
+		// Sort by packing each win rate (as bits, which sort like the
+		// nonnegative floats they represent) together with its move
+		final long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			final short p = vacantPoints.get(i);
+			final float winRate = node.getWinRate(p);
+			final int bits = winRate > 0 ? Float.floatToIntBits(winRate) : 0;
+			keys[i] = (long) bits << 16 | p;
+		}
+		Arrays.sort(keys);
+		moves = new short[n];
+		for (int i = 0; i < n; i++) {
+			moves[i] = (short) keys[n - 1 - i];
+		}
+		this.admitted = Math.min(admitted, n);
+	}
+
+	/** Returns the number of moves currently admitted to selection. */
+	int getAdmitted() {
+		return admitted;
+	}
+
+	/** Returns the moves, best first. */
+	short[] getMoves() {
+		return moves;
+	}
+
+	/** Returns the total runs through the node when it was ranked. */
+	int getRankedAt() {
+		return rankedAt;
+	}
+
+	/** Records that n moves are now admitted to selection. */
+	void setAdmitted(int n) {
+		admitted = Math.min(n, moves.length);
+	}
+
+	/** Returns the number of moves ranked. */
+	int size() {
+		return moves.length;
+	}
+
+}
@@ -0,0 +1,56 @@
+package edu.lclark.orego.mcts;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class MoveRankingTest {
+
+	private Board board;
+
+	private SearchNode node;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return board.getCoordinateSystem().at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		final CoordinateSystem coords = board.getCoordinateSystem();
+		node = new SimpleSearchNode(coords);
+		node.clear(0L, coords);
+	}
+
+	@Test
+	public void testRanking() {
+		node.update(at("b2"), 10, 2);
+		node.update(at("c3"), 10, 10);
+		node.update(at("d4"), 10, 7);
+		node.exclude(at("e5"));
+		final MoveRanking ranking = new MoveRanking(node,
+				board.getVacantPoints(), 3);
+		assertEquals(25, ranking.size());
+		assertEquals(3, ranking.getAdmitted());
+		assertEquals(at("c3"), ranking.getMoves()[0]);
+		assertEquals(at("d4"), ranking.getMoves()[1]);
+		assertEquals(at("b2"), ranking.getMoves()[23]);
+		assertEquals(at("e5"), ranking.getMoves()[24]);
+		assertEquals(node.getTotalRuns(), ranking.getRankedAt());
+	}
+
+	@Test
+	public void testAdmittedLimitedBySize() {
+		final MoveRanking ranking = new MoveRanking(node,
+				board.getVacantPoints(), 30);
+		assertEquals(25, ranking.getAdmitted());
+		ranking.setAdmitted(40);
+		assertEquals(25, ranking.getAdmitted());
+	}
+
+}
@@ -0,0 +1,561 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static java.lang.String.format;
+
+import java.nio.ByteBuffer;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.feature.Rater;
+import edu.lclark.orego.feature.Suggester;
+import edu.lclark.orego.util.ListNode;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * A search node whose data live in a fixed-size record in a ByteBuffer, which
+ * may be allocated outside the Java heap or mapped from a file. The node object
+ * itself is only a lightweight view of its record; only the list of children
+ * (which refers to other Java objects) is kept on the heap.
+ * <p>
+ * The layout of a record, in bytes from its start, is:
+ * <ul>
+ * <li>0: fancy hash (long)</li>
+ * <li>8: total runs (int)</li>
+ * <li>12: flags (int)</li>
+ * <li>16: winning move (int)</li>
+ * <li>20: number of children (int)</li>
+ * <li>24: runs (int) and wins (float) through each point, followed (for RAVE
+ * nodes) by RAVE runs and wins through each point</li>
+ * <li>then a byte for each point, nonzero if it has a child</li>
+ * <li>then the index of each child (int), in the order the children were added</li>
+ * </ul>
+ * The indices of the children allow the links between nodes to be restored when
+ * a record file is reopened.
+ * <p>
+ * ByteBuffer offers no compare-and-set, so updates to a node are synchronized
+ * on the node. Reads are not synchronized, so a reader may occasionally see
+ * runs and wins from slightly different times.
+ *
+ * @see OffHeapSearchNodeBuilder
+ */
+public final class OffHeapSearchNode implements RaveSearchNode {
+
+	/** Flag for a node whose bias has been updated. */
+	private static final int BIAS_UPDATED = 2;
+
+	private static final int CHILD_COUNT = 8 + 4 + 4 + 4;
+
+	private static final int FLAGS = 8 + 4;
+
+	private static final int HASH = 0;
+
+	/** @see SimpleSearchNode */
+	private static final int INITIAL_PASS_RUNS = 10;
+
+	/** Flag for a node that is in use. A zeroed record is therefore free. */
+	private static final int IN_USE = 1;
+
+	/** Flag for a marked node. */
+	private static final int MARKED = 4;
+
+	private static final int STATS = CHILD_COUNT + 4;
+
+	private static final int TOTAL_RUNS = 8;
+
+	private static final int WINNING_MOVE = 8 + 4 + 4;
+
+	/**
+	 * Returns the number of bytes in a record for a board with this coordinate
+	 * system, with or without RAVE statistics.
+	 */
+	static int getRecordSize(CoordinateSystem coords, boolean rave) {
+		final int n = coords.getFirstPointBeyondBoard();
+		final int size = STATS + (rave ? 16 : 8) * n + n + 4 * n;
+		// Round up to a multiple of 8, so that longs are aligned
+		return (size + 7) & ~7;
+	}
+
+	/** Offset in buffer of the start of this node's record. */
+	private final int base;
+
+	/** Holds this node's record (and others). */
+	private final ByteBuffer buffer;
+
+	/** @see SimpleSearchNode */
+	private volatile ListNode<SearchNode> children;
+
+	/** Offset in buffer of the child indices. */
+	private final int childrenOffset;
+
+	/** Number of points (including PASS) that can have statistics. */
+	private final int firstPointBeyondBoard;
+
+	/** Offset in buffer of the hasChild flags. */
+	private final int hasChildOffset;
+
+	/** Index of this node's record, which is also its slot in the table. */
+	private final int index;
+
+	/** True if this node keeps RAVE statistics. */
+	private final boolean rave;
+
+	/** Offset in buffer of the RAVE statistics. */
+	private final int raveOffset;
+
+	/**
+	 * Ranking of this node's moves for progressive widening, or null.
+	 *
+	 * @see MoveRanking
+	 */
+	private volatile MoveRanking moveRanking;
+
+	/**
+	 * This node's best moves as of the last full evaluation, or null.
+	 *
+	 * @see TopMoves
+	 */
+	private volatile TopMoves topMoves;
+
+	/**
+	 * @param buffer
+	 *            Buffer holding the record. Its existing contents are not
+	 *            changed, so a node restored from a file keeps its data.
+	 * @param base
+	 *            Offset of the record in buffer.
+	 * @param index
+	 *            Number of the record, counting from 0.
+	 */
+	public OffHeapSearchNode(CoordinateSystem coords, boolean rave,
+			ByteBuffer buffer, int base, int index) {
+		this.rave = rave;
+		this.buffer = buffer;
+		this.base = base;
+		this.index = index;
+		firstPointBeyondBoard = coords.getFirstPointBeyondBoard();
+		raveOffset = base + STATS + 8 * firstPointBeyondBoard;
+		hasChildOffset = raveOffset + (rave ? 8 * firstPointBeyondBoard : 0);
+		childrenOffset = hasChildOffset + firstPointBeyondBoard;
+	}
+
+	/**
+	 * Adds one RAVE playout for p.
+	 *
+	 * @param w The win rate for this playout, usually 0 for a loss or 1 for a win.
+	 */
+	public synchronized void addRaveRun(short p, float w) {
+		assert rave;
+		addRun(raveOffset + 8 * p, 1, w);
+	}
+
+	@Override
+	public synchronized void addRaveRuns(short p, int n, float wins) {
+		assert rave;
+		addRun(raveOffset + 8 * p, n, wins);
+	}
+
+	/**
+	 * Adds n runs and w wins to the statistics at offset, unless they have been
+	 * excluded. Returns true if they were changed.
+	 */
+	private boolean addRun(int offset, int n, float w) {
+		final float wins = buffer.getFloat(offset + 4);
+		if (!(wins > 0)) {
+			return false;
+		}
+		buffer.putInt(offset, buffer.getInt(offset) + n);
+		buffer.putFloat(offset + 4, wins + w);
+		return true;
+	}
+
+	@Override
+	public String bestWinCountReport(CoordinateSystem coords) {
+		final short best = getMoveWithMostWins(coords);
+		return coords.toString(best) + " wins " + getWins(best) + "/"
+				+ getRuns(best) + " = " + getWinRate(best);
+	}
+
+	@Override
+	public short bestWinRate(CoordinateSystem coords) {
+		short best = PASS;
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getWinRate(p) >= getWinRate(best)) {
+				best = p;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public boolean biasUpdated() {
+		return (buffer.getInt(base + FLAGS) & BIAS_UPDATED) != 0;
+	}
+
+	@Override
+	public synchronized void clear(long fancyHash, CoordinateSystem coords) {
+		buffer.putLong(base + HASH, fancyHash);
+		buffer.putInt(base + TOTAL_RUNS, 2 * coords.getArea()
+				+ INITIAL_PASS_RUNS);
+		buffer.putInt(base + WINNING_MOVE, NO_POINT);
+		buffer.putInt(base + CHILD_COUNT, 0);
+		for (int p = 0; p < firstPointBeyondBoard; p++) {
+			buffer.putInt(base + STATS + 8 * p, 2);
+			buffer.putFloat(base + STATS + 8 * p + 4, 1);
+			if (rave) {
+				buffer.putInt(raveOffset + 8 * p, 2);
+				buffer.putFloat(raveOffset + 8 * p + 4, 1);
+			}
+			buffer.put(hasChildOffset + p, (byte) 0);
+		}
+		// Make passing look very bad, so it will only be tried if all other
+		// moves lose
+		buffer.putInt(base + STATS + 8 * PASS, INITIAL_PASS_RUNS);
+		children = null;
+		moveRanking = null;
+		topMoves = null;
+		buffer.putInt(base + FLAGS, IN_USE);
+	}
+
+	/**
+	 * Copies the runs and wins stored at offset + 8 * p for each of the first n
+	 * moves.
+	 */
+	private void copyStats(int offset, short[] moves, int n, int[] runs,
+			float[] wins) {
+		for (int i = 0; i < n; i++) {
+			final int address = offset + 8 * moves[i];
+			runs[i] = buffer.getInt(address);
+			wins[i] = buffer.getFloat(address + 4);
+		}
+	}
+
+	@Override
+	public void clearHasChild(short p) {
+		buffer.put(hasChildOffset + p, (byte) 0);
+	}
+
+	@Override
+	public void copyRaveStats(short[] moves, int n, int[] runs, float[] wins) {
+		copyStats(raveOffset, moves, n, runs, wins);
+	}
+
+	@Override
+	public void copyStats(short[] moves, int n, int[] runs, float[] wins) {
+		copyStats(base + STATS, moves, n, runs, wins);
+	}
+
+	@Override
+	public String deepToString(Board board, TranspositionTable table,
+			int maxDepth) {
+		return deepToString(board, table, maxDepth, 0);
+	}
+
+	/**
+	 * Recursive helper method.
+	 *
+	 * @see #deepToString(Board, TranspositionTable, int)
+	 */
+	String deepToString(Board board, TranspositionTable table, int maxDepth,
+			int depth) {
+		final CoordinateSystem coords = board.getCoordinateSystem();
+		if (maxDepth < depth) {
+			return "";
+		}
+		String indent = "";
+		for (int i = 0; i < depth; i++) {
+			indent += "  ";
+		}
+		String result = indent + "Total runs: " + getTotalRuns() + "\n";
+		final Board childBoard = new Board(coords.getWidth());
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (hasChild(p)) {
+				result += indent + toString(p, coords);
+				childBoard.copyDataFrom(board);
+				childBoard.play(p);
+				final OffHeapSearchNode child = (OffHeapSearchNode) table
+						.findIfPresent(childBoard.getFancyHash());
+				if (child != null) {
+					result += child.deepToString(childBoard, table, maxDepth,
+							depth + 1);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void exclude(short p) {
+		// A win rate of -1 marks the move as excluded
+		final int offset = base + STATS + 8 * p;
+		buffer.putFloat(offset + 4, -buffer.getInt(offset));
+	}
+
+	@Override
+	public synchronized void free() {
+		buffer.putInt(base + FLAGS, 0);
+		children = null;
+	}
+
+	@Override
+	public ListNode<SearchNode> getChildren() {
+		return children;
+	}
+
+	@Override
+	public long getFancyHash() {
+		return buffer.getLong(base + HASH);
+	}
+
+	/** Returns the index of this node's record. */
+	int getIndex() {
+		return index;
+	}
+
+	@Override
+	public MoveRanking getMoveRanking() {
+		return moveRanking;
+	}
+
+	@Override
+	public short getMoveWithMostWins(CoordinateSystem coords) {
+		short best = PASS;
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getWins(p) >= getWins(best)) {
+				best = p;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public int getRaveRuns(short p) {
+		return buffer.getInt(raveOffset + 8 * p);
+	}
+
+	@Override
+	public float getRaveWinRate(short p) {
+		return getRaveWins(p) / getRaveRuns(p);
+	}
+
+	/** Returns the number of RAVE wins through move p. */
+	public float getRaveWins(short p) {
+		return buffer.getFloat(raveOffset + 8 * p + 4);
+	}
+
+	@Override
+	public int getRuns(short p) {
+		return buffer.getInt(base + STATS + 8 * p);
+	}
+
+	@Override
+	public TopMoves getTopMoves() {
+		return topMoves;
+	}
+
+	@Override
+	public int getTotalRuns() {
+		if (!isInUse()) {
+			return -1;
+		}
+		return buffer.getInt(base + TOTAL_RUNS);
+	}
+
+	@Override
+	public short getWinningMove() {
+		return (short) buffer.getInt(base + WINNING_MOVE);
+	}
+
+	@Override
+	public float getWinRate(short p) {
+		return getWins(p) / getRuns(p);
+	}
+
+	@Override
+	public float getWins(short p) {
+		return buffer.getFloat(base + STATS + 8 * p + 4);
+	}
+
+	@Override
+	public boolean hasChild(short p) {
+		return buffer.get(hasChildOffset + p) != 0;
+	}
+
+	@Override
+	public boolean isFresh(CoordinateSystem coords) {
+		return getTotalRuns() == 2 * coords.getArea() + INITIAL_PASS_RUNS;
+	}
+
+	@Override
+	public boolean isInUse() {
+		return (buffer.getInt(base + FLAGS) & IN_USE) != 0;
+	}
+
+	@Override
+	public boolean isMarked() {
+		return (buffer.getInt(base + FLAGS) & MARKED) != 0;
+	}
+
+	@Override
+	public float overallWinRate(CoordinateSystem coords) {
+		int r = 0; // Runs
+		int w = 0; // Wins
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getWins(p) > 0) {
+				w += getWins(p);
+				r += getRuns(p);
+			}
+		}
+		w += getWins(PASS);
+		r += getRuns(PASS);
+		return 1.0f * w / r;
+	}
+
+	@Override
+	public synchronized void recordPlayout(float winProportion,
+			McRunnable runnable, int t) {
+		final HistoryObserver history = runnable.getHistoryObserver();
+		assert t < runnable.getTurn();
+		final short move = history.get(t);
+		final int runs = runnable.getBatchSize();
+		update(move, runs, runs * winProportion);
+		if (winProportion == 1) {
+			setWinningMove(move);
+		} else {
+			setWinningMove(NO_POINT);
+		}
+		if (!rave) {
+			return;
+		}
+		final ShortSet moves = runnable.getRaveMoves().get(t);
+		for (int i = 0; i < moves.size(); i++) {
+			addRaveRun(moves.get(i), winProportion);
+		}
+	}
+
+	/**
+	 * Relinks this node, restored from a file, to those of its children that
+	 * are still in use. Indices outside the table (from a damaged file) are
+	 * ignored.
+	 */
+	synchronized void restoreChildren(TranspositionTable table) {
+		final int n = Math.min(buffer.getInt(base + CHILD_COUNT),
+				firstPointBeyondBoard);
+		buffer.putInt(base + CHILD_COUNT, 0);
+		children = null;
+		for (int i = 0; i < n; i++) {
+			final int index = buffer.getInt(childrenOffset + 4 * i);
+			if (index < 0 || index >= table.getCapacity()) {
+				continue;
+			}
+			final SearchNode child = table.getNode(index);
+			if (child.isInUse()) {
+				table.addChild(this, child);
+			}
+		}
+	}
+
+	@Override
+	public void setBiasUpdated(boolean value) {
+		setFlag(BIAS_UPDATED, value);
+	}
+
+	/**
+	 * Sets the list of children. When a child is added to the front of the
+	 * list, its index is also recorded.
+	 */
+	@Override
+	public synchronized void setChildren(ListNode<SearchNode> children) {
+		this.children = children;
+		if (children != null) {
+			final int n = buffer.getInt(base + CHILD_COUNT);
+			if (n < firstPointBeyondBoard) {
+				buffer.putInt(childrenOffset + 4 * n,
+						((OffHeapSearchNode) children.getKey()).index);
+				buffer.putInt(base + CHILD_COUNT, n + 1);
+			}
+		}
+	}
+
+	/** Turns flag on or off. */
+	private synchronized void setFlag(int flag, boolean value) {
+		final int flags = buffer.getInt(base + FLAGS);
+		buffer.putInt(base + FLAGS, value ? flags | flag : flags & ~flag);
+	}
+
+	@Override
+	public void setHasChild(short p) {
+		buffer.put(hasChildOffset + p, (byte) 1);
+	}
+
+	@Override
+	public void setMarked(boolean marked) {
+		setFlag(MARKED, marked);
+	}
+
+	@Override
+	public void setMoveRanking(MoveRanking moveRanking) {
+		this.moveRanking = moveRanking;
+	}
+
+	@Override
+	public void setTopMoves(TopMoves topMoves) {
+		this.topMoves = topMoves;
+	}
+
+	@Override
+	public void setWinningMove(short move) {
+		buffer.putInt(base + WINNING_MOVE, move);
+	}
+
+	@Override
+	public String toString(CoordinateSystem coords) {
+		String result = "Total runs: " + getTotalRuns() + "\n";
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getRuns(p) > 2) {
+				result += toString(p, coords);
+			}
+		}
+		if (getRuns(PASS) > 10) {
+			result += toString(PASS, coords);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("boxing")
+	String toString(short p, CoordinateSystem coords) {
+		if (rave) {
+			return format("%s: %7d/%7d (%1.4f) RAVE %d (%1.4f)\n",
+					coords.toString(p), (int) getWins(p), getRuns(p),
+					getWinRate(p), getRaveRuns(p), getRaveWinRate(p));
+		}
+		return format("%s: %7d/%7d (%1.4f)\n", coords.toString(p),
+				(int) getWins(p), getRuns(p), getWinRate(p));
+	}
+
+	@Override
+	public synchronized void update(short p, int n, float wins) {
+		if (addRun(base + STATS + 8 * p, n, wins)) {
+			buffer.putInt(base + TOTAL_RUNS, buffer.getInt(base + TOTAL_RUNS)
+					+ n);
+		}
+	}
+
+	@Override
+	public void updateBias(McRunnable runnable) {
+		final Suggester[] suggesters = runnable.getSuggesters();
+		for (int i = 0; i < suggesters.length; i++) {
+			final int bias = suggesters[i].getBias();
+			final ShortSet moves = suggesters[i].getMoves();
+			for (int j = 0; j < moves.size(); j++) {
+				update(moves.get(j), bias, bias);
+			}
+		}
+		for (final Rater rater : runnable.getRaters()) {
+			rater.updateNode(this);
+		}
+		setBiasUpdated(true);
+	}
+
+}
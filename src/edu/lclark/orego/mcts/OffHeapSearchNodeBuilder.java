@@ -0,0 +1,120 @@
+package edu.lclark.orego.mcts;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+/**
+ * Builds OffHeapSearchNodes, allocating their records in chunks of direct
+ * (off-heap) memory or, if a file is given, of memory mapped from that file.
+ * <p>
+ * A file begins with a header giving the board width, record size, and
+ * number of records. If an existing file has a matching header, its records
+ * are reused, so the nodes that were in use when it was last written come
+ * back with their statistics; otherwise the file is emptied. A file written
+ * by a table of a different size is not reused, because its nodes would not
+ * be in the buckets chosen by their hashes.
+ */
+public final class OffHeapSearchNodeBuilder implements SearchNodeBuilder {
+
+	/** Number of bytes at the start of a file before the first record. */
+	private static final int HEADER_SIZE = 16;
+
+	/** Identifies a record file. */
+	private static final int MAGIC = 0x4f726567;
+
+	/** Number of records in each buffer. */
+	private static final int RECORDS_PER_CHUNK = 1024;
+
+	/** Channel of the record file, or null if records are not in a file. */
+	private FileChannel channel;
+
+	/** Buffer holding the most recently built records. */
+	private ByteBuffer chunk;
+
+	private final CoordinateSystem coords;
+
+	/** Number of nodes built so far. */
+	private int nodesBuilt;
+
+	/** True if the nodes keep RAVE statistics. */
+	private final boolean rave;
+
+	private final int recordSize;
+
+	/** Builds nodes in direct memory. */
+	public OffHeapSearchNodeBuilder(CoordinateSystem coords, boolean rave) {
+		this.coords = coords;
+		this.rave = rave;
+		recordSize = OffHeapSearchNode.getRecordSize(coords, rave);
+	}
+
+	/**
+	 * Builds nodes in memory mapped from the file with the given name.
+	 *
+	 * @param records
+	 *            Number of nodes the transposition table will build (see
+	 *            TranspositionTable.capacityFor()).
+	 */
+	@SuppressWarnings("resource")
+	public OffHeapSearchNodeBuilder(CoordinateSystem coords, boolean rave,
+			String filename, int records) {
+		this(coords, rave);
+		try {
+			channel = new RandomAccessFile(filename, "rw").getChannel();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(header, 0);
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC
+					|| header.getInt() != coords.getWidth()
+					|| header.getInt() != recordSize
+					|| header.getInt() != records) {
+				channel.truncate(0);
+				header.clear();
+				header.putInt(MAGIC).putInt(coords.getWidth())
+						.putInt(recordSize).putInt(records);
+				header.clear();
+				channel.write(header, 0);
+			}
+		} catch (final IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	@Override
+	public OffHeapSearchNode build() {
+		final int i = nodesBuilt % RECORDS_PER_CHUNK;
+		if (i == 0) {
+			chunk = allocateChunk();
+		}
+		final OffHeapSearchNode result = new OffHeapSearchNode(coords, rave,
+				chunk, i * recordSize, nodesBuilt);
+		nodesBuilt++;
+		return result;
+	}
+
+	/** Returns a new buffer big enough for RECORDS_PER_CHUNK records. */
+	private ByteBuffer allocateChunk() {
+		final int size = RECORDS_PER_CHUNK * recordSize;
+		ByteBuffer result = null;
+		if (channel == null) {
+			result = ByteBuffer.allocateDirect(size);
+		} else {
+			try {
+				result = channel.map(MapMode.READ_WRITE, HEADER_SIZE
+						+ (long) nodesBuilt * recordSize, size);
+			} catch (final IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		return result.order(ByteOrder.nativeOrder());
+	}
+
+}
@@ -0,0 +1,153 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class OffHeapSearchNodeTest {
+
+	private CoordinateSystem coords;
+
+	private OffHeapSearchNode node;
+
+	/** Delegate method to call at on coords. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		coords = CoordinateSystem.forWidth(19);
+		node = new OffHeapSearchNodeBuilder(coords, true).build();
+	}
+
+	@Test
+	public void testInitialValues() {
+		assertFalse(node.isInUse());
+		node.clear(0L, coords);
+		assertTrue(node.isInUse());
+		assertTrue(node.isFresh(coords));
+		assertEquals(2, node.getRuns(at("a3")));
+		assertEquals(1, node.getWins(at("a3")), 0.001);
+		assertEquals(10, node.getRuns(PASS));
+		assertEquals(2, node.getRaveRuns(at("a3")));
+		assertEquals(NO_POINT, node.getWinningMove());
+		node.free();
+		assertFalse(node.isInUse());
+	}
+
+	@Test
+	public void testUpdate() {
+		node.clear(0L, coords);
+		node.update(at("b7"), 2, 2);
+		assertEquals(3, node.getWins(at("b7")), 0.001);
+		assertEquals("B7 wins 3.0/4 = 0.75", node.bestWinCountReport(coords));
+		assertEquals(2 * coords.getArea() + 12, node.getTotalRuns());
+		node.exclude(at("b7"));
+		node.update(at("b7"), 1, 1);
+		assertEquals(-1, node.getWinRate(at("b7")), 0.001);
+		node.addRaveRun(at("c3"), 1);
+		assertEquals(3, node.getRaveRuns(at("c3")));
+		assertEquals(2.0 / 3, node.getRaveWinRate(at("c3")), 0.001);
+	}
+
+	@Test
+	public void testFlags() {
+		node.clear(0L, coords);
+		node.setMarked(true);
+		node.setBiasUpdated(true);
+		assertTrue(node.isMarked());
+		assertTrue(node.biasUpdated());
+		assertTrue(node.isInUse());
+		node.setMarked(false);
+		assertFalse(node.isMarked());
+		assertTrue(node.biasUpdated());
+		node.clear(1L, coords);
+		assertFalse(node.biasUpdated());
+	}
+
+	@Test
+	public void testRestoreFromFile() throws Exception {
+		final File file = File.createTempFile("orego", ".table");
+		file.deleteOnExit();
+		coords = CoordinateSystem.forWidth(5);
+		TranspositionTable table = new TranspositionTable(1,
+				new OffHeapSearchNodeBuilder(coords, false, file.getPath(),
+						TranspositionTable.capacityFor(1, coords, 1)), coords);
+		final SearchNode parent = table.findOrAllocate(5L);
+		final SearchNode child = table.findOrAllocate(6L);
+		table.findOrAllocate(7L);
+		parent.update(at("c3"), 5, 4);
+		parent.setHasChild(at("c3"));
+		table.addChild(parent, child);
+		// Reopen the file, as a restarted player would
+		table = new TranspositionTable(1, new OffHeapSearchNodeBuilder(
+				coords, false, file.getPath(), TranspositionTable.capacityFor(
+						1, coords, 1)), coords);
+		assertEquals(3, table.getNodesInUse());
+		final SearchNode restored = table.findIfPresent(5L);
+		assertEquals(7, restored.getRuns(at("c3")));
+		assertEquals(5, restored.getWins(at("c3")), 0.001);
+		assertTrue(restored.hasChild(at("c3")));
+		assertEquals(table.findIfPresent(6L), restored.getChildren().getKey());
+		// Only the nodes reachable from the root survive a sweep
+		table.markNodesReachableFrom(restored);
+		table.sweep();
+		assertEquals(2, table.getNodesInUse());
+		assertNull(table.findIfPresent(7L));
+		// A file for a different board size is not used
+		final CoordinateSystem nine = CoordinateSystem.forWidth(9);
+		table = new TranspositionTable(1, new OffHeapSearchNodeBuilder(nine,
+				false, file.getPath(), TranspositionTable.capacityFor(1, nine,
+						1)), nine);
+		assertEquals(0, table.getNodesInUse());
+	}
+
+	@Test
+	public void testRestoreWithDifferentSize() throws Exception {
+		final File file = File.createTempFile("orego", ".table");
+		file.deleteOnExit();
+		coords = CoordinateSystem.forWidth(5);
+		TranspositionTable table = new TranspositionTable(2,
+				new OffHeapSearchNodeBuilder(coords, false, file.getPath(),
+						TranspositionTable.capacityFor(2, coords, 1)), coords);
+		final SearchNode parent = table.findOrAllocate(5L);
+		// A child in the last bucket, beyond the end of a smaller table
+		final SearchNode child = table.findOrAllocate(table.getCapacity()
+				/ TranspositionTable.BUCKET_SIZE - 1);
+		table.addChild(parent, child);
+		// Restarting with less memory starts cold instead of failing
+		table = new TranspositionTable(1, new OffHeapSearchNodeBuilder(
+				coords, false, file.getPath(), TranspositionTable.capacityFor(
+						1, coords, 1)), coords);
+		assertEquals(0, table.getNodesInUse());
+		table.addChild(table.findOrAllocate(5L), table.findOrAllocate(6L));
+		// So does restarting with more memory, where the nodes would not be in
+		// their buckets
+		table = new TranspositionTable(2, new OffHeapSearchNodeBuilder(
+				coords, false, file.getPath(), TranspositionTable.capacityFor(
+						2, coords, 1)), coords);
+		assertEquals(0, table.getNodesInUse());
+	}
+
+	@Test
+	public void testPin() {
+		coords = CoordinateSystem.forWidth(5);
+		final TranspositionTable table = new TranspositionTable(1,
+				new OffHeapSearchNodeBuilder(coords, true), coords);
+		final SearchNode pinned = table.findOrAllocate(5L);
+		table.addChild(pinned, table.findOrAllocate(6L));
+		table.findOrAllocate(7L);
+		table.pin(5L);
+		table.sweep();
+		assertEquals(2, table.getNodesInUse());
+		assertNotNull(table.findIfPresent(6L));
+	}
+
+}
@@ -8,9 +8,7 @@ import static edu.lclark.orego.core.StoneColor.*;
 import static edu.lclark.orego.experiment.Logging.*;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
 
 import edu.lclark.orego.book.OpeningBook;
 import edu.lclark.orego.core.Board;
@@ -28,6 +26,9 @@ import edu.lclark.orego.util.ShortSet;
 /** Runs playouts and chooses moves. */
 public final class Player {
 
+	/** Computes biases off the search threads, or null if not in use. */
+	private BiasWorker biasWorker;
+
 	private final Board board;
 
 	private OpeningBook book;
@@ -45,10 +46,13 @@ public final class Player {
 	 */
 	private boolean coupDeGrace;
 
-	private TreeDescender descender;
+	/**
+	 * Time (as returned by System.currentTimeMillis()) at which the threads
+	 * stop searching on their own. Long.MAX_VALUE while pondering.
+	 */
+	private volatile long deadline;
 
-	/** For managing threads. */
-	private ExecutorService executor;
+	private TreeDescender descender;
 
 	private final FinalScorer finalScorer;
 
@@ -56,12 +60,9 @@ public final class Player {
 
 	/**
 	 * True if the threads should keep running, e.g., because time has not run
-	 * out.
+	 * out. This is volatile so that the worker threads see changes promptly.
 	 */
-	private boolean keepRunning;
-
-	/** Used to verify that all McRunnables have stopped. */
-	private CountDownLatch latch;
+	private volatile boolean keepRunning;
 
 	/** Number of milliseconds to spend on the next move. */
 	private int msecPerMove;
@@ -69,6 +70,14 @@ public final class Player {
 	/** True if we should think during the opponent's turn. */
 	private boolean ponder;
 
+	/**
+	 * Coordinates the player and the worker threads. Each search takes two
+	 * phases: the workers wait at the start of the first until the player
+	 * starts the search, and the player waits at the end of the second until
+	 * the workers have all stopped.
+	 */
+	private final Phaser phaser;
+
 	/** For running playouts. */
 	private final McRunnable[] runnables;
 
@@ -82,8 +91,17 @@ public final class Player {
 	/** Object used to calculate amount of time used in generating a move. */
 	private TimeManager timeManager;
 
+	/** The transposition table, whose marker thread is stopped by shutdown(). */
+	private TranspositionTable table;
+
 	private TreeUpdater updater;
 
+	/**
+	 * Long-lived threads running the McRunnables, created at the first search.
+	 * Between searches they wait on phaser.
+	 */
+	private Thread[] workers;
+
 	/**
 	 * @param threads
 	 *            Number of threads to run.
@@ -106,6 +124,16 @@ public final class Player {
 		updater = new DoNothing();
 		book = new DoNothing();
 		timeLeftWasSent = false;
+		phaser = new Phaser(threads + 1);
+	}
+
+	/**
+	 * Waits until all of the McRunnables have stopped, either because
+	 * keepRunning was set to false or because the deadline has passed.
+	 */
+	private void awaitThreads() {
+		phaser.arriveAndAwaitAdvance();
+		keepRunning = false;
 	}
 
 	/** Plays at p on this player's board. */
@@ -139,28 +167,14 @@ public final class Player {
 		}
 		if (!timeLeftWasSent) {
 			// No time left signal was received
-			startThreads();
-			try {
-				Thread.sleep(msecPerMove);
-			} catch (final InterruptedException e) {
-				e.printStackTrace();
-				System.exit(1);
-			}
-			stopThreads();
+			search(msecPerMove);
 		} else {
 			// Time left signal was received
 			timeManager.startNewTurn();
 			msecPerMove = timeManager.getMsec();
 			log("Allocating " + msecPerMove + " msec");
 			do {
-				startThreads();
-				try {
-					Thread.sleep(msecPerMove);
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-					System.exit(1);
-				}
-				stopThreads();
+				search(msecPerMove);
 				msecPerMove = timeManager.getMsec();
 			} while (msecPerMove > 0);
 		}
@@ -169,6 +183,9 @@ public final class Player {
 			playouts += runnable.getPlayoutsCompleted();
 		}
 		Logging.log("Turn : " + board.getTurn() + " Playouts : " + playouts);
+		if (biasWorker != null) {
+			log(biasWorker.toString());
+		}
 		return descender.bestPlayMove();
 	}
 
@@ -284,6 +301,7 @@ public final class Player {
 				}
 			}
 		}
+		flushUpdates(runnable);
 		// Gather all of the dead stones into a list to return
 		for (final short p : board.getCoordinateSystem().getAllPointsOnBoard()) {
 			if (board.getColorAt(p) == color) {
@@ -301,12 +319,18 @@ public final class Player {
 		return deadStones;
 	}
 
+	/** Returns the bias worker, or null if biases are computed inline. */
+	public BiasWorker getBiasWorker() {
+		return biasWorker;
+	}
+
 	/** Returns the board associated with this player. */
 	public Board getBoard() {
 		return board;
 	}
 
-	TreeDescender getDescender() {
+	/** Returns the tree descender. */
+	public TreeDescender getDescender() {
 		return descender;
 	}
 
@@ -350,16 +374,19 @@ public final class Player {
 		return updater;
 	}
 
-	/** Indicate that one McRunnable has stopped. */
-	void notifyMcRunnableDone() {
-		latch.countDown();
-	}
-
 	/** Sets whether we think during the opponent's turn. */
 	public void ponder(boolean pondering) {
 		this.ponder = pondering;
 	}
 
+	/**
+	 * Records the worker computing biases off the search threads, for
+	 * reporting.
+	 */
+	public void setBiasWorker(BiasWorker worker) {
+		biasWorker = worker;
+	}
+
 	/** Sets cleanup mode, as specified in the GTP standard. */
 	public void setCleanupMode(boolean cleanup) {
 		cleanupMode = cleanup;
@@ -386,6 +413,16 @@ public final class Player {
 		msecPerMove = msec;
 	}
 
+	/**
+	 * Sets the number of playouts each McRunnable plays from a leaf before
+	 * updating the tree.
+	 */
+	public void setPlayoutsPerDescent(int playouts) {
+		for (final McRunnable runnable : runnables) {
+			runnable.setPlayoutsPerDescent(playouts);
+		}
+	}
+
 	/** Sets which opening book to use. Default is DoNothing. */
 	public void setOpeningBook(OpeningBook book) {
 		this.book = book;
@@ -401,6 +438,11 @@ public final class Player {
 		timeManager = time;
 	}
 
+	/** Records the transposition table, so that shutdown() can stop it. */
+	public void setTranspositionTable(TranspositionTable table) {
+		this.table = table;
+	}
+
 	public void setTreeDescender(TreeDescender descender) {
 		this.descender = descender;
 
@@ -428,13 +470,59 @@ public final class Player {
 		}
 	}
 
+	/**
+	 * Runs the McRunnables for msec milliseconds. The threads stop on their
+	 * own at the deadline; this method returns once they all have.
+	 */
+	private void search(int msec) {
+		startThreads(System.currentTimeMillis() + msec);
+		awaitThreads();
+	}
+
+	/**
+	 * Stops all of this player's threads: the search threads, the bias worker
+	 * (if any), and the transposition table's marker. The player cannot
+	 * search afterward. Call this before discarding the player, because the
+	 * threads would otherwise keep it (and its transposition table) reachable.
+	 */
+	public void shutdown() {
+		stopThreads();
+		// The workers waiting for the next search return instead
+		phaser.forceTermination();
+		if (workers != null) {
+			for (final Thread worker : workers) {
+				worker.interrupt();
+				try {
+					worker.join();
+				} catch (final InterruptedException e) {
+					// Stop waiting; the worker still ends
+				}
+			}
+			workers = null;
+		}
+		if (biasWorker != null) {
+			biasWorker.shutdown();
+		}
+		if (table != null) {
+			table.shutdown();
+		}
+	}
+
 	/** True if McRunnables attached to this Player should keep running. */
 	public boolean shouldKeepRunning() {
-		return keepRunning;
+		return keepRunning && System.currentTimeMillis() < deadline;
 	}
 
-	/** Starts the McRunnables' threads. */
+	/** Starts the McRunnables' threads, to run until stopped. */
 	private void startThreads() {
+		startThreads(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Starts the McRunnables' threads, to run until stopped or until deadline.
+	 * The worker threads are created the first time this is called.
+	 */
+	private void startThreads(long deadline) {
 		if (keepRunning) {
 			log("Threads were already running");
 			return; // If the threads were already running, do nothing
@@ -445,14 +533,20 @@ public final class Player {
 			getMcRunnable(0).copyDataFrom(board);
 			root.updateBias(getMcRunnable(0));
 		}
-		keepRunning = true;
-		int n = runnables.length; // # of threads
-		latch = new CountDownLatch(n);
-		executor = Executors.newFixedThreadPool(n);
-		for (int i = 0; i < n; i++) {
-			executor.execute(runnables[i]);
+		if (workers == null) {
+			workers = new Thread[runnables.length];
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new Thread(new Worker(runnables[i]),
+						"McRunnable " + i);
+				// Don't keep the JVM alive just for idle workers
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
 		}
-		executor.shutdown();
+		this.deadline = deadline;
+		keepRunning = true;
+		// Releases the workers waiting at the start of the search
+		phaser.arriveAndAwaitAdvance();
 	}
 
 	/** Stops the McRunnables' threads. */
@@ -462,13 +556,8 @@ public final class Player {
 			return; // If the threads were not running, do nothing
 		}
 		log("Stopping threads");
-		try {
-			keepRunning = false;
-			latch.await();
-		} catch (final InterruptedException e) {
-			e.printStackTrace();
-			System.exit(1);
-		}
+		keepRunning = false;
+		awaitThreads();
 	}
 
 	@Override
@@ -477,8 +566,9 @@ public final class Player {
 	}
 
 	/**
-	 * Undoes the last move. This is done by clearing the board and replaying
-	 * all moves but the last.
+	 * Undoes the last move. This is done by taking the move back on the board
+	 * or, if the board cannot do that (e.g., because stones were set up since
+	 * the move), by clearing the board and replaying all moves but the last.
 	 * 
 	 * @return true if undoing succeeded (i.e., it was not the beginning of the
 	 *         game).
@@ -489,16 +579,18 @@ public final class Player {
 		}
 		final boolean alreadyRunning = keepRunning;
 		stopThreads();
-		final ShortList movesList = new ShortList(board.getCoordinateSystem()
-				.getMaxMovesPerGame());
-		for (int i = 0; i < historyObserver.size() - 1; i++) {
-			movesList.add(historyObserver.get(i));
-		}
-		// Now replay the moves
-		board.clearPreservingInitialStones();
 		updater.clear();
-		for (int i = 0; i < movesList.size(); i++) {
-			board.play(movesList.get(i));
+		if (!board.undo()) {
+			final ShortList movesList = new ShortList(board
+					.getCoordinateSystem().getMaxMovesPerGame());
+			for (int i = 0; i < historyObserver.size() - 1; i++) {
+				movesList.add(historyObserver.get(i));
+			}
+			// Now replay the moves
+			board.clearPreservingInitialStones();
+			for (int i = 0; i < movesList.size(); i++) {
+				board.play(movesList.get(i));
+			}
 		}
 		if (alreadyRunning) {
 			startThreads();
@@ -506,6 +598,14 @@ public final class Player {
 		return true;
 	}
 
+	/**
+	 * Incorporates any results of mcRunnable's runs that the tree updater has
+	 * held back.
+	 */
+	public void flushUpdates(McRunnable mcRunnable) {
+		updater.flush(mcRunnable);
+	}
+
 	/** Incorporate the result of a run in the tree. */
 	public void updateTree(Color winner, McRunnable mcRunnable) {
 		updater.updateTree(winner, mcRunnable);
@@ -664,4 +764,31 @@ public final class Player {
 		return result;
 	}
 
+	/**
+	 * Body of a long-lived search thread. Between searches, it waits on the
+	 * phaser instead of exiting.
+	 */
+	private final class Worker implements Runnable {
+
+		private final McRunnable runnable;
+
+		Worker(McRunnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				// Wait for the player to start a search, or to shut down
+				if (phaser.arriveAndAwaitAdvance() < 0) {
+					return;
+				}
+				runnable.run();
+				// Tell the player this search is done
+				phaser.arriveAndAwaitAdvance();
+			}
+		}
+
+	}
+
 }
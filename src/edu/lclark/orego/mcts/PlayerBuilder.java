@@ -3,6 +3,8 @@ package edu.lclark.orego.mcts;
 import edu.lclark.orego.book.FusekiBook;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.PlayoutBoard;
+import edu.lclark.orego.feature.AreaScoreObserver;
 import edu.lclark.orego.feature.LgrfTable;
 import edu.lclark.orego.patterns.ShapeTable;
 import edu.lclark.orego.time.ExitingTimeManager;
@@ -14,10 +16,25 @@ import static edu.lclark.orego.experiment.Logging.log;
 @SuppressWarnings("hiding")
 public final class PlayerBuilder {
 
+	/** Number of nodes that can wait for a BiasWorker at once. */
+	private static final int BIAS_QUEUE_SIZE = 8;
+
+	/** True if playouts are scored by an AreaScoreObserver. */
+	private boolean areaScore;
+
+	/** True if biases are computed by a BiasWorker, off the search threads. */
+	private boolean asyncBias;
+
 	private int biasDelay;
 
 	private boolean book;
 
+	/**
+	 * Number of runs each McRunnable collects before updating the tree, or 0
+	 * to update the tree after every run.
+	 */
+	private int bufferedUpdates;
+
 	private boolean coupDeGrace;
 
 	private int gestation;
@@ -26,6 +43,9 @@ public final class PlayerBuilder {
 
 	private boolean lgrf2;
 
+	/** True if the fast part of each playout is played on a PlayoutBoard. */
+	private boolean lightPlayouts;
+
 	private boolean liveShape;
 	
 	private String managerType;
@@ -35,6 +55,12 @@ public final class PlayerBuilder {
 
 	private int msecPerMove;
 
+	/** True if search nodes are stored outside the Java heap. */
+	private boolean offHeap;
+
+	/** Number of playouts played from each leaf reached by descending. */
+	private int playoutsPerDescent;
+
 	private boolean ponder;
 	
 	private boolean rave;
@@ -46,13 +72,51 @@ public final class PlayerBuilder {
 	private int shapePatternSize;
 	
 	private float shapeScalingFactor;
-	
+
+	/**
+	 * True if the transposition table holds SparseSearchNodes (or
+	 * SparseRaveNodes), allowing more nodes in the same memory.
+	 */
+	private boolean sparseNodes;
+
+	/**
+	 * Name of the file holding the transposition table, or null if it is not
+	 * kept in a file.
+	 */
+	private String tableFile;
+
 	private int threads;
 
+	/**
+	 * Number of best moves listed at each high-visit node, or 0 to evaluate
+	 * every move at every selection.
+	 */
+	private int topMoves;
+
+	/** Number of runs after which a node's list of best moves is refreshed. */
+	private int topMovesInterval;
+
+	/** Number of virtual runs added to each move as a thread descends. */
+	private int virtualLoss;
+
+	/** "loss" or "tie": the result of each virtual run. */
+	private String virtualLossMode;
+
+	/**
+	 * Number of moves initially considered from each node under progressive
+	 * widening, or 0 to consider every move.
+	 */
+	private int wideningMoves;
+
+	/** Runs after which progressive widening admits its first extra move. */
+	private int wideningRuns;
+
 	private int width;
 
 	public PlayerBuilder() {
 		// Default values
+		areaScore = false;
+		asyncBias = false;
 		biasDelay = 800;
 		gestation = 4;
 		komi = 7.5;
@@ -69,6 +133,37 @@ public final class PlayerBuilder {
 		shapeScalingFactor = .95f;
 		shapePatternSize = 5;
 		shapeBias = 20;
+		virtualLoss = 0;
+		virtualLossMode = "loss";
+		sparseNodes = false;
+		offHeap = false;
+		tableFile = null;
+		playoutsPerDescent = 1;
+		bufferedUpdates = 0;
+		topMoves = 0;
+		topMovesInterval = 100;
+		wideningMoves = 0;
+		wideningRuns = 40;
+	}
+
+	/**
+	 * If true, the area score is kept incrementally by an AreaScoreObserver
+	 * and used for scoring playouts and for mercy cutoffs, instead of scanning
+	 * the board at the end of each playout. Defaults to false.
+	 */
+	public PlayerBuilder areaScore(boolean areaScore) {
+		this.areaScore = areaScore;
+		return this;
+	}
+
+	/**
+	 * If true, nodes reaching biasDelay runs are handed to a BiasWorker, which
+	 * computes their biases on its own thread while the search continues.
+	 * Defaults to false.
+	 */
+	public PlayerBuilder asyncBias(boolean async) {
+		this.asyncBias = async;
+		return this;
 	}
 
 	public PlayerBuilder biasDelay(int biasDelay) {
@@ -81,6 +176,16 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets the number of runs each McRunnable collects before incorporating
+	 * them into the tree, all at once. 0 (the default) incorporates each run
+	 * immediately.
+	 */
+	public PlayerBuilder bufferedUpdates(int runs) {
+		this.bufferedUpdates = runs;
+		return this;
+	}
+
 	/** Creates the Player. */
 	public Player build() {
 		log("Beginning to build player");
@@ -93,28 +198,81 @@ public final class PlayerBuilder {
 		}else {
 			copyStructure = CopiableStructureFactory.useWithBias(width, komi);
 		}
+		if (areaScore) {
+			copyStructure.add(new AreaScoreObserver(copyStructure
+					.get(Board.class)));
+		}
+		if (lightPlayouts) {
+			copyStructure.add(new PlayoutBoard(width));
+		}
 		final Player result = new Player(threads, copyStructure);
 		final Board board = result.getBoard();
 		final CoordinateSystem coords = board.getCoordinateSystem();
-		TranspositionTable table;
+		final float virtualLossWinRate;
+		if (virtualLossMode.equals("tie")) {
+			virtualLossWinRate = 0.5f;
+		} else if (virtualLossMode.equals("loss")) {
+			virtualLossWinRate = 0;
+		} else {
+			throw new IllegalArgumentException("Unknown virtual loss mode: "
+					+ virtualLossMode);
+		}
+		final SearchNodeBuilder nodeBuilder;
+		int nodesPerDenseNode = 1;
+		if (tableFile != null) {
+			nodeBuilder = new OffHeapSearchNodeBuilder(coords, rave, tableFile,
+					TranspositionTable.capacityFor(memorySize, coords, 1));
+		} else if (offHeap) {
+			nodeBuilder = new OffHeapSearchNodeBuilder(coords, rave);
+		} else if (sparseNodes) {
+			if (rave) {
+				nodeBuilder = new SparseRaveNodeBuilder(coords);
+			} else {
+				nodeBuilder = new SparseSearchNodeBuilder(coords);
+			}
+			nodesPerDenseNode = SparseSearchNode.NODES_PER_DENSE_NODE;
+		} else if (rave) {
+			nodeBuilder = new RaveNodeBuilder(coords);
+		} else {
+			nodeBuilder = new SimpleSearchNodeBuilder(coords);
+		}
 		log("Creating transposition table");
+		final TranspositionTable table = new TranspositionTable(memorySize,
+				nodeBuilder, coords, nodesPerDenseNode);
+		if (tableFile != null) {
+			// Keep the tree for the empty board for the next game
+			table.pin(board.getFancyHash());
+		}
+		final AbstractDescender descender;
 		if (rave) {
-			table = new TranspositionTable(memorySize, new RaveNodeBuilder(coords),
-					coords);
-			result.setTreeDescender(new RaveDescender(board, table, biasDelay));
+			descender = new RaveDescender(board, table, biasDelay, virtualLoss,
+					virtualLossWinRate);
 		} else {
-			table = new TranspositionTable(memorySize, new SimpleSearchNodeBuilder(coords),
-					coords);
-			result.setTreeDescender(new UctDescender(board, table, biasDelay));
+			descender = new UctDescender(board, table, biasDelay, virtualLoss,
+					virtualLossWinRate);
+		}
+		descender.setTopMoves(topMoves, topMovesInterval);
+		descender.setWidening(wideningMoves, wideningRuns);
+		if (asyncBias) {
+			final BiasWorker worker = new BiasWorker(result, copyStructure,
+					BIAS_QUEUE_SIZE);
+			descender.setBiasWorker(worker);
+			result.setBiasWorker(worker);
 		}
+		result.setTreeDescender(descender);
+		result.setTranspositionTable(table);
 		log("Done creating transposition table");
 		TreeUpdater updater;
-		if (lgrf2) {
-			updater = new LgrfUpdater(new SimpleTreeUpdater(board, table, gestation),
-					copyStructure.get(LgrfTable.class));
+		if (bufferedUpdates > 0) {
+			updater = new BufferedTreeUpdater(board, table, gestation,
+					bufferedUpdates, rave);
 		} else {
 			updater = new SimpleTreeUpdater(board, table, gestation);
 		}
+		if (lgrf2) {
+			updater = new LgrfUpdater(updater,
+					copyStructure.get(LgrfTable.class));
+		}
 		if (liveShape) {
 			assert shape;
 			ShapeTable shapeTable = copyStructure.get(ShapeTable.class);
@@ -130,12 +288,13 @@ public final class PlayerBuilder {
 		result.setCoupDeGrace(coupDeGrace);
 		log("About to create opening book");
 		if (book && width == 19) {
-			result.setOpeningBook(new FusekiBook());
+			result.setOpeningBook(new FusekiBook(board));
 		} else {
 			result.setOpeningBook(new DoNothing());
 		}
 		result.setTreeUpdater(updater);
 		result.setMsecPerMove(msecPerMove);
+		result.setPlayoutsPerDescent(playoutsPerDescent);
 		result.ponder(ponder);
 		result.clear();
 		log("Done building player");
@@ -162,6 +321,11 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	public PlayerBuilder lightPlayouts(boolean lightPlayouts) {
+		this.lightPlayouts = lightPlayouts;
+		return this;
+	}
+
 	public PlayerBuilder liveShape(boolean liveShape) {
 		this.liveShape = liveShape;
 		return this;
@@ -177,11 +341,32 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * If true, search nodes are stored in fixed-size records outside the Java
+	 * heap, reducing garbage collection and startup time. This takes
+	 * precedence over sparseNodes.
+	 */
+	public PlayerBuilder offHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+		return this;
+	}
+
 	public PlayerBuilder openingBook(boolean book) {
 		this.book = book;
 		return this;
 	}
 
+	/**
+	 * Sets the number of playouts played from each leaf reached by descending.
+	 * Their results are incorporated into the tree in a single update, saving
+	 * descents and updates at the cost of a less selective search. 1 (the
+	 * default) plays one playout per descent.
+	 */
+	public PlayerBuilder playoutsPerDescent(int playouts) {
+		this.playoutsPerDescent = playouts;
+		return this;
+	}
+
 	public PlayerBuilder ponder(boolean ponder) {
 		this.ponder = ponder;
 		return this;
@@ -212,6 +397,26 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * If true, the transposition table holds sparse nodes, which store only the
+	 * moves actually explored from them. Several times as many nodes then fit
+	 * in the same memory.
+	 */
+	public PlayerBuilder sparseNodes(boolean sparseNodes) {
+		this.sparseNodes = sparseNodes;
+		return this;
+	}
+
+	/**
+	 * Keeps the (off-heap) transposition table in the named file, so that a
+	 * restarted player can resume from its statistics. The tree for the empty
+	 * board is kept from game to game.
+	 */
+	public PlayerBuilder tableFile(String filename) {
+		this.tableFile = filename;
+		return this;
+	}
+
 	public PlayerBuilder threads(int threads) {
 		this.threads = threads;
 		return this;
@@ -223,4 +428,68 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets the number of best moves listed at each node with more than
+	 * biasDelay runs. Selection from such a node only evaluates the listed
+	 * moves unless a move outside the list might be better. 0 (the default)
+	 * evaluates every move at every selection.
+	 */
+	public PlayerBuilder topMoves(int count) {
+		this.topMoves = count;
+		return this;
+	}
+
+	/**
+	 * Sets the number of runs through a node after which its list of best
+	 * moves is refreshed. Defaults to 100.
+	 *
+	 * @see #topMoves(int)
+	 */
+	public PlayerBuilder topMovesInterval(int runs) {
+		this.topMovesInterval = runs;
+		return this;
+	}
+
+	/**
+	 * Sets the number of virtual runs added to each move as a thread descends
+	 * through it. 0 (the default) turns virtual loss off.
+	 */
+	public PlayerBuilder virtualLoss(int virtualLoss) {
+		this.virtualLoss = virtualLoss;
+		return this;
+	}
+
+	/**
+	 * Sets the result of each virtual run: "loss" (the default) or "tie".
+	 */
+	public PlayerBuilder virtualLossMode(String virtualLossMode) {
+		this.virtualLossMode = virtualLossMode;
+		return this;
+	}
+
+	/**
+	 * Sets the number of moves considered from each node, once its bias has
+	 * been updated, under progressive widening. The moves are ranked by win
+	 * rate just after the bias is applied, and more are admitted as runs
+	 * accumulate. 0 (the default) considers every move.
+	 *
+	 * @see #wideningRuns(int)
+	 */
+	public PlayerBuilder wideningMoves(int moves) {
+		this.wideningMoves = moves;
+		return this;
+	}
+
+	/**
+	 * Sets the number of runs, after a node's moves are ranked, at which
+	 * progressive widening admits one more move. Each further move takes
+	 * 1.4 times as many runs as the last. Defaults to 40.
+	 *
+	 * @see #wideningMoves(int)
+	 */
+	public PlayerBuilder wideningRuns(int runs) {
+		this.wideningRuns = runs;
+		return this;
+	}
+
 }
@@ -52,4 +52,34 @@ public class PlayerBuilderTest {
 		assertEquals(173, builder.build().getDescender().getBiasDelay());				
 	}
 
+	@Test
+	public void testTopMoves() {
+		builder.topMoves(12).topMovesInterval(50);
+		final AbstractDescender descender = (AbstractDescender) builder.build().getDescender();
+		assertEquals(12, descender.getTopMoveCount());
+		assertEquals(50, descender.getTopMovesInterval());
+	}
+
+	@Test
+	public void testWidening() {
+		builder.wideningMoves(10).wideningRuns(30);
+		final AbstractDescender descender = (AbstractDescender) builder.build().getDescender();
+		assertEquals(10, descender.getWideningMoves());
+		assertEquals(30, descender.getWideningRuns());
+	}
+
+	@Test
+	public void testAreaScore() {
+		assertNull(builder.build().getMcRunnable(0).getAreaScore());
+		builder.areaScore(true);
+		assertNotNull(builder.build().getMcRunnable(0).getAreaScore());
+	}
+
+	@Test
+	public void testAsyncBias() {
+		assertNull(builder.build().getBiasWorker());
+		builder.asyncBias(true);
+		assertNotNull(builder.build().getBiasWorker());
+	}
+
 }
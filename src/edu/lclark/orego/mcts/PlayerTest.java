@@ -511,4 +511,96 @@ public class PlayerTest {
 		assertTrue(run2 < 1.5 * run1);
 	}
 
+	@Test
+	public void testSparseNodes() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5)
+				.memorySize(64).openingBook(false).sparseNodes(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		assertEquals(at("e3"), player.bestMove());
+	}
+
+	@Test
+	public void testOffHeap() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5)
+				.memorySize(64).openingBook(false).offHeap(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		assertEquals(at("e3"), player.bestMove());
+	}
+
+	@Test
+	public void testPlayoutsPerDescent() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5)
+				.memorySize(64).openingBook(false).playoutsPerDescent(4)
+				.build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		assertEquals(at("e3"), player.bestMove());
+	}
+
+	@Test
+	public void testBufferedUpdates() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5)
+				.memorySize(64).openingBook(false).bufferedUpdates(16)
+				.build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		assertEquals(at("e3"), player.bestMove());
+	}
+
+	@Test
+	public void testRepeatedSearches() {
+		// The same worker threads are reused for every search
+		for (int i = 0; i < 3; i++) {
+			player.bestMove();
+			long playouts = 0;
+			for (int j = 0; j < player.getNumberOfThreads(); j++) {
+				playouts += player.getMcRunnable(j).getPlayoutsCompleted();
+			}
+			assertTrue(playouts > 0);
+		}
+	}
+
+	@Test
+	public void testShutdown() {
+		final int threads = Thread.activeCount();
+		// As when the GTP boardsize or komi changes, build several players in
+		// turn, each with search threads, a bias worker, and a marker
+		for (int i = 0; i < 3; i++) {
+			player = new PlayerBuilder().msecPerMove(10).threads(4)
+					.boardWidth(5).memorySize(1).openingBook(false)
+					.asyncBias(true).ponder(true).build();
+			player.acceptMove(player.getBoard().getCoordinateSystem()
+					.at("c3"));
+			player.bestMove();
+			player.shutdown();
+			assertEquals(threads, Thread.activeCount());
+		}
+	}
+
 }
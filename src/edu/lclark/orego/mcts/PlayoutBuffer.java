@@ -0,0 +1,354 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Holds the results of playouts by one McRunnable until a BufferedTreeUpdater
+ * incorporates them into the tree. All space is allocated up front; after a
+ * flush, the same arrays are reused for the next playouts.
+ * <p>
+ * A flush merges the playouts, so that each node they pass through is updated
+ * once for each distinct move (and RAVE move), rather than once per playout.
+ */
+final class PlayoutBuffer {
+
+	/** Fancy hashes of the positions in each playout, one row per playout. */
+	private final long[] fancyHashes;
+
+	/** Index of the first (most recent) visit to each distinct node. */
+	private final int[] firstVisit;
+
+	/**
+	 * For each playout, the last node it reached in the tree, or null if it
+	 * reached the end of the playout.
+	 */
+	private final SearchNode[] frontierNodes;
+
+	/** For each playout, the turn at which it left the tree. */
+	private final int[] frontierTurns;
+
+	/** Moves played in each playout. */
+	private final HistoryObserver[] histories;
+
+	/** Number of elements in each row of fancyHashes. */
+	private final int maxMoves;
+
+	/** Index of the next (earlier) visit to the same node as each visit. */
+	private final int[] nextVisit;
+
+	/** Number of distinct nodes visited during the current flush. */
+	private int nodeCount;
+
+	/**
+	 * Hash table of positions in nodes, plus one, for the distinct nodes
+	 * visited during the current flush. 0 indicates an empty slot.
+	 */
+	private final int[] nodeIndex;
+
+	/** Distinct nodes visited during the current flush. */
+	private final SearchNode[] nodes;
+
+	/** Slot in nodeIndex of each node in nodes. */
+	private final int[] nodeSlots;
+
+	/** Merged runs for each move from the current node. */
+	private final int[] pointRuns;
+
+	/** Merged wins for each move from the current node. */
+	private final float[] pointWins;
+
+	/** Finds the RAVE moves for each playout. */
+	private final RaveMoves[] raveMoves;
+
+	/** Merged RAVE runs for each move from the current node. */
+	private final int[] raveRuns;
+
+	/** Merged RAVE wins for each move from the current node. */
+	private final float[] raveWins;
+
+	/**
+	 * Number of runs represented by each playout (see
+	 * McRunnable.getBatchSize()).
+	 */
+	private final int[] runs;
+
+	/** Number of playouts held. */
+	private int size;
+
+	/** Turn of the real board when each playout started. */
+	private final int[] startTurns;
+
+	/** Moves from the current node with merged runs or RAVE runs. */
+	private final ShortSet touched;
+
+	/** Turn at the end of each playout. */
+	private final int[] turns;
+
+	/** Playout of each visit to a node. */
+	private final int[] visitPlayouts;
+
+	/** Turn of each visit to a node. */
+	private final int[] visitTurns;
+
+	/**
+	 * Proportion of each playout's runs won by the color to play at the start
+	 * of the playout.
+	 */
+	private final float[] winProportions;
+
+	PlayoutBuffer(int capacity, CoordinateSystem coords) {
+		maxMoves = coords.getMaxMovesPerGame() + 1;
+		fancyHashes = new long[capacity * maxMoves];
+		histories = new HistoryObserver[capacity];
+		raveMoves = new RaveMoves[capacity];
+		for (int i = 0; i < capacity; i++) {
+			histories[i] = new HistoryObserver(coords);
+			raveMoves[i] = new RaveMoves(coords);
+		}
+		runs = new int[capacity];
+		startTurns = new int[capacity];
+		turns = new int[capacity];
+		winProportions = new float[capacity];
+		frontierNodes = new SearchNode[capacity];
+		frontierTurns = new int[capacity];
+		// A playout cannot visit more nodes than it has moves
+		final int maxVisits = capacity * maxMoves;
+		nodes = new SearchNode[maxVisits];
+		nodeSlots = new int[maxVisits];
+		firstVisit = new int[maxVisits];
+		nextVisit = new int[maxVisits];
+		visitPlayouts = new int[maxVisits];
+		visitTurns = new int[maxVisits];
+		nodeIndex = new int[Integer.highestOneBit(maxVisits) * 4];
+		final int n = coords.getFirstPointBeyondBoard();
+		pointRuns = new int[n];
+		pointWins = new float[n];
+		raveRuns = new int[n];
+		raveWins = new float[n];
+		touched = new ShortSet(n);
+	}
+
+	/**
+	 * Copies the playout just completed by runnable into this buffer.
+	 *
+	 * @param startTurn
+	 *            The turn of the real board.
+	 * @param winProportion
+	 *            Proportion of runs won by the color to play at startTurn.
+	 */
+	void add(McRunnable runnable, int startTurn, float winProportion) {
+		assert !isFull();
+		final int turn = runnable.getTurn();
+		histories[size].copyDataFrom(runnable.getHistoryObserver());
+		System.arraycopy(runnable.getFancyHashes(), startTurn, fancyHashes,
+				size * maxMoves + startTurn, turn - startTurn + 1);
+		runs[size] = runnable.getBatchSize();
+		startTurns[size] = startTurn;
+		turns[size] = turn;
+		winProportions[size] = winProportion;
+		size++;
+	}
+
+	/**
+	 * Merges the RAVE runs of playout i for the node visited at turn t into
+	 * raveRuns and raveWins.
+	 */
+	private void addRaveRuns(int i, int t, float winProportion) {
+		final ShortSet moves = raveMoves[i].get(t);
+		for (int j = 0; j < moves.size(); j++) {
+			final short p = moves.get(j);
+			touched.add(p);
+			raveRuns[p]++;
+			raveWins[p] += winProportion;
+		}
+	}
+
+	/**
+	 * Incorporates all of the playouts in this buffer into the tree in table,
+	 * then empties this buffer.
+	 *
+	 * @param gestation
+	 *            Number of runs required through a move before the
+	 *            corresponding child is created.
+	 * @param rave
+	 *            True if the nodes in table keep RAVE statistics.
+	 */
+	void flush(TranspositionTable table, int gestation, boolean rave) {
+		// Find the nodes visited by each playout
+		int visits = 0;
+		for (int i = 0; i < size; i++) {
+			// As in SimpleTreeUpdater, the root is created if necessary
+			SearchNode node = table.findOrAllocate(getFancyHash(i,
+					startTurns[i]));
+			for (int t = startTurns[i]; node != null && t < turns[i]; t++) {
+				final int n = indexOf(node);
+				visitPlayouts[visits] = i;
+				visitTurns[visits] = t;
+				nextVisit[visits] = firstVisit[n];
+				firstVisit[n] = visits;
+				visits++;
+				final SearchNode child = table.findIfPresent(getFancyHash(i,
+						t + 1));
+				if (child == null) {
+					frontierNodes[i] = node;
+					frontierTurns[i] = t;
+				}
+				node = child;
+			}
+		}
+		// Update each node once. Going from the deepest nodes up, the RAVE
+		// moves for each playout are usually found in one backward pass.
+		for (int i = 0; i < size; i++) {
+			raveMoves[i].reset(histories[i], turns[i]);
+		}
+		for (int n = nodeCount - 1; n >= 0; n--) {
+			update(nodes[n], firstVisit[n], rave);
+			nodes[n] = null;
+			nodeIndex[nodeSlots[n]] = 0;
+		}
+		nodeCount = 0;
+		// Grow the tree where the playouts left it
+		for (int i = 0; i < size; i++) {
+			final SearchNode node = frontierNodes[i];
+			if (node == null) {
+				continue;
+			}
+			frontierNodes[i] = null;
+			final int t = frontierTurns[i];
+			final short p = getMove(i, t);
+			if (node.getRuns(p) >= gestation) {
+				final long fancyHash = getFancyHash(i, t + 1);
+				if (table.findOrAllocate(fancyHash) == null) {
+					continue; // Table is full
+				}
+				synchronized (node) {
+					table.addChild(node, p, fancyHash);
+				}
+			}
+		}
+		size = 0;
+	}
+
+	/** Returns the number of playouts this buffer can hold. */
+	int getCapacity() {
+		return runs.length;
+	}
+
+	/** Returns the fancy hash of the position before turn t of playout i. */
+	long getFancyHash(int i, int t) {
+		return fancyHashes[i * maxMoves + t];
+	}
+
+	/** Returns the move made at turn t of playout i. */
+	short getMove(int i, int t) {
+		return histories[i].get(t);
+	}
+
+	/** Returns the number of runs represented by playout i. */
+	int getRuns(int i) {
+		return runs[i];
+	}
+
+	/** Returns the number of playouts held. */
+	int getSize() {
+		return size;
+	}
+
+	/** Returns the turn of the real board when playout i started. */
+	int getStartTurn(int i) {
+		return startTurns[i];
+	}
+
+	/** Returns the turn at the end of playout i. */
+	int getTurn(int i) {
+		return turns[i];
+	}
+
+	/**
+	 * Returns the proportion of playout i's runs won by the color to play at
+	 * its start turn.
+	 */
+	float getWinProportion(int i) {
+		return winProportions[i];
+	}
+
+	/**
+	 * Returns the position of node in nodes, adding it if it is not already
+	 * there.
+	 */
+	private int indexOf(SearchNode node) {
+		final long hash = node.getFancyHash();
+		final int mask = nodeIndex.length - 1;
+		int slot = (int) (hash ^ hash >>> 32) & mask;
+		while (nodeIndex[slot] != 0) {
+			if (nodes[nodeIndex[slot] - 1] == node) {
+				return nodeIndex[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		nodes[nodeCount] = node;
+		nodeSlots[nodeCount] = slot;
+		firstVisit[nodeCount] = -1;
+		nodeCount++;
+		nodeIndex[slot] = nodeCount;
+		return nodeCount - 1;
+	}
+
+	/** Returns true if no more playouts fit in this buffer. */
+	boolean isFull() {
+		return size == runs.length;
+	}
+
+	/**
+	 * Merges the visits to node, starting with the most recent one, and
+	 * updates node with the totals.
+	 */
+	private void update(SearchNode node, int visit, boolean rave) {
+		// Skip a node evicted and reused since it was found
+		if (node.getFancyHash() != getFancyHash(visitPlayouts[visit],
+				visitTurns[visit])) {
+			return;
+		}
+		// The most recent visit determines the winning move, as it would
+		// if the playouts were incorporated one at a time
+		boolean mostRecent = true;
+		for (int v = visit; v >= 0; v = nextVisit[v]) {
+			final int i = visitPlayouts[v];
+			final int t = visitTurns[v];
+			float winProportion = winProportions[i];
+			if ((t - startTurns[i]) % 2 == 1) {
+				winProportion = 1 - winProportion;
+			}
+			final short p = getMove(i, t);
+			touched.add(p);
+			pointRuns[p] += runs[i];
+			pointWins[p] += runs[i] * winProportion;
+			if (mostRecent) {
+				node.setWinningMove(winProportion == 1 ? p : NO_POINT);
+				mostRecent = false;
+			}
+			if (rave) {
+				addRaveRuns(i, t, winProportion);
+			}
+		}
+		for (int j = 0; j < touched.size(); j++) {
+			final short p = touched.get(j);
+			if (pointRuns[p] > 0) {
+				node.update(p, pointRuns[p], pointWins[p]);
+				pointRuns[p] = 0;
+				pointWins[p] = 0;
+			}
+			if (raveRuns[p] > 0) {
+				((RaveSearchNode) node).addRaveRuns(p, raveRuns[p],
+						raveWins[p]);
+				raveRuns[p] = 0;
+				raveWins[p] = 0;
+			}
+		}
+		touched.clear();
+	}
+
+}
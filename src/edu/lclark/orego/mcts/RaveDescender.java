@@ -14,7 +14,16 @@ public final class RaveDescender extends AbstractDescender {
 	private final float raveBias;
 
 	public RaveDescender(Board board, TranspositionTable table, int biasDelay) {
-		super(board, table, biasDelay);
+		this(board, table, biasDelay, 0, 0);
+	}
+
+	/**
+	 * @see AbstractDescender#AbstractDescender(Board, TranspositionTable, int,
+	 *      int, float)
+	 */
+	public RaveDescender(Board board, TranspositionTable table, int biasDelay,
+			int virtualLoss, float virtualLossWinRate) {
+		super(board, table, biasDelay, virtualLoss, virtualLossWinRate);
 		raveBias = 0.0009f;
 	}
 
@@ -40,13 +49,43 @@ public final class RaveDescender extends AbstractDescender {
 		if (move == PASS) {
 			return node.getWinRate(move);
 		}
-		final RaveNode raveNode = (RaveNode) node;
-		final float c = raveNode.getRuns(move);
-		final float r = raveNode.getWinRate(move);
-		final float rc = raveNode.getRaveRuns(move);
-		final float rr = raveNode.getRaveWinRate(move);
+		final RaveSearchNode raveNode = (RaveSearchNode) node;
+		return searchValue(raveNode.getRuns(move), raveNode.getWinRate(move),
+				raveNode.getRaveRuns(move), raveNode.getRaveWinRate(move));
+	}
+
+	/**
+	 * Returns the search value of a move with c runs at win rate r and rc RAVE
+	 * runs at RAVE win rate rr.
+	 */
+	private float searchValue(float c, float r, float rc, float rr) {
 		final float coef = raveCoefficient(c, rc);
 		return r * (1 - coef) + rr * coef;
 	}
 
+	/**
+	 * Evaluates the RAVE formula for all of the moves, casting the node only
+	 * once.
+	 */
+	@Override
+	void searchValues(SearchNode node, SearchValues values) {
+		values.loadStats(node);
+		values.loadRaveStats((RaveSearchNode) node);
+		final int n = values.size();
+		final int[] runs = values.getRuns();
+		final float[] wins = values.getWins();
+		final int[] raveRuns = values.getRaveRuns();
+		final float[] raveWins = values.getRaveWins();
+		final float[] result = values.getValues();
+		for (int i = 0; i < n; i++) {
+			final float r = wins[i] / runs[i];
+			if (r < 0.0f) {
+				result[i] = NEGATIVE_INFINITY;
+			} else {
+				result[i] = searchValue(runs[i], r, raveRuns[i], raveWins[i]
+						/ raveRuns[i]);
+			}
+		}
+	}
+
 }
@@ -56,6 +56,45 @@ public class RaveDescenderTest {
 		assertEquals(0.2856f, descender.searchValue(root, at("a2")), 0.01f);
 	}
 
+	@Test
+	public void testSearchValues() {
+		for (int i = 0; i < 20; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.acceptMove(at(i % 3 == 0 ? "b1" : "c4"));
+			runnable.acceptMove(at("a2"));
+			runnable.acceptMove(at(i % 2 == 0 ? "d4" : "b2"));
+			updater.updateTree(i % 2 == 0 ? BLACK : WHITE, runnable);
+		}
+		RaveNode root = (RaveNode) updater.getRoot();
+		root.exclude(at("e5"));
+		SearchValues values = runnable.getSearchValues();
+		values.setMoves(player.getBoard().getVacantPoints());
+		descender.searchValues(root, values);
+		for (int i = 0; i < values.size(); i++) {
+			assertEquals(descender.searchValue(root, values.getMove(i)),
+					values.getValue(i), 0.0001);
+		}
+	}
+
+	@Test
+	public void testBestSearchMoveSkipsIllegalMoves() {
+		// Black's only good move is suicide at a1, so it is excluded
+		String[] diagram = {
+				".....",
+				".....",
+				".....",
+				"O....",
+				".O...",
+		};
+		player.getBoard().setUpProblem(diagram, BLACK);
+		RaveNode root = (RaveNode) updater.getRoot();
+		root.update(at("a1"), 10, 10);
+		root.update(at("c3"), 10, 8);
+		runnable.copyDataFrom(player.getBoard());
+		assertEquals(at("c3"), descender.bestSearchMove(root, runnable));
+		assertTrue(root.getWinRate(at("a1")) < 0);
+	}
+
 	@Test
 	public void testExcludedMove() {
 		RaveNode root = (RaveNode) updater.getRoot();
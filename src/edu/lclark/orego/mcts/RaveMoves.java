@@ -0,0 +1,75 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Finds the RAVE moves for every node along a run in one backward pass over
+ * the moves of the run. The RAVE moves for the node at turn t are the points
+ * whose first play at or after t was by the color to play at t (passes aside).
+ * Going backward from the end of the run, each move puts its point in the set
+ * for the color that played it, removing it from the other color's set, so
+ * the sets for turn t are complete once the pass reaches t.
+ * <p>
+ * Nodes should therefore be updated from the deepest one up. The pass only
+ * proceeds as far as the nodes ask, so trees without RAVE do not pay for it.
+ */
+public final class RaveMoves {
+
+	/** Last turn (exclusive) of the run. */
+	private int end;
+
+	/**
+	 * Points first played, from turn to end, at even and odd turns,
+	 * respectively.
+	 */
+	private final ShortSet[] firstPlays;
+
+	/** Moves of the run. */
+	private HistoryObserver history;
+
+	/** The moves from this turn to end have been passed over. */
+	private int turn;
+
+	public RaveMoves(CoordinateSystem coords) {
+		firstPlays = new ShortSet[] {
+				new ShortSet(coords.getFirstPointBeyondBoard()),
+				new ShortSet(coords.getFirstPointBeyondBoard()) };
+	}
+
+	/**
+	 * Returns the RAVE moves for the node at turn t. The pass is linear in the
+	 * length of the run as long as t does not increase between calls to
+	 * reset; if it does, the pass starts over from the end.
+	 */
+	public ShortSet get(int t) {
+		assert t < end;
+		if (t > turn) {
+			reset(history, end);
+		}
+		while (turn > t) {
+			turn--;
+			final short p = history.get(turn);
+			if (p != PASS) {
+				firstPlays[(turn + 1) & 1].remove(p);
+				firstPlays[turn & 1].add(p);
+			}
+		}
+		return firstPlays[t & 1];
+	}
+
+	/**
+	 * Prepares to find RAVE moves for a run consisting of the moves in history
+	 * before end.
+	 */
+	public void reset(HistoryObserver history, int end) {
+		this.history = history;
+		this.end = end;
+		turn = end;
+		firstPlays[0].clear();
+		firstPlays[1].clear();
+	}
+
+}
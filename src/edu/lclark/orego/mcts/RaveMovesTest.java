@@ -0,0 +1,78 @@
+package edu.lclark.orego.mcts;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.util.ShortSet;
+
+public class RaveMovesTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private HistoryObserver history;
+
+	private RaveMoves moves;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		coords = board.getCoordinateSystem();
+		history = new HistoryObserver(board);
+		moves = new RaveMoves(coords);
+	}
+
+	@Test
+	public void testFirstPlays() {
+		board.play("c3");
+		board.play("c4");
+		board.play("d3");
+		board.pass();
+		board.play("b2");
+		board.play("b4");
+		moves.reset(history, board.getTurn());
+		ShortSet result = moves.get(4);
+		assertEquals(1, result.size());
+		assertTrue(result.contains(at("b2")));
+		// Passes are not RAVE moves
+		result = moves.get(1);
+		assertEquals(2, result.size());
+		assertTrue(result.contains(at("c4")));
+		assertTrue(result.contains(at("b4")));
+		result = moves.get(0);
+		assertEquals(3, result.size());
+		assertTrue(result.contains(at("c3")));
+		assertTrue(result.contains(at("d3")));
+		assertTrue(result.contains(at("b2")));
+		// Going forward starts the pass over
+		result = moves.get(2);
+		assertEquals(2, result.size());
+		assertTrue(result.contains(at("d3")));
+		assertTrue(result.contains(at("b2")));
+	}
+
+	@Test
+	public void testRecapturedPoint() {
+		// Black captures white at a1, then plays there
+		board.play("a2");
+		board.play("a1");
+		board.play("b1");
+		board.play("c3");
+		board.play("a1");
+		moves.reset(history, board.getTurn());
+		assertTrue(moves.get(2).contains(at("a1")));
+		// White played at a1 first
+		assertTrue(moves.get(1).contains(at("a1")));
+		assertFalse(moves.get(0).contains(at("a1")));
+	}
+
+}
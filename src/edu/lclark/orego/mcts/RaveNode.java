@@ -3,24 +3,24 @@ package edu.lclark.orego.mcts;
 import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static java.lang.String.format;
 
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.util.ShortSet;
 
-/** Incorporates RAVE information. */
-public final class RaveNode extends SimpleSearchNode {
+/**
+ * Incorporates RAVE information. Like the regular runs and wins, the RAVE runs
+ * and wins for each move are packed into one long and updated atomically.
+ */
+public final class RaveNode extends SimpleSearchNode implements
+		RaveSearchNode {
 
-	/** Number of RAVE runs through each child of this node. */
-	private final int[] raveRuns;
-
-	/** RAVE winrate through the children of this node. */
-	private final float[] raveWinRates;
+	/** RAVE runs and wins through each child of this node, packed into longs. */
+	private final AtomicLongArray raveStats;
 
 	public RaveNode(CoordinateSystem coords) {
 		super(coords);
-		raveRuns = new int[coords.getFirstPointBeyondBoard()];
-		raveWinRates = new float[coords.getFirstPointBeyondBoard()];
+		raveStats = new AtomicLongArray(coords.getFirstPointBeyondBoard());
 	}
 
 	/** Adds a RAVE loss for p. */
@@ -34,9 +34,12 @@ public final class RaveNode extends SimpleSearchNode {
 	 * @param w The win rate for this playout, usually 0 for a loss or 1 for a win.
 	 */
 	public void addRaveRun(int p, float w) {
-		raveWinRates[p] = (w + raveWinRates[p] * raveRuns[p])
-				/ (1 + raveRuns[p]);
-		raveRuns[p]++;
+		addToStats(raveStats, p, 1, w);
+	}
+
+	@Override
+	public void addRaveRuns(short p, int n, float wins) {
+		addToStats(raveStats, p, n, wins);
 	}
 
 	/** Adds a RAVE win for p. */
@@ -47,46 +50,43 @@ public final class RaveNode extends SimpleSearchNode {
 	@Override
 	public void clear(long fancyHash, CoordinateSystem coords) {
 		super.clear(fancyHash, coords);
-		Arrays.fill(raveRuns, 2);
-		Arrays.fill(raveWinRates, 0.5f);
+		final long initial = pack(2, 1);
+		for (int p = 0; p < raveStats.length(); p++) {
+			raveStats.set(p, initial);
+		}
 	}
 
-	/** Returns the number of RAVE runs through move p. */
+	@Override
+	public void copyRaveStats(short[] moves, int n, int[] runs, float[] wins) {
+		for (int i = 0; i < n; i++) {
+			final long packed = raveStats.get(moves[i]);
+			runs[i] = runsOf(packed);
+			wins[i] = winsOf(packed);
+		}
+	}
+
+	@Override
 	public int getRaveRuns(short p) {
-		return raveRuns[p];
+		return runsOf(raveStats.get(p));
 	}
 
-	/** Returns the RAVE win rate for move p. */
+	@Override
 	public float getRaveWinRate(short p) {
-		return raveWinRates[p];
+		final long packed = raveStats.get(p);
+		return winsOf(packed) / runsOf(packed);
 	}
 
 	/** Returns the number of RAVE wins through move p. */
 	public float getRaveWins(int p) {
-		return raveWinRates[p] * raveRuns[p];
+		return winsOf(raveStats.get(p));
 	}
 
 	@Override
 	public void recordPlayout(float winProportion, McRunnable runnable, int t) {
-		final ShortSet playedPoints = runnable.getPlayedPoints();
 		super.recordPlayout(winProportion, runnable, t);
-		playedPoints.clear();
-		// The remaining moves in the sequence are recorded for RAVE
-		while (t < runnable.getTurn()) {
-			short move = runnable.getHistoryObserver().get(t);
-			if (move != PASS && !playedPoints.contains(move)) {
-				assert runnable.getBoard().getCoordinateSystem()
-						.isOnBoard(move);
-				playedPoints.addKnownAbsent(move);
-				addRaveRun(move, winProportion);
-			}
-			t++;
-			if (t >= runnable.getTurn()) {
-				return;
-			}
-			move = runnable.getHistoryObserver().get(t);
-			playedPoints.add(move);
-			t++;
+		final ShortSet moves = runnable.getRaveMoves().get(t);
+		for (int i = 0; i < moves.size(); i++) {
+			addRaveRun(moves.get(i), winProportion);
 		}
 	}
 
@@ -134,7 +134,7 @@ public final class RaveNode extends SimpleSearchNode {
 	String toString(short p, CoordinateSystem coords) {
 		return format("%s: %7d/%7d (%1.4f) RAVE %d (%1.4f)\n",
 				coords.toString(p), (int) getWins(p), super.getRuns(p),
-				super.getWinRate(p), raveRuns[p], raveWinRates[p]);
+				super.getWinRate(p), getRaveRuns(p), getRaveWinRate(p));
 	}
 
 }
@@ -91,4 +91,32 @@ public class RaveNodeTest {
 		// If no exception has been thrown, we're good.
 	}
 
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		final int threads = 4;
+		final int updates = 10000;
+		final short p = at("a1");
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < updates; j++) {
+						node.update(p, 1, 1);
+						node.addRaveWin(p);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+		// No updates should be lost
+		assertEquals(2 + threads * updates, node.getRuns(p));
+		assertEquals(1 + threads * updates, node.getWins(p), 0.001);
+		assertEquals(2 + threads * updates, node.getRaveRuns(p));
+		assertEquals(1 + threads * updates, node.getRaveWins(p), 0.001);
+	}
+
 }
@@ -0,0 +1,26 @@
+package edu.lclark.orego.mcts;
+
+/**
+ * A search node that also keeps Rapid Action Value Estimation statistics.
+ *
+ * @see RaveDescender
+ */
+public interface RaveSearchNode extends SearchNode {
+
+	/** Adds n RAVE runs, with the given total wins, for p. */
+	public void addRaveRuns(short p, int n, float wins);
+
+	/**
+	 * Like copyStats, but copies the RAVE runs and wins.
+	 *
+	 * @see SearchNode#copyStats(short[], int, int[], float[])
+	 */
+	public void copyRaveStats(short[] moves, int n, int[] runs, float[] wins);
+
+	/** Returns the number of RAVE runs through move p. */
+	public int getRaveRuns(short p);
+
+	/** Returns the RAVE win rate for move p. */
+	public float getRaveWinRate(short p);
+
+}
@@ -27,6 +27,19 @@ public interface SearchNode {
 	 */
 	public void clear(long fancyHash, CoordinateSystem coords);
 
+	/**
+	 * Records that move p no longer leads to a child, e.g., because the child
+	 * was evicted from the table.
+	 */
+	public void clearHasChild(short p);
+
+	/**
+	 * Copies the runs and wins for each of the first n moves into the
+	 * corresponding elements of runs and wins, so that a descender can
+	 * evaluate all of them in one loop.
+	 */
+	public void copyStats(short[] moves, int n, int[] runs, float[] wins);
+
 	/**
 	 * Returns a human-readable representation of the subtree rooted at this
 	 * node, up to max depth.
@@ -52,12 +65,24 @@ public interface SearchNode {
 	 */
 	public long getFancyHash();
 
+	/**
+	 * Returns the ranking of this node's moves used for progressive widening,
+	 * or null if they have not been ranked.
+	 */
+	public MoveRanking getMoveRanking();
+
 	/** Returns the move with the most wins from this node. */
 	public short getMoveWithMostWins(CoordinateSystem coords);
 
 	/** Returns the number of runs through move p. */
 	public int getRuns(short p);
 
+	/**
+	 * Returns this node's best moves as of the last time all of its moves were
+	 * evaluated, or null if they have not been recorded.
+	 */
+	public TopMoves getTopMoves();
+
 	/** Returns the total number of runs through this node. */
 	public int getTotalRuns();
 
@@ -103,7 +128,9 @@ public interface SearchNode {
 	public float overallWinRate(CoordinateSystem coords);
 
 	/**
-	 * Increments the counts for a move sequence resulting from a playout.
+	 * Increments the counts for a move sequence resulting from a playout, or
+	 * from a batch of playouts from the same leaf (see
+	 * McRunnable.getBatchSize()).
 	 *
 	 * NOTE: Since this method is not synchronized, two simultaneous calls on
 	 * the same node might result in a race condition affecting which one sets
@@ -111,7 +138,8 @@ public interface SearchNode {
 	 *
 	 * @param winProportion
 	 *            1.0 if this is a winning playout for the player to play at
-	 *            this node, 0.0 otherwise.
+	 *            this node, 0.0 otherwise. For a batch, the proportion of
+	 *            playouts won.
 	 * @param runnable
 	 *            The McRunnable responsible for this run.
 	 * @param t
@@ -131,6 +159,12 @@ public interface SearchNode {
 	/** Sets the mark of this node for garbage collection. */
 	public void setMarked(boolean marked);
 
+	/** Sets the ranking of this node's moves for progressive widening. */
+	public void setMoveRanking(MoveRanking moveRanking);
+
+	/** Replaces the record of this node's best moves. */
+	public void setTopMoves(TopMoves topMoves);
+
 	/** Sets the winning move for this node. */
 	public void setWinningMove(short move);
 
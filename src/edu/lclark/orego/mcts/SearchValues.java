@@ -0,0 +1,153 @@
+package edu.lclark.orego.mcts;
+
+import static java.lang.Float.NEGATIVE_INFINITY;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Scratch space in which a descender evaluates all of the moves from a node in
+ * one pass. The statistics for the moves are copied out of the node into
+ * parallel primitive arrays, the search value of each move is computed from
+ * those arrays in a single loop, and moves are then taken in decreasing order
+ * of value until one is legal.
+ */
+final class SearchValues {
+
+	/** Moves being evaluated. */
+	private final short[] moves;
+
+	/** RAVE runs for each move. */
+	private final int[] raveRuns;
+
+	/** RAVE wins for each move. */
+	private final float[] raveWins;
+
+	/** Runs for each move. */
+	private final int[] runs;
+
+	/** Number of moves being evaluated. */
+	private int size;
+
+	/** Search value of each move. */
+	private final float[] values;
+
+	/** Wins for each move. */
+	private final float[] wins;
+
+	/** @param capacity Largest number of moves that will be evaluated at once. */
+	SearchValues(int capacity) {
+		moves = new short[capacity];
+		runs = new int[capacity];
+		wins = new float[capacity];
+		raveRuns = new int[capacity];
+		raveWins = new float[capacity];
+		values = new float[capacity];
+	}
+
+	/**
+	 * Returns the index of the move with the highest value, or -1 if no move
+	 * has a value above negative infinity. Ties are broken by starting the
+	 * scan at a random index.
+	 */
+	int argmax(MersenneTwisterFast random) {
+		if (size == 0) {
+			return -1;
+		}
+		final int start = random.nextInt(size);
+		int result = -1;
+		float best = NEGATIVE_INFINITY;
+		for (int i = start; i < size; i++) {
+			if (values[i] > best) {
+				best = values[i];
+				result = i;
+			}
+		}
+		for (int i = 0; i < start; i++) {
+			if (values[i] > best) {
+				best = values[i];
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/** Returns the move at index i. */
+	short getMove(int i) {
+		return moves[i];
+	}
+
+	/** Returns the array of moves; only the first size() are meaningful. */
+	short[] getMoves() {
+		return moves;
+	}
+
+	/** Returns the array of RAVE runs, as filled in by loadRaveStats. */
+	int[] getRaveRuns() {
+		return raveRuns;
+	}
+
+	/** Returns the array of RAVE wins, as filled in by loadRaveStats. */
+	float[] getRaveWins() {
+		return raveWins;
+	}
+
+	/** Returns the array of runs, as filled in by loadStats. */
+	int[] getRuns() {
+		return runs;
+	}
+
+	/** Returns the value of the move at index i. */
+	float getValue(int i) {
+		return values[i];
+	}
+
+	/** Returns the array in which search values are stored. */
+	float[] getValues() {
+		return values;
+	}
+
+	/** Returns the array of wins, as filled in by loadStats. */
+	float[] getWins() {
+		return wins;
+	}
+
+	/** Copies the RAVE statistics of the moves out of node. */
+	void loadRaveStats(RaveSearchNode node) {
+		node.copyRaveStats(moves, size, raveRuns, raveWins);
+	}
+
+	/** Copies the statistics of the moves out of node. */
+	void loadStats(SearchNode node) {
+		node.copyStats(moves, size, runs, wins);
+	}
+
+	/**
+	 * Removes the move at index i (e.g., because it is illegal) from further
+	 * consideration. This may change the order of the remaining moves.
+	 */
+	void remove(int i) {
+		size--;
+		moves[i] = moves[size];
+		values[i] = values[size];
+	}
+
+	/** Makes the first n elements of array the moves to be evaluated. */
+	void setMoves(short[] array, int n) {
+		size = n;
+		System.arraycopy(array, 0, moves, 0, n);
+	}
+
+	/** Makes the given points the moves to be evaluated. */
+	void setMoves(ShortSet points) {
+		size = points.size();
+		for (int i = 0; i < size; i++) {
+			moves[i] = points.get(i);
+		}
+	}
+
+	/** Returns the number of moves being evaluated. */
+	int size() {
+		return size;
+	}
+
+}
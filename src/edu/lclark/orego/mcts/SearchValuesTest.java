@@ -0,0 +1,71 @@
+package edu.lclark.orego.mcts;
+
+import static java.lang.Float.NEGATIVE_INFINITY;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class SearchValuesTest {
+
+	private Board board;
+
+	private MersenneTwisterFast random;
+
+	private SearchValues values;
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(5);
+		random = new MersenneTwisterFast();
+		values = new SearchValues(board.getCoordinateSystem().getArea());
+		values.setMoves(board.getVacantPoints());
+	}
+
+	@Test
+	public void testArgmax() {
+		final float[] v = values.getValues();
+		for (int i = 0; i < values.size(); i++) {
+			v[i] = 0.5f;
+		}
+		v[7] = 0.9f;
+		v[3] = 0.8f;
+		assertEquals(25, values.size());
+		for (int trial = 0; trial < 10; trial++) {
+			assertEquals(7, values.argmax(random));
+		}
+		// Removing the best move leaves the next best as the argmax
+		final short second = values.getMove(3);
+		values.remove(7);
+		assertEquals(24, values.size());
+		assertEquals(second, values.getMove(values.argmax(random)));
+	}
+
+	@Test
+	public void testArgmaxExcluded() {
+		final float[] v = values.getValues();
+		for (int i = 0; i < values.size(); i++) {
+			v[i] = NEGATIVE_INFINITY;
+		}
+		assertEquals(-1, values.argmax(random));
+	}
+
+	@Test
+	public void testTiesBrokenRandomly() {
+		final float[] v = values.getValues();
+		for (int i = 0; i < values.size(); i++) {
+			v[i] = 0.5f;
+		}
+		final boolean[] chosen = new boolean[values.size()];
+		for (int trial = 0; trial < 1000; trial++) {
+			chosen[values.argmax(random)] = true;
+		}
+		for (final boolean c : chosen) {
+			assertTrue(c);
+		}
+	}
+
+}
@@ -26,6 +26,11 @@ public class ShapeUpdater implements TreeUpdater {
 		// If so, some sort of "still clean" flag is probably in order.
 	}
 
+	@Override
+	public void flush(McRunnable runnable) {
+		updater.flush(runnable);
+	}
+
 	@Override
 	public int getGestation() {
 		return updater.getGestation();
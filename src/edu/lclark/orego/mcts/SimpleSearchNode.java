@@ -3,7 +3,10 @@ package edu.lclark.orego.mcts;
 import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
 import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static java.lang.String.format;
-import static java.util.Arrays.fill;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.feature.HistoryObserver;
@@ -13,7 +16,14 @@ import edu.lclark.orego.util.BitVector;
 import edu.lclark.orego.util.ListNode;
 import edu.lclark.orego.util.ShortSet;
 
-/** A node in the search tree / transposition table. */
+/**
+ * A node in the search tree / transposition table.
+ * <p>
+ * The runs and wins through each child are packed into a single long (runs in
+ * the high 32 bits, the float bits of wins in the low 32 bits) so that both can
+ * be updated together by compare-and-set, without locking the node. Win rates
+ * are computed when read.
+ */
 public class SimpleSearchNode implements SearchNode {
 
 	/**
@@ -22,11 +32,52 @@ public class SimpleSearchNode implements SearchNode {
 	 */
 	private static final int INITIAL_PASS_RUNS = 10;
 
+	/** Updates totalRuns atomically. */
+	private static final AtomicIntegerFieldUpdater<SimpleSearchNode> TOTAL_RUNS = AtomicIntegerFieldUpdater
+			.newUpdater(SimpleSearchNode.class, "totalRuns");
+
+	/**
+	 * Atomically adds n runs and w wins to the packed statistics in
+	 * stats[p], unless p has been excluded (i.e., has nonpositive wins).
+	 * Returns true if the statistics were changed.
+	 */
+	static boolean addToStats(AtomicLongArray stats, int p, int n, float w) {
+		long old;
+		float wins;
+		do {
+			old = stats.get(p);
+			wins = winsOf(old);
+			if (!(wins > 0)) {
+				return false;
+			}
+		} while (!stats.compareAndSet(p, old, pack(runsOf(old) + n, wins + w)));
+		return true;
+	}
+
+	/** Returns runs and wins packed into one long. */
+	static long pack(int runs, float wins) {
+		return (long) runs << 32
+				| (Float.floatToRawIntBits(wins) & 0xffffffffL);
+	}
+
+	/** Returns the runs from a packed long. */
+	static int runsOf(long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	/** Returns the wins from a packed long. */
+	static float winsOf(long packed) {
+		return Float.intBitsToFloat((int) packed);
+	}
+
 	/** True if bias for this node has been set. */
 	private boolean biasUpdated;
 
-	/** Children of this node. */
-	private ListNode<SearchNode> children;
+	/**
+	 * Children of this node. This is volatile so that a child added by one
+	 * thread is fully visible to others traversing the list.
+	 */
+	private volatile ListNode<SearchNode> children;
 
 	/**
 	 * The Zobrist hash of the board position represented by this node. This
@@ -42,24 +93,38 @@ public class SimpleSearchNode implements SearchNode {
 	 */
 	private final BitVector hasChild;
 
-	/** Number of runs through each child of this node. */
-	private final int[] runs;
+	/**
+	 * Runs and wins through each child of this node, packed into longs.
+	 *
+	 * @see #pack(int, float)
+	 */
+	private final AtomicLongArray stats;
+
+	/**
+	 * Ranking of this node's moves for progressive widening, or null.
+	 *
+	 * @see MoveRanking
+	 */
+	private volatile MoveRanking moveRanking;
+
+	/**
+	 * This node's best moves as of the last full evaluation, or null.
+	 *
+	 * @see TopMoves
+	 */
+	private volatile TopMoves topMoves;
 
 	/**
 	 * Total number of runs through this node. For not-in-use nodes this is set
 	 * to -1.
 	 */
-	private int totalRuns;
+	private volatile int totalRuns;
 
 	/** @see #getWinningMove() */
 	private short winningMove;
 
-	/** Number of wins through each child of this node. */
-	private final float[] winRates;
-
 	public SimpleSearchNode(CoordinateSystem coords) {
-		runs = new int[coords.getFirstPointBeyondBoard()];
-		winRates = new float[coords.getFirstPointBeyondBoard()];
+		stats = new AtomicLongArray(coords.getFirstPointBeyondBoard());
 		hasChild = new BitVector(coords.getFirstPointBeyondBoard());
 		totalRuns = -1; // Indicates this node is not in use
 	}
@@ -67,8 +132,8 @@ public class SimpleSearchNode implements SearchNode {
 	@Override
 	public String bestWinCountReport(CoordinateSystem coords) {
 		final short best = getMoveWithMostWins(coords);
-		return coords.toString(best) + " wins " + winRates[best] * runs[best]
-				+ "/" + runs[best] + " = " + getWinRate(best);
+		return coords.toString(best) + " wins " + getWins(best) + "/"
+				+ getRuns(best) + " = " + getWinRate(best);
 	}
 
 	@Override
@@ -92,17 +157,34 @@ public class SimpleSearchNode implements SearchNode {
 			CoordinateSystem coords) {
 		this.fancyHash = fancyHash;
 		totalRuns = 2 * coords.getArea() + INITIAL_PASS_RUNS;
-		fill(runs, 2);
-		fill(winRates, 0.5f);
+		final long initial = pack(2, 1);
+		for (int p = 0; p < stats.length(); p++) {
+			stats.set(p, initial);
+		}
 		hasChild.clear();
 		// Make passing look very bad, so it will only be tried if all other
 		// moves lose
-		runs[PASS] = 10;
-		winRates[PASS] = 1.0f / INITIAL_PASS_RUNS;
+		stats.set(PASS, pack(INITIAL_PASS_RUNS, 1));
 		children = null;
+		moveRanking = null;
+		topMoves = null;
 		winningMove = NO_POINT;
 	}
 
+	@Override
+	public void clearHasChild(short p) {
+		hasChild.set(p, false);
+	}
+
+	@Override
+	public void copyStats(short[] moves, int n, int[] runs, float[] wins) {
+		for (int i = 0; i < n; i++) {
+			final long packed = stats.get(moves[i]);
+			runs[i] = runsOf(packed);
+			wins[i] = winsOf(packed);
+		}
+	}
+
 	@Override
 	public String deepToString(Board board, TranspositionTable table,
 			int maxDepth) {
@@ -153,8 +235,13 @@ public class SimpleSearchNode implements SearchNode {
 	}
 
 	@Override
-	public synchronized void exclude(short p) {
-		winRates[p] = -1;
+	public void exclude(short p) {
+		// A win rate of -1 marks the move as excluded
+		long old;
+		do {
+			old = stats.get(p);
+		} while (!stats.compareAndSet(p, old,
+				pack(runsOf(old), -runsOf(old))));
 	}
 
 	@Override
@@ -172,6 +259,11 @@ public class SimpleSearchNode implements SearchNode {
 		return fancyHash;
 	}
 
+	@Override
+	public MoveRanking getMoveRanking() {
+		return moveRanking;
+	}
+
 	@Override
 	public short getMoveWithMostWins(CoordinateSystem coords) {
 		short best = PASS;
@@ -185,7 +277,12 @@ public class SimpleSearchNode implements SearchNode {
 
 	@Override
 	public int getRuns(short p) {
-		return runs[p];
+		return runsOf(stats.get(p));
+	}
+
+	@Override
+	public TopMoves getTopMoves() {
+		return topMoves;
 	}
 
 	@Override
@@ -200,12 +297,13 @@ public class SimpleSearchNode implements SearchNode {
 
 	@Override
 	public float getWinRate(short p) {
-		return winRates[p];
+		final long packed = stats.get(p);
+		return winsOf(packed) / runsOf(packed);
 	}
 
 	@Override
 	public float getWins(short p) {
-		return winRates[p] * runs[p];
+		return winsOf(stats.get(p));
 	}
 
 	@Override
@@ -249,7 +347,8 @@ public class SimpleSearchNode implements SearchNode {
 		final HistoryObserver history = runnable.getHistoryObserver();
 		assert t < turn : "t = " + t + " >= turn = " + turn;
 		final short move = history.get(t);
-		update(move, 1, winProportion);
+		final int runs = runnable.getBatchSize();
+		update(move, runs, runs * winProportion);
 		if (winProportion == 1) {
 			winningMove = move;
 		} else {
@@ -292,6 +391,16 @@ public class SimpleSearchNode implements SearchNode {
 		hasChild.set(NO_POINT, marked);
 	}
 
+	@Override
+	public void setMoveRanking(MoveRanking moveRanking) {
+		this.moveRanking = moveRanking;
+	}
+
+	@Override
+	public void setTopMoves(TopMoves topMoves) {
+		this.topMoves = topMoves;
+	}
+
 	@Override
 	public void setWinningMove(short move) {
 		winningMove = move;
@@ -301,11 +410,11 @@ public class SimpleSearchNode implements SearchNode {
 	public String toString(CoordinateSystem coords) {
 		String result = "Total runs: " + totalRuns + "\n";
 		for (final short p : coords.getAllPointsOnBoard()) {
-			if (runs[p] > 2) {
+			if (getRuns(p) > 2) {
 				result += toString(p, coords);
 			}
 		}
-		if (runs[PASS] > 10) {
+		if (getRuns(PASS) > 10) {
 			result += toString(PASS, coords);
 		}
 		return result;
@@ -314,15 +423,13 @@ public class SimpleSearchNode implements SearchNode {
 	@SuppressWarnings("boxing")
 	String toString(short p, CoordinateSystem coords) {
 		return format("%s: %7d/%7d (%1.4f)\n", coords.toString(p),
-				(int) getWins(p), runs[p], winRates[p]);
+				(int) getWins(p), getRuns(p), getWinRate(p));
 	}
 
 	@Override
-	public synchronized void update(short p, int n, float wins) {
-		if (winRates[p] > 0.0) {
-			totalRuns += n;
-			winRates[p] = (wins + winRates[p] * runs[p]) / (n + runs[p]);
-			runs[p] += n;
+	public void update(short p, int n, float wins) {
+		if (addToStats(stats, p, n, wins)) {
+			TOTAL_RUNS.addAndGet(this, n);
 		}
 	}
 
@@ -1,6 +1,7 @@
 package edu.lclark.orego.mcts;
 
-import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.experiment.Logging.log;
+import static java.lang.String.format;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.Color;
 import edu.lclark.orego.feature.HistoryObserver;
@@ -30,6 +31,11 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 		table.sweep();
 	}
 
+	@Override
+	public void flush(McRunnable runnable) {
+		// Runs are incorporated immediately
+	}
+
 	@Override
 	public int getGestation() {
 		return gestation;
@@ -53,53 +59,62 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 
 	@Override
 	public void updateForAcceptMove() {
-		SearchNode root = getRoot();
-		table.markNodesReachableFrom(root);
-		table.sweep();
-		root = getRoot();
+		final long start = System.nanoTime();
+		// Unreachable nodes are reclaimed lazily, so searching can resume
+		// right away, but the root must exist before it does
+		table.startGeneration(board.getFancyHash());
+		final SearchNode root = table.findOrAllocateRoot(board.getFancyHash());
 		assert root != null;
+		log(format("Tree update after move took %.3f msec",
+				(System.nanoTime() - start) / 1e6));
 	}
 
 	@Override
 	public void updateTree(Color winner, McRunnable runnable) {
+		runnable.revertVirtualLosses();
 		final int turn = runnable.getTurn();
+		final int start = board.getTurn();
 		SearchNode node = getRoot();
-		assert node != null;
+		assert node != null : "Table fullness: " + table.getNodesInUse() + "/"
+				+ table.getCapacity();
 		final HistoryObserver history = runnable.getHistoryObserver();
 		final long[] fancyHashes = runnable.getFancyHashes();
-		float winProportion = winner == board.getColorToPlay() ? 1 : 0;
-		if (winner == VACANT) {
-			winProportion = 0.5f;
+		// Find the nodes along the run
+		final SearchNode[] path = runnable.getTreePath();
+		int last = start - 1;
+		for (int t = start; t < turn && node != null; t++) {
+			path[t] = node;
+			last = t;
+			node = table.findIfPresent(fancyHashes[t + 1]);
 		}
-		for (int t = board.getTurn(); t < turn; t++) {
-			assert node != null : "Board turn " + board.getTurn()
-					+ ", runnable turn: " + turn + ", t: " + t
-					+ ", table fullness: " + table.getNodesInUse() + "/"
-					+ table.getCapacity() + "="
-					+ (((double) table.getNodesInUse()) / table.getCapacity());
-			node.recordPlayout(winProportion, runnable, t);
-			final long fancyHash = fancyHashes[t + 1];
-			synchronized (table) {
-				SearchNode child = table.findIfPresent(fancyHash);
-				if (child == null) {
-					final short p = history.get(t);
-					if (node.getRuns(p) >= gestation) {
-						child = table.findOrAllocate(fancyHash);
-						if (child == null) {
-							return; // Table is full
-						}
-						if (!node.hasChild(p)) {
-							node.setHasChild(p);
-							table.addChild(node, child);
-							return;
-						}
-					} else {
-						return;
-					}
-				}
-				node = child;
+		// Update them from the deepest up, so that the RAVE moves for all of
+		// them are found in one backward pass over the run
+		runnable.getRaveMoves().reset(history, turn);
+		// All of the playouts from the leaf are incorporated at once
+		final float winProportion = runnable.getBatchWins(
+				board.getColorToPlay(), winner) / runnable.getBatchSize();
+		for (int t = last; t >= start; t--) {
+			// Skip any node evicted and reused since it was found
+			if (path[t].getFancyHash() == fancyHashes[t]) {
+				path[t].recordPlayout((t - start) % 2 == 0 ? winProportion
+						: 1 - winProportion, runnable, t);
+			}
+		}
+		if (node != null || last < start) {
+			return; // The run ended inside the tree
+		}
+		// Add a child where the run left the tree
+		final SearchNode parent = path[last];
+		final short p = history.get(last);
+		if (parent.getRuns(p) >= gestation) {
+			if (table.findOrAllocate(fancyHashes[last + 1]) == null) {
+				return; // Table is full
+			}
+			// The table is lock-free, so only the linking of the child must be
+			// protected from other threads
+			synchronized (parent) {
+				table.addChild(parent, p, fancyHashes[last + 1]);
 			}
-			winProportion = 1 - winProportion;
 		}
 	}
 
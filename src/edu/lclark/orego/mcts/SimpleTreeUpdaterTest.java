@@ -38,6 +38,20 @@ public class SimpleTreeUpdaterTest {
 		assertEquals("Total runs: 60\n", updater.toString(5));
 	}
 
+	@Test
+	public void testIncorporateBatch() {
+		player = new PlayerBuilder().threads(1).memorySize(1).boardWidth(5)
+				.rave(false).gestation(0).biasDelay(0).lgrf2(false)
+				.playoutsPerDescent(4).build();
+		updater = (SimpleTreeUpdater) player.getUpdater();
+		McRunnable runnable = player.getMcRunnable(0);
+		runnable.performMcRun();
+		// All four playouts are incorporated in one update
+		assertEquals(4, runnable.getPlayoutsCompleted());
+		assertEquals(64, updater.getRoot().getTotalRuns());
+		assertEquals(1, runnable.getBatchSize());
+	}
+
 	@Test
 	public void testIncorporateRun() {
 		assertEquals("Total runs: 60\n", updater.toString(5));
@@ -100,16 +114,34 @@ public class SimpleTreeUpdaterTest {
 		CoordinateSystem coords = player.getBoard().getCoordinateSystem();
 		player.acceptMove(coords.at("a1"));
 		TranspositionTable table = updater.getTable();
-		SearchNode node = table.findOrAllocate(1L);
-		for (long i = 2; ; i++) {
-			node = table.findOrAllocate(i);
-			if (node == null) {
-				break;
-			}
+		// Full nodes are evicted rather than failing, so fill the table by
+		// count
+		for (long i = 1; table.getNodesInUse() < table.getCapacity(); i++) {
+			table.findOrAllocate(i);
 		}
 		player.undo();
 		assertNotNull(player.getRoot());
 	}
 
+	@Test
+	public void testAcceptMoveWithFullTable() {
+		CoordinateSystem coords = player.getBoard().getCoordinateSystem();
+		TranspositionTable table = updater.getTable();
+		SearchNode root = player.getRoot();
+		// Fill the table with nodes that are reachable and have runs, so none
+		// of them is stale or fresh
+		for (long i = 1; table.getNodesInUse() < table.getCapacity(); i++) {
+			SearchNode node = table.findOrAllocate(i);
+			if (node != null) {
+				node.update(coords.at("c3"), 10, 5);
+				table.addChild(root, node);
+			}
+		}
+		player.acceptMove(coords.at("a1"));
+		root = player.getRoot();
+		assertNotNull(root);
+		assertEquals(player.getBoard().getFancyHash(), root.getFancyHash());
+	}
+
 
 }
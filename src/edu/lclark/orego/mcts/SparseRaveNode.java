@@ -0,0 +1,160 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.mcts.SimpleSearchNode.addToStats;
+import static edu.lclark.orego.mcts.SimpleSearchNode.runsOf;
+import static edu.lclark.orego.mcts.SimpleSearchNode.winsOf;
+import static java.lang.String.format;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * A SparseSearchNode that also keeps RAVE statistics, in the same slots as the
+ * regular statistics. A single playout produces RAVE runs for dozens of moves,
+ * so RAVE may only claim slots while at least half of them are free; RAVE runs
+ * for other moves are not recorded until the node is promoted.
+ */
+public final class SparseRaveNode extends SparseSearchNode implements
+		RaveSearchNode {
+
+	/**
+	 * RAVE runs and wins through each child, indexed by point, once this node
+	 * has been promoted; null before then.
+	 */
+	private volatile AtomicLongArray raveDense;
+
+	/**
+	 * RAVE runs and wins for the move in each slot. The extra element at the
+	 * end (for PASS) is not used.
+	 */
+	private final AtomicLongArray raveSlotStats;
+
+	public SparseRaveNode(CoordinateSystem coords, int capacity) {
+		super(coords, capacity);
+		raveSlotStats = new AtomicLongArray(capacity + 1);
+	}
+
+	/** Adds a RAVE loss for p. */
+	public void addRaveLoss(short p) {
+		addRaveRun(p, 0);
+	}
+
+	/**
+	 * Adds one RAVE playout for p.
+	 *
+	 * @param w The win rate for this playout, usually 0 for a loss or 1 for a win.
+	 */
+	public void addRaveRun(short p, float w) {
+		addRaveRuns(p, 1, w);
+	}
+
+	@Override
+	public void addRaveRuns(short p, int n, float wins) {
+		final AtomicLongArray d = raveDense;
+		if (d != null) {
+			addToStats(d, p, n, wins);
+			return;
+		}
+		final int slot = findSlot(p, getSlotsInUse() < getCapacity() / 2);
+		if (slot >= 0 && !addToStats(raveSlotStats, slot, n, wins)
+				&& raveSlotStats.get(slot) == FROZEN) {
+			// The slot was frozen by promote(); wait for it to finish
+			promote();
+			addToStats(raveDense, p, n, wins);
+		}
+	}
+
+	/** Adds a RAVE win for p. */
+	public void addRaveWin(short p) {
+		addRaveRun(p, 1);
+	}
+
+	@Override
+	public void clear(long fancyHash, CoordinateSystem coords) {
+		super.clear(fancyHash, coords);
+		for (int i = 0; i < raveSlotStats.length(); i++) {
+			raveSlotStats.set(i, INITIAL_STATS);
+		}
+		raveDense = null;
+	}
+
+	@Override
+	public void copyRaveStats(short[] moves, int n, int[] runs, float[] wins) {
+		final AtomicLongArray d = raveDense;
+		for (int i = 0; i < n; i++) {
+			final long packed = d != null ? d.get(moves[i])
+					: getRaveStats(moves[i]);
+			runs[i] = runsOf(packed);
+			wins[i] = winsOf(packed);
+		}
+	}
+
+	@Override
+	public void free() {
+		super.free();
+		raveDense = null;
+	}
+
+	@Override
+	public int getRaveRuns(short p) {
+		return runsOf(getRaveStats(p));
+	}
+
+	/** Returns the packed RAVE runs and wins for p. */
+	private long getRaveStats(short p) {
+		if (raveDense == null) {
+			final int slot = findSlot(p, false);
+			if (slot < 0) {
+				return INITIAL_STATS;
+			}
+			final long result = raveSlotStats.get(slot);
+			if (result != FROZEN) {
+				return result;
+			}
+			// The slot was frozen by promote(); wait for it to finish
+			promote();
+		}
+		return raveDense.get(p);
+	}
+
+	@Override
+	public float getRaveWinRate(short p) {
+		final long packed = getRaveStats(p);
+		return winsOf(packed) / runsOf(packed);
+	}
+
+	/** Returns the number of RAVE wins through move p. */
+	public float getRaveWins(short p) {
+		return winsOf(getRaveStats(p));
+	}
+
+	@Override
+	synchronized void promote() {
+		// The RAVE array is published first, so that any thread that sees the
+		// regular dense array also sees this one
+		if (raveDense == null) {
+			raveDense = spread(raveSlotStats);
+		}
+		super.promote();
+	}
+
+	@Override
+	public void recordPlayout(float winProportion, McRunnable runnable, int t) {
+		super.recordPlayout(winProportion, runnable, t);
+		final ShortSet moves = runnable.getRaveMoves().get(t);
+		for (int i = 0; i < moves.size(); i++) {
+			addRaveRun(moves.get(i), winProportion);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("boxing")
+	String toString(short p, CoordinateSystem coords) {
+		return format("%s: %7d/%7d (%1.4f) RAVE %d (%1.4f)\n",
+				coords.toString(p), (int) getWins(p), getRuns(p),
+				getWinRate(p), getRaveRuns(p), getRaveWinRate(p));
+	}
+
+}
@@ -0,0 +1,21 @@
+package edu.lclark.orego.mcts;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public final class SparseRaveNodeBuilder implements SearchNodeBuilder {
+
+	private final int capacity;
+
+	private final CoordinateSystem coords;
+
+	public SparseRaveNodeBuilder(CoordinateSystem coords) {
+		this.coords = coords;
+		capacity = SparseSearchNode.defaultCapacity(coords);
+	}
+
+	@Override
+	public SparseRaveNode build() {
+		return new SparseRaveNode(coords, capacity);
+	}
+
+}
@@ -0,0 +1,639 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.mcts.SimpleSearchNode.addToStats;
+import static edu.lclark.orego.mcts.SimpleSearchNode.pack;
+import static edu.lclark.orego.mcts.SimpleSearchNode.runsOf;
+import static edu.lclark.orego.mcts.SimpleSearchNode.winsOf;
+import static java.lang.String.format;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.feature.Rater;
+import edu.lclark.orego.feature.Suggester;
+import edu.lclark.orego.util.BitVector;
+import edu.lclark.orego.util.ListNode;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * A search node that stores statistics only for the moves that have actually
+ * been updated (by playouts or by bias), in a small open-addressed hash table
+ * of slots. Every other move has the initial statistics of a SimpleSearchNode.
+ * Most nodes in the tree see only a handful of runs, so this lets the same
+ * amount of memory hold several times as many nodes.
+ * <p>
+ * When a move needs a slot and none is left, the node is promoted: the slots
+ * are copied into a dense array like that of a SimpleSearchNode, which is used
+ * from then on, until the node is cleared. Only the root and other nodes with
+ * many runs are promoted. Each slot is frozen as it is copied, so an update
+ * made by another thread during promotion is not lost: it fails on the frozen
+ * slot and is then made on the dense array. This matters because virtual
+ * losses are added and later reverted through update(); losing either half
+ * would leave a permanent phantom loss or gain on the move.
+ * <p>
+ * Statistics are packed and updated exactly as in SimpleSearchNode.
+ *
+ * @see SimpleSearchNode#pack(int, float)
+ */
+public class SparseSearchNode implements SearchNode {
+
+	/**
+	 * Approximate number of sparse nodes that fit in the memory taken by one
+	 * dense node.
+	 *
+	 * @see TranspositionTable#TranspositionTable(int, SearchNodeBuilder,
+	 *      CoordinateSystem, int)
+	 */
+	public static final int NODES_PER_DENSE_NODE = 4;
+
+	/**
+	 * Marks a slot whose statistics have been copied into the dense array by
+	 * promote(). Its runs (-1) and wins (NaN) are not those of any real move,
+	 * and addToStats leaves it unchanged.
+	 */
+	static final long FROZEN = -1L;
+
+	/** Statistics of a move that has no slot. */
+	static final long INITIAL_STATS = pack(2, 1);
+
+	/** @see SimpleSearchNode */
+	private static final int INITIAL_PASS_RUNS = 10;
+
+	/** Updates slotsInUse atomically. */
+	private static final AtomicIntegerFieldUpdater<SparseSearchNode> SLOTS_IN_USE = AtomicIntegerFieldUpdater
+			.newUpdater(SparseSearchNode.class, "slotsInUse");
+
+	/** Updates totalRuns atomically. */
+	private static final AtomicIntegerFieldUpdater<SparseSearchNode> TOTAL_RUNS = AtomicIntegerFieldUpdater
+			.newUpdater(SparseSearchNode.class, "totalRuns");
+
+	/**
+	 * Returns the number of slots appropriate for a board with this coordinate
+	 * system: a power of two at least one eighth of the area, and at least 8.
+	 */
+	static int defaultCapacity(CoordinateSystem coords) {
+		int result = 8;
+		while (result * 8 < coords.getArea()) {
+			result *= 2;
+		}
+		return result;
+	}
+
+	/** True if bias for this node has been set. */
+	private boolean biasUpdated;
+
+	/** Number of slots, not counting the extra one for PASS. */
+	private final int capacity;
+
+	/** @see SimpleSearchNode */
+	private volatile ListNode<SearchNode> children;
+
+	/**
+	 * Runs and wins through each child, indexed by point, once this node has
+	 * been promoted; null before then.
+	 */
+	private volatile AtomicLongArray dense;
+
+	/** @see SimpleSearchNode */
+	private long fancyHash;
+
+	/** Length of the dense arrays. */
+	private final int firstPointBeyondBoard;
+
+	/** @see SimpleSearchNode */
+	private final BitVector hasChild;
+
+	/**
+	 * The move stored in each slot, or NO_POINT. A slot is claimed by
+	 * compare-and-set on this array; it is not released until the node is
+	 * cleared.
+	 */
+	private final AtomicIntegerArray keys;
+
+	/**
+	 * Runs and wins for the move in each slot. The extra element at the end
+	 * holds the statistics for PASS.
+	 */
+	private final AtomicLongArray slotStats;
+
+	/** Number of slots claimed since the node was last cleared. */
+	private volatile int slotsInUse;
+
+	/**
+	 * Ranking of this node's moves for progressive widening, or null.
+	 *
+	 * @see MoveRanking
+	 */
+	private volatile MoveRanking moveRanking;
+
+	/**
+	 * This node's best moves as of the last full evaluation, or null.
+	 *
+	 * @see TopMoves
+	 */
+	private volatile TopMoves topMoves;
+
+	/** @see SimpleSearchNode */
+	private volatile int totalRuns;
+
+	/** @see #getWinningMove() */
+	private short winningMove;
+
+	/**
+	 * @param capacity
+	 *            Number of moves stored before the node is promoted. Must be a
+	 *            power of two.
+	 */
+	public SparseSearchNode(CoordinateSystem coords, int capacity) {
+		assert Integer.bitCount(capacity) == 1;
+		this.capacity = capacity;
+		firstPointBeyondBoard = coords.getFirstPointBeyondBoard();
+		keys = new AtomicIntegerArray(capacity);
+		slotStats = new AtomicLongArray(capacity + 1);
+		hasChild = new BitVector(firstPointBeyondBoard);
+		totalRuns = -1; // Indicates this node is not in use
+	}
+
+	@Override
+	public String bestWinCountReport(CoordinateSystem coords) {
+		final short best = getMoveWithMostWins(coords);
+		return coords.toString(best) + " wins " + getWins(best) + "/"
+				+ getRuns(best) + " = " + getWinRate(best);
+	}
+
+	@Override
+	public short bestWinRate(CoordinateSystem coords) {
+		short best = PASS;
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getWinRate(p) >= getWinRate(best)) {
+				best = p;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public boolean biasUpdated() {
+		return biasUpdated;
+	}
+
+	/**
+	 * Returns the index of the slot for p, claiming one if necessary, or -1 if
+	 * this node has been promoted (possibly by this call).
+	 */
+	private int claim(short p) {
+		if (dense == null) {
+			if (p == PASS) {
+				return capacity;
+			}
+			final int slot = findSlot(p, true);
+			if (slot >= 0) {
+				return slot;
+			}
+			promote();
+		}
+		return -1;
+	}
+
+	@Override
+	public void clear(@SuppressWarnings("hiding") long fancyHash,
+			CoordinateSystem coords) {
+		this.fancyHash = fancyHash;
+		totalRuns = 2 * coords.getArea() + INITIAL_PASS_RUNS;
+		for (int i = 0; i < capacity; i++) {
+			keys.set(i, NO_POINT);
+			slotStats.set(i, INITIAL_STATS);
+		}
+		// Make passing look very bad, so it will only be tried if all other
+		// moves lose
+		slotStats.set(capacity, pack(INITIAL_PASS_RUNS, 1));
+		slotsInUse = 0;
+		dense = null;
+		hasChild.clear();
+		children = null;
+		moveRanking = null;
+		topMoves = null;
+		winningMove = NO_POINT;
+	}
+
+	@Override
+	public void clearHasChild(short p) {
+		hasChild.set(p, false);
+	}
+
+	@Override
+	public void copyStats(short[] moves, int n, int[] runs, float[] wins) {
+		final AtomicLongArray d = dense;
+		for (int i = 0; i < n; i++) {
+			final long packed = d != null ? d.get(moves[i])
+					: getStats(moves[i]);
+			runs[i] = runsOf(packed);
+			wins[i] = winsOf(packed);
+		}
+	}
+
+	@Override
+	public String deepToString(Board board, TranspositionTable table,
+			int maxDepth) {
+		return deepToString(board, table, maxDepth, 0);
+	}
+
+	/**
+	 * Recursive helper method.
+	 *
+	 * @see #deepToString(Board, TranspositionTable, int)
+	 */
+	String deepToString(Board board, TranspositionTable table, int maxDepth,
+			int depth) {
+		final CoordinateSystem coords = board.getCoordinateSystem();
+		if (maxDepth < depth) {
+			return "";
+		}
+		String indent = "";
+		for (int i = 0; i < depth; i++) {
+			indent += "  ";
+		}
+		String result = indent + "Total runs: " + getTotalRuns() + "\n";
+		final Board childBoard = new Board(coords.getWidth());
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (hasChild(p)) {
+				result += indent + toString(p, coords);
+				childBoard.copyDataFrom(board);
+				childBoard.play(p);
+				final SparseSearchNode child = (SparseSearchNode) table
+						.findIfPresent(childBoard.getFancyHash());
+				if (child != null) {
+					result += child.deepToString(childBoard, table, maxDepth,
+							depth + 1);
+				}
+			}
+		}
+		final short p = PASS;
+		if (hasChild(p)) {
+			result += indent + toString(p, coords);
+			childBoard.copyDataFrom(board);
+			childBoard.play(p);
+			final SparseSearchNode child = (SparseSearchNode) table
+					.findIfPresent(childBoard.getFancyHash());
+			if (child != null) {
+				result += child.deepToString(childBoard, table, maxDepth,
+						depth + 1);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void exclude(short p) {
+		final int slot = claim(p);
+		if (slot >= 0) {
+			if (excludeAt(slotStats, slot)) {
+				return;
+			}
+			// The slot was frozen by promote(); wait for it to finish
+			promote();
+		}
+		excludeAt(dense, p);
+	}
+
+	/**
+	 * Marks the move whose statistics are in stats[i] as excluded. Returns
+	 * false, changing nothing, if that element is frozen.
+	 */
+	private static boolean excludeAt(AtomicLongArray stats, int i) {
+		// A win rate of -1 marks the move as excluded
+		long old;
+		do {
+			old = stats.get(i);
+			if (old == FROZEN) {
+				return false;
+			}
+		} while (!stats.compareAndSet(i, old, pack(runsOf(old), -runsOf(old))));
+		return true;
+	}
+
+	/**
+	 * Returns the index of the slot holding p, or -1 if there is none. If claim
+	 * is true, a free slot is claimed for p if necessary; -1 is then returned
+	 * only if all slots are taken.
+	 */
+	int findSlot(short p, boolean claim) {
+		final int mask = capacity - 1;
+		int slot = p & mask;
+		for (int i = 0; i < capacity; i++) {
+			final int key = keys.get(slot);
+			if (key == p) {
+				return slot;
+			}
+			if (key == NO_POINT) {
+				if (!claim) {
+					return -1;
+				}
+				if (keys.compareAndSet(slot, NO_POINT, p)) {
+					SLOTS_IN_USE.incrementAndGet(this);
+					return slot;
+				}
+				// Another thread claimed this slot first, possibly for p
+				if (keys.get(slot) == p) {
+					return slot;
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public void free() {
+		totalRuns = -1;
+		dense = null;
+	}
+
+	/** Returns the number of moves this node can hold before being promoted. */
+	int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public ListNode<SearchNode> getChildren() {
+		return children;
+	}
+
+	@Override
+	public long getFancyHash() {
+		return fancyHash;
+	}
+
+	@Override
+	public MoveRanking getMoveRanking() {
+		return moveRanking;
+	}
+
+	@Override
+	public short getMoveWithMostWins(CoordinateSystem coords) {
+		short best = PASS;
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getWins(p) >= getWins(best)) {
+				best = p;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public int getRuns(short p) {
+		return runsOf(getStats(p));
+	}
+
+	/** Returns the number of slots claimed since this node was cleared. */
+	int getSlotsInUse() {
+		return slotsInUse;
+	}
+
+	/** Returns the packed runs and wins for p. */
+	private long getStats(short p) {
+		if (dense == null) {
+			final int slot = p == PASS ? capacity : findSlot(p, false);
+			if (slot < 0) {
+				return INITIAL_STATS;
+			}
+			final long result = slotStats.get(slot);
+			if (result != FROZEN) {
+				return result;
+			}
+			// The slot was frozen by promote(); wait for it to finish
+			promote();
+		}
+		return dense.get(p);
+	}
+
+	@Override
+	public TopMoves getTopMoves() {
+		return topMoves;
+	}
+
+	@Override
+	public int getTotalRuns() {
+		return totalRuns;
+	}
+
+	@Override
+	public short getWinningMove() {
+		return winningMove;
+	}
+
+	@Override
+	public float getWinRate(short p) {
+		final long packed = getStats(p);
+		return winsOf(packed) / runsOf(packed);
+	}
+
+	@Override
+	public float getWins(short p) {
+		return winsOf(getStats(p));
+	}
+
+	@Override
+	public boolean hasChild(short p) {
+		return hasChild.get(p);
+	}
+
+	@Override
+	public boolean isFresh(CoordinateSystem coords) {
+		return totalRuns == 2 * coords.getArea() + INITIAL_PASS_RUNS;
+	}
+
+	@Override
+	public boolean isInUse() {
+		return totalRuns >= 0;
+	}
+
+	@Override
+	public boolean isMarked() {
+		return hasChild.get(NO_POINT);
+	}
+
+	/** Returns true if this node has been promoted to dense arrays. */
+	boolean isPromoted() {
+		return dense != null;
+	}
+
+	@Override
+	public float overallWinRate(CoordinateSystem coords) {
+		int r = 0; // Runs
+		int w = 0; // Wins
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getWins(p) > 0) {
+				w += getWins(p);
+				r += getRuns(p);
+			}
+		}
+		w += getWins(PASS);
+		r += getRuns(PASS);
+		return 1.0f * w / r;
+	}
+
+	/**
+	 * Switches this node over to a dense array, moving in the statistics from
+	 * the slots. Has no effect if the node has already been promoted. Because
+	 * this is synchronized, a thread that finds a frozen slot can call it to
+	 * wait until the dense array is ready.
+	 */
+	synchronized void promote() {
+		if (dense == null) {
+			dense = spread(slotStats);
+		}
+	}
+
+	@Override
+	public void recordPlayout(float winProportion, McRunnable runnable, int t) {
+		final int turn = runnable.getTurn();
+		final HistoryObserver history = runnable.getHistoryObserver();
+		assert t < turn : "t = " + t + " >= turn = " + turn;
+		final short move = history.get(t);
+		final int runs = runnable.getBatchSize();
+		update(move, runs, runs * winProportion);
+		if (winProportion == 1) {
+			winningMove = move;
+		} else {
+			winningMove = NO_POINT;
+		}
+	}
+
+	/**
+	 * Similar to the public version, but takes simpler pieces as arguments, to
+	 * simplify testing.
+	 */
+	void recordPlayout(float winProportion, short[] moves, int t, int turn) {
+		assert t < turn;
+		final short move = moves[t];
+		update(move, 1, winProportion);
+		if (winProportion == 1) {
+			winningMove = move;
+		} else {
+			winningMove = NO_POINT;
+		}
+	}
+
+	@Override
+	public void setBiasUpdated(boolean value) {
+		biasUpdated = value;
+	}
+
+	@Override
+	public void setChildren(ListNode<SearchNode> children) {
+		this.children = children;
+	}
+
+	@Override
+	public void setHasChild(short p) {
+		hasChild.set(p, true);
+	}
+
+	@Override
+	public void setMarked(boolean marked) {
+		hasChild.set(NO_POINT, marked);
+	}
+
+	@Override
+	public void setMoveRanking(MoveRanking moveRanking) {
+		this.moveRanking = moveRanking;
+	}
+
+	@Override
+	public void setTopMoves(TopMoves topMoves) {
+		this.topMoves = topMoves;
+	}
+
+	@Override
+	public void setWinningMove(short move) {
+		winningMove = move;
+	}
+
+	/**
+	 * Returns a new dense array, indexed by point, holding the statistics in
+	 * stats, which is indexed by slot (with PASS in the extra last element).
+	 * Each element of stats is frozen as it is read, so no later update to it
+	 * can succeed; updates that fail go to the dense array instead.
+	 */
+	AtomicLongArray spread(AtomicLongArray stats) {
+		final AtomicLongArray result = new AtomicLongArray(
+				firstPointBeyondBoard);
+		for (int p = 0; p < firstPointBeyondBoard; p++) {
+			result.set(p, INITIAL_STATS);
+		}
+		for (int i = 0; i < capacity; i++) {
+			final long old = stats.getAndSet(i, FROZEN);
+			// A slot is claimed before it is updated, so the key is read after
+			// freezing; a slot claimed later holds only the initial stats
+			final int key = keys.get(i);
+			if (key != NO_POINT) {
+				result.set(key, old);
+			}
+		}
+		result.set(PASS, stats.getAndSet(capacity, FROZEN));
+		return result;
+	}
+
+	@Override
+	public String toString(CoordinateSystem coords) {
+		String result = "Total runs: " + totalRuns + "\n";
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (getRuns(p) > 2) {
+				result += toString(p, coords);
+			}
+		}
+		if (getRuns(PASS) > 10) {
+			result += toString(PASS, coords);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("boxing")
+	String toString(short p, CoordinateSystem coords) {
+		return format("%s: %7d/%7d (%1.4f)\n", coords.toString(p),
+				(int) getWins(p), getRuns(p), getWinRate(p));
+	}
+
+	@Override
+	public void update(short p, int n, float wins) {
+		final int slot = claim(p);
+		boolean changed;
+		if (slot >= 0) {
+			changed = addToStats(slotStats, slot, n, wins);
+			if (!changed && slotStats.get(slot) == FROZEN) {
+				// The slot was frozen by promote(); wait for it to finish
+				promote();
+				changed = addToStats(dense, p, n, wins);
+			}
+		} else {
+			changed = addToStats(dense, p, n, wins);
+		}
+		if (changed) {
+			TOTAL_RUNS.addAndGet(this, n);
+		}
+	}
+
+	@Override
+	public void updateBias(McRunnable runnable) {
+		final Suggester[] suggesters = runnable.getSuggesters();
+		for (int i = 0; i < suggesters.length; i++) {
+			final int bias = suggesters[i].getBias();
+			final ShortSet moves = suggesters[i].getMoves();
+			for (int j = 0; j < moves.size(); j++) {
+				update(moves.get(j), bias, bias);
+			}
+		}
+		for (final Rater rater : runnable.getRaters()) {
+			rater.updateNode(this);
+		}
+		setBiasUpdated(true);
+	}
+
+}
@@ -0,0 +1,21 @@
+package edu.lclark.orego.mcts;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public final class SparseSearchNodeBuilder implements SearchNodeBuilder {
+
+	private final int capacity;
+
+	private final CoordinateSystem coords;
+
+	public SparseSearchNodeBuilder(CoordinateSystem coords) {
+		this.coords = coords;
+		capacity = SparseSearchNode.defaultCapacity(coords);
+	}
+
+	@Override
+	public SparseSearchNode build() {
+		return new SparseSearchNode(coords, capacity);
+	}
+
+}
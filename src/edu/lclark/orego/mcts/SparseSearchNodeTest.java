@@ -0,0 +1,158 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class SparseSearchNodeTest {
+
+	private CoordinateSystem coords;
+
+	private SparseSearchNode node;
+
+	/** Delegate method to call at on coords. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		coords = CoordinateSystem.forWidth(19);
+		node = new SparseSearchNode(coords,
+				SparseSearchNode.defaultCapacity(coords));
+		node.clear(0L, coords);
+	}
+
+	@Test
+	public void testInitialValues() {
+		assertEquals(64, node.getCapacity());
+		assertEquals(2, node.getRuns(at("a3")));
+		assertEquals(1, node.getWins(at("a3")), 0.001);
+		assertEquals(10, node.getRuns(PASS));
+		assertEquals(0, node.getSlotsInUse());
+		assertTrue(node.isFresh(coords));
+	}
+
+	@Test
+	public void testUpdate() {
+		node.recordPlayout(1, new short[] { at("a1") }, 0, 1);
+		node.recordPlayout(1, new short[] { PASS }, 0, 1);
+		assertEquals(1, node.getSlotsInUse());
+		assertEquals(2, node.getWins(at("a1")), 0.001);
+		assertEquals(3, node.getRuns(at("a1")));
+		int base = (2 * coords.getArea()) + 12;
+		assertEquals(
+				"Total runs: "
+						+ base
+						+ "\nA1:       2/      3 (0.6667)\nPASS:       2/     11 (0.1818)\n",
+				node.toString(coords));
+	}
+
+	@Test
+	public void testExclude() {
+		node.exclude(at("a1"));
+		node.update(at("a1"), 1, 1);
+		assertEquals(-1.0, node.getWinRate(at("a1")), 0.001);
+		assertEquals(2, node.getRuns(at("a1")));
+	}
+
+	@Test
+	public void testPromotion() {
+		// Update one more move than there are slots
+		final short[] points = coords.getAllPointsOnBoard();
+		for (int i = 0; i <= node.getCapacity(); i++) {
+			node.update(points[i], i + 1, i + 1);
+		}
+		assertTrue(node.isPromoted());
+		for (int i = 0; i <= node.getCapacity(); i++) {
+			assertEquals(i + 3, node.getRuns(points[i]));
+			assertEquals(i + 2, node.getWins(points[i]), 0.001);
+		}
+		assertEquals(2, node.getRuns(points[points.length - 1]));
+		assertEquals(10, node.getRuns(PASS));
+		node.clear(1L, coords);
+		assertFalse(node.isPromoted());
+		assertEquals(2, node.getRuns(points[0]));
+	}
+
+	@Test
+	public void testUpdatesDuringPromotion() throws InterruptedException {
+		final short[] points = coords.getAllPointsOnBoard();
+		final int threads = 4;
+		for (int trial = 0; trial < 50; trial++) {
+			node.clear(0L, coords);
+			final Thread[] workers = new Thread[threads];
+			for (int i = 0; i < threads; i++) {
+				final int first = i;
+				workers[i] = new Thread() {
+					@Override
+					public void run() {
+						// Add and revert virtual losses on more and more moves,
+						// so that the node is promoted in the middle
+						for (int j = first; j < points.length; j += threads) {
+							for (int k = 0; k < 10; k++) {
+								node.update(points[j], 1, 0);
+								node.update(points[j], -1, 0);
+							}
+						}
+					}
+				};
+				workers[i].start();
+			}
+			for (final Thread worker : workers) {
+				worker.join();
+			}
+			assertTrue(node.isPromoted());
+			// Every virtual loss was reverted
+			for (final short p : points) {
+				assertEquals(2, node.getRuns(p));
+				assertEquals(1, node.getWins(p), 0.001);
+			}
+			assertTrue(node.isFresh(coords));
+		}
+	}
+
+	@Test
+	public void testRaveSlotLimit() {
+		final SparseRaveNode raveNode = new SparseRaveNode(coords,
+				node.getCapacity());
+		raveNode.clear(0L, coords);
+		final short[] points = coords.getAllPointsOnBoard();
+		for (final short p : points) {
+			raveNode.addRaveWin(p);
+		}
+		// RAVE only claims half of the slots
+		assertEquals(node.getCapacity() / 2, raveNode.getSlotsInUse());
+		assertEquals(3, raveNode.getRaveRuns(points[0]));
+		assertEquals(2, raveNode.getRaveRuns(points[points.length - 1]));
+		assertFalse(raveNode.isPromoted());
+		// Playouts can still use the other half, then the node is promoted
+		for (int i = 0; i < points.length; i++) {
+			raveNode.update(points[points.length - 1 - i], 1, 1);
+		}
+		assertTrue(raveNode.isPromoted());
+		assertEquals(3, raveNode.getRaveRuns(points[0]));
+		assertEquals(3, raveNode.getRuns(points[0]));
+		raveNode.addRaveLoss(points[points.length - 1]);
+		assertEquals(3, raveNode.getRaveRuns(points[points.length - 1]));
+	}
+
+	@Test
+	public void testMoreNodesInSameMemory() {
+		final TranspositionTable dense = new TranspositionTable(1,
+				new SimpleSearchNodeBuilder(coords), coords);
+		final TranspositionTable sparse = new TranspositionTable(1,
+				new SparseSearchNodeBuilder(coords), coords,
+				SparseSearchNode.NODES_PER_DENSE_NODE);
+		// Both capacities are rounded down to whole buckets
+		assertEquals(SparseSearchNode.NODES_PER_DENSE_NODE
+				* dense.getCapacity(), sparse.getCapacity(),
+				SparseSearchNode.NODES_PER_DENSE_NODE
+						* TranspositionTable.BUCKET_SIZE);
+	}
+
+}
@@ -16,6 +16,11 @@ public final class TextUpdater implements TreeUpdater {
 		data.setLength(0);
 	}
 
+	@Override
+	public void flush(McRunnable mcRunnable) {
+		// Does nothing
+	}
+
 	@Override
 	public int getGestation() {
 		return 0;
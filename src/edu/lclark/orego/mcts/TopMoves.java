@@ -0,0 +1,80 @@
+package edu.lclark.orego.mcts;
+
+import static java.lang.Float.NEGATIVE_INFINITY;
+
+/**
+ * The moves with the highest search values from a node, as of the last time
+ * all of the node's moves were evaluated. While the best of these is still
+ * above the threshold (the best value of any other move at that time), a
+ * descender can choose among them without scanning the whole board. Instances
+ * are immutable, so a node's list can be replaced without locking.
+ *
+ * @see AbstractDescender#bestSearchMove(SearchNode, McRunnable)
+ */
+public final class TopMoves {
+
+	/** The moves, in decreasing order of value. */
+	private final short[] moves;
+
+	/** Total runs through the node when this list was made. */
+	private final int refreshedAt;
+
+	/** Number of moves in the list. */
+	private final int size;
+
+	/** Highest value of any move not in the list. */
+	private final float threshold;
+
+	/**
+	 * Takes the k moves with the highest values from values, which must have
+	 * been evaluated from a node with the given total runs.
+	 */
+	TopMoves(SearchValues values, int k, int refreshedAt) {
+		this.refreshedAt = refreshedAt;
+		moves = new short[k];
+		// Insertion sort into moves, keeping one extra for the threshold
+		final float[] top = new float[k + 1];
+		int n = 0;
+		for (int i = 0; i < values.size(); i++) {
+			final float value = values.getValue(i);
+			if (n == k + 1 && value <= top[k]) {
+				continue;
+			}
+			int j = n == k + 1 ? k : n++;
+			while (j > 0 && top[j - 1] < value) {
+				if (j < k) {
+					moves[j] = moves[j - 1];
+				}
+				top[j] = top[j - 1];
+				j--;
+			}
+			if (j < k) {
+				moves[j] = values.getMove(i);
+			}
+			top[j] = value;
+		}
+		size = Math.min(n, k);
+		threshold = n == k + 1 ? top[k] : NEGATIVE_INFINITY;
+	}
+
+	/** Returns the array of moves; only the first size() are meaningful. */
+	short[] getMoves() {
+		return moves;
+	}
+
+	/** Returns the total runs through the node when this list was made. */
+	int getRefreshedAt() {
+		return refreshedAt;
+	}
+
+	/** Returns the highest value of any move not in the list. */
+	float getThreshold() {
+		return threshold;
+	}
+
+	/** Returns the number of moves in the list. */
+	int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,48 @@
+package edu.lclark.orego.mcts;
+
+import static java.lang.Float.NEGATIVE_INFINITY;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+
+public class TopMovesTest {
+
+	private SearchValues values;
+
+	@Before
+	public void setUp() throws Exception {
+		final Board board = new Board(5);
+		values = new SearchValues(board.getCoordinateSystem().getArea());
+		values.setMoves(board.getVacantPoints());
+		final float[] v = values.getValues();
+		for (int i = 0; i < values.size(); i++) {
+			v[i] = 0.01f * i;
+		}
+		v[3] = 0.9f;
+		v[10] = 0.8f;
+	}
+
+	@Test
+	public void testTopMoves() {
+		final TopMoves top = new TopMoves(values, 3, 100);
+		assertEquals(3, top.size());
+		assertEquals(values.getMove(3), top.getMoves()[0]);
+		assertEquals(values.getMove(10), top.getMoves()[1]);
+		assertEquals(values.getMove(24), top.getMoves()[2]);
+		assertEquals(0.23f, top.getThreshold(), 0.0001);
+		assertEquals(100, top.getRefreshedAt());
+	}
+
+	@Test
+	public void testFewMoves() {
+		final TopMoves top = new TopMoves(values, 30, 0);
+		assertEquals(25, top.size());
+		assertEquals(values.getMove(3), top.getMoves()[0]);
+		assertEquals(values.getMove(0), top.getMoves()[24]);
+		assertEquals(NEGATIVE_INFINITY, top.getThreshold(), 0.0001);
+	}
+
+}
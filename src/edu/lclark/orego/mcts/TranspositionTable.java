@@ -1,45 +1,254 @@
 package edu.lclark.orego.mcts;
 
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
 import static edu.lclark.orego.core.SuperKoTable.IGNORE_SIGN_BIT;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.experiment.Logging;
 import edu.lclark.orego.util.ListNode;
 import edu.lclark.orego.util.Pool;
 
-/** A hash table of nodes representing board configurations. */
+/**
+ * A hash table of nodes representing board configurations.
+ * <p>
+ * Lookup and allocation are lock-free, so McRunnables can search the table
+ * simultaneously. A thread claims a free slot by atomically replacing FREE
+ * with the fancy hash in the hashes array, then clears the node and marks the
+ * slot as ready. A thread that finds the hash it is looking for waits (briefly)
+ * until the slot is ready before returning the node, so it never sees a
+ * partially-initialized node. sweep() is not thread safe; it is only called
+ * while no search is running.
+ * <p>
+ * Nodes whose data survive from an earlier run (OffHeapSearchNodes mapped
+ * from a file) are put back into the table when it is created.
+ * <p>
+ * After each move, startGeneration() begins a new generation instead of
+ * sweeping the whole table. A low-priority background thread marks the nodes
+ * reachable from the new root with the new generation, while searching
+ * resumes; nodes found or allocated during the search are also tagged with
+ * the current generation. Once marking is finished, any node from an older
+ * generation is unreachable, and its slot is reclaimed the next time an
+ * allocation passes it.
+ * <p>
+ * A thread tags a node it finds by compare-and-set on the generations array,
+ * and a slot is claimed for reclamation the same way (by setting its
+ * generation to RECLAIMING), so a node tagged with the current generation is
+ * never reclaimed out from under the thread that found it. If the slot was
+ * claimed first, the hash in the slot no longer matches once the slot is
+ * ready, and the lookup starts over.
+ * <p>
+ * The table is divided into buckets of BUCKET_SIZE slots, and a node can only
+ * be stored in the bucket chosen by its hash, so lookups probe a bounded
+ * number of slots. When an allocation finds its bucket full (of nodes that
+ * are not stale), the leaf with the fewest runs (other than the root) is
+ * evicted. A search thread may still be holding that node, so code that
+ * updates a node it found earlier first checks that the node still has the
+ * expected hash. The evicted node is unlinked from the parent that last added
+ * it, and that parent's hasChild flag for the move is cleared, so the child
+ * can be created again. Other parents reaching it by transposition keep their
+ * flags; when such a parent next tries to grow that child, addChild() notices
+ * that no child has the expected hash and links it again. Allocations that
+ * replace a node in a bucket are synchronized on a lock for that bucket.
+ */
 public final class TranspositionTable {
 
+	/** Number of slots in each bucket. */
+	static final int BUCKET_SIZE = 16;
+
+	/** Value in hashes for a slot whose node is not in use. */
+	private static final long FREE = Long.MIN_VALUE;
+
+	/** Value in parents for a slot whose node has no recorded parent. */
+	private static final long NO_PARENT = -1L;
+
+	/** Value in generations for a slot whose node is being replaced. */
+	private static final int RECLAIMING = -1;
+
 	private final CoordinateSystem coords;
 
+	/** Number of nodes evicted in the current generation. */
+	private final AtomicInteger evictions;
+
+	/**
+	 * Number of allocations in the current generation that failed because no
+	 * slot could be found.
+	 */
+	private final AtomicInteger failedAllocations;
+
+	/** The current generation. */
+	private volatile int generation;
+
+	/**
+	 * Generation in which the node in each slot was last found, allocated, or
+	 * marked as reachable, or RECLAIMING while the node is being replaced.
+	 */
+	private final AtomicIntegerArray generations;
+
+	/**
+	 * Fancy hash of the node in each slot, or FREE. A slot is claimed by
+	 * compare-and-set on this array.
+	 */
+	private final AtomicLongArray hashes;
+
+	/** Locks for replacing nodes in buckets. */
+	private final Object[] locks;
+
 	/** ListNodes used to build child lists for SearchNodes. */
 	private final Pool<ListNode<SearchNode>> listNodes;
 
+	/** Background thread that marks reachable nodes; created when needed. */
+	private Thread marker;
+
+	/** Latest generation for which marking has finished. */
+	private volatile int markedGeneration;
+
+	/** Fancy hash of the root from which the current generation is marked. */
+	private long markRoot;
+
+	private final AtomicInteger nodesInUse;
+
+	/**
+	 * For each slot, the slot of the parent that last added the node as a
+	 * child (in the high bits) and the move leading to it (in the low 16 bits),
+	 * or NO_PARENT.
+	 */
+	private final AtomicLongArray parents;
+
+	/**
+	 * 1 for slots whose nodes have been initialized after being claimed, 0
+	 * otherwise.
+	 */
+	private final AtomicIntegerArray ready;
+
+	/**
+	 * Fancy hash of a node whose descendants are never swept, or FREE if there
+	 * is no such node.
+	 */
+	private long pinnedHash;
+
+	/** Number of stale nodes reclaimed in the current generation. */
+	private final AtomicInteger reclaimed;
+
 	/** The hash table itself. */
 	private final SearchNode[] table;
-	
-	private int nodesInUse;
+
+	/**
+	 * Generation in which the marker last visited each slot, so that it visits
+	 * each node only once. Only used by the marker thread.
+	 */
+	private final int[] visited;
 
 	public TranspositionTable(int megabytes, SearchNodeBuilder builder,
 			CoordinateSystem coords) {
-		final int size = megabytes * 1024 * 16 / Math.max(81, coords.getArea());
+		this(megabytes, builder, coords, 1);
+	}
+
+	/**
+	 * @param nodesPerDenseNode
+	 *            Number of nodes from builder that fit in the memory taken by a
+	 *            node with dense arrays, e.g.,
+	 *            SparseSearchNode.NODES_PER_DENSE_NODE.
+	 */
+	public TranspositionTable(int megabytes, SearchNodeBuilder builder,
+			CoordinateSystem coords, int nodesPerDenseNode) {
+		final int size = capacityFor(megabytes, coords, nodesPerDenseNode);
 		table = new SearchNode[size];
-		nodesInUse = 0;
+		hashes = new AtomicLongArray(size);
+		ready = new AtomicIntegerArray(size);
+		generations = new AtomicIntegerArray(size);
+		parents = new AtomicLongArray(size);
+		visited = new int[size];
+		reclaimed = new AtomicInteger();
+		evictions = new AtomicInteger();
+		failedAllocations = new AtomicInteger();
+		locks = new Object[Math.min(1024, size / BUCKET_SIZE)];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+		nodesInUse = new AtomicInteger();
 		for (int i = 0; i < size; i++) {
 			table[i] = builder.build();
+			hashes.set(i, FREE);
+			parents.set(i, NO_PARENT);
 		}
 		listNodes = new Pool<>();
 		for (int i = 0; i < 3 * size; i++) {
 			listNodes.free(new ListNode<SearchNode>());
 		}
 		this.coords = coords;
+		pinnedHash = FREE;
+		restore();
+	}
+
+	/**
+	 * Adds child as a child of parent, without recording the move leading to
+	 * it. Returns false if child could not be linked because the list nodes
+	 * have run out; it will then not survive the next sweep unless it is
+	 * reached some other way. Callers that may race with other threads adding
+	 * children to the same parent must synchronize on parent.
+	 */
+	boolean addChild(SearchNode parent, SearchNode child) {
+		return addChild(parent, NO_POINT, child.getFancyHash());
 	}
 
-	/** Adds child as a child of parent. */
-	void addChild(SearchNode parent, SearchNode child) {
+	/**
+	 * Adds the node with fancyHash as the child of parent reached by move p and
+	 * sets parent's hasChild flag for p. Returns true if the child is linked,
+	 * either now or already. Returns false, leaving the flag alone, if the node
+	 * is no longer in the table (because it has been evicted) or the list nodes
+	 * have run out. Callers must synchronize on parent.
+	 * <p>
+	 * If the flag for p is already set but no child of parent has fancyHash,
+	 * the child the flag referred to was evicted while linked from another
+	 * parent, so the flag is stale and the node is linked anyway.
+	 */
+	boolean addChild(SearchNode parent, short p, long fancyHash) {
+		if (p != NO_POINT && parent.hasChild(p)
+				&& hasChildWithHash(parent, fancyHash)) {
+			return true;
+		}
+		final int slot = slotOf(fancyHash);
+		if (slot < 0) {
+			return false;
+		}
 		final ListNode<SearchNode> node = listNodes.allocate();
-		node.setKey(child);
+		if (node == null) {
+			return false;
+		}
+		node.setKey(table[slot]);
 		node.setNext(parent.getChildren());
 		parent.setChildren(node);
+		final int parentSlot = slotOf(parent.getFancyHash());
+		final long link = parentSlot < 0 ? NO_PARENT : (long) parentSlot << 16
+				| p & 0xffff;
+		parents.set(slot, link);
+		// The link is recorded before the hash is checked, and reuse() changes
+		// the hash before removing the recorded link, so if the node is being
+		// evicted, either reuse() unlinks it or this undoes the link
+		if (hashes.get(slot) != fancyHash) {
+			removeChild(parent, table[slot]);
+			parents.compareAndSet(slot, link, NO_PARENT);
+			return false;
+		}
+		if (p != NO_POINT) {
+			parent.setHasChild(p);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of nodes in a table of the given size in megabytes,
+	 * as passed to the constructor.
+	 */
+	static int capacityFor(int megabytes, CoordinateSystem coords,
+			int nodesPerDenseNode) {
+		final int size = megabytes * 1024 * 16
+				/ Math.max(81, coords.getArea()) * nodesPerDenseNode;
+		return Math.max(BUCKET_SIZE, size - size % BUCKET_SIZE);
 	}
 
 	/**
@@ -54,53 +263,262 @@ public final class TranspositionTable {
 		return result;
 	}
 
+	/**
+	 * Tags the node in slot, which was found to have fancyHash, with the
+	 * current generation and returns it once it is initialized. Returns null
+	 * if the slot has meanwhile been taken over for another node, in which
+	 * case the caller should look again.
+	 */
+	private SearchNode acquire(int slot, long fancyHash) {
+		if (!touch(slot)) {
+			return null;
+		}
+		final SearchNode result = awaitReady(slot);
+		if (hashes.get(slot) != fancyHash) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Waits until the node in slot, which has been claimed, is initialized,
+	 * then returns it.
+	 */
+	private SearchNode awaitReady(int slot) {
+		while (ready.get(slot) == 0) {
+			Thread.yield();
+		}
+		return table[slot];
+	}
+
+	/** Waits until marking for the current generation is finished. */
+	synchronized void awaitMarking() {
+		while (markedGeneration != generation) {
+			try {
+				wait();
+			} catch (final InterruptedException e) {
+				// Keep waiting
+			}
+		}
+	}
+
 	/** Returns the node associated with hash, or null if there is no such node. */
-	public synchronized SearchNode findIfPresent(long fancyHash) {
-		final int start = ((int) fancyHash & IGNORE_SIGN_BIT) % table.length;
-		int slot = start;
-		do {
-			final SearchNode n = table[slot];
-			if (n.isInUse()) {
-				if (n.getFancyHash() == fancyHash) {
-					return n;
-				}
-			} else {
+	public SearchNode findIfPresent(long fancyHash) {
+		while (true) {
+			final int slot = slotOf(fancyHash);
+			if (slot < 0) {
 				return null;
 			}
-			slot = (slot + 1) % table.length;
-		} while (slot != start);
-		return null;
+			final SearchNode result = acquire(slot, fancyHash);
+			if (result != null) {
+				return result;
+			}
+		}
 	}
 
 	/**
 	 * Returns the node associated with hash in the table, if any. If not,
-	 * allocates and returns a new node from the pool. If no nodes are available
-	 * in the pool, returns null.
-	 */
-	synchronized SearchNode findOrAllocate(long fancyHash) {
-		final int start = ((int) fancyHash & IGNORE_SIGN_BIT) % table.length;
-		int slot = start;
-		do {
-			final SearchNode n = table[slot];
-			if (n.isInUse()) {
-				if (n.getFancyHash() == fancyHash) {
-					return n;
+	 * allocates and returns a new node in the hash's bucket, using a free slot,
+	 * reclaiming the slot of a stale node, or evicting the leaf with the
+	 * fewest runs. Returns null if none of these is possible.
+	 */
+	SearchNode findOrAllocate(long fancyHash) {
+		assert fancyHash != FREE;
+		final int first = firstSlot(fancyHash);
+		while (true) {
+			int free = -1;
+			boolean replace = false;
+			boolean lost = false;
+			for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+				final long h = hashes.get(slot);
+				if (h == fancyHash) {
+					final SearchNode n = acquire(slot, fancyHash);
+					if (n != null) {
+						return n;
+					}
+					// The slot was taken over for another node
+					lost = true;
+					break;
+				}
+				if (h == FREE) {
+					if (free < 0) {
+						free = slot;
+					}
+				} else if (isStale(slot)) {
+					replace = true;
 				}
-			} else {
-				n.clear(fancyHash, coords);
-				nodesInUse++;
+			}
+			if (lost) {
+				continue;
+			}
+			if (replace || free < 0) {
+				return replace(first, fancyHash);
+			}
+			final SearchNode n = allocate(free, fancyHash);
+			if (n != null) {
 				return n;
 			}
-			slot = (slot + 1) % table.length;
-		} while (slot != start);
-		return null;
+			// Another thread claimed the slot first, possibly for the same
+			// hash, so look again
+		}
 	}
 
-	/** Returns the number of nodes in the table. For testing. */
+	/**
+	 * Returns the root node for the generation that has just started,
+	 * allocating it if necessary. Unlike findOrAllocate(), this never fails. If
+	 * the root's bucket has no room, it waits for marking to finish, so that
+	 * stale nodes can be reclaimed. If that is not enough, it evicts the node in
+	 * the bucket with the fewest runs. Must only be called while no search is
+	 * running, so that no thread can be holding the evicted node.
+	 */
+	SearchNode findOrAllocateRoot(long fancyHash) {
+		SearchNode result = findOrAllocate(fancyHash);
+		if (result != null) {
+			return result;
+		}
+		awaitMarking();
+		result = findOrAllocate(fancyHash);
+		if (result != null) {
+			return result;
+		}
+		final int first = firstSlot(fancyHash);
+		synchronized (locks[first / BUCKET_SIZE % locks.length]) {
+			int victim = -1;
+			int fewestRuns = Integer.MAX_VALUE;
+			for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+				if (hashes.get(slot) != pinnedHash) {
+					final int runs = table[slot].getTotalRuns();
+					if (runs < fewestRuns) {
+						fewestRuns = runs;
+						victim = slot;
+					}
+				}
+			}
+			assert victim >= 0;
+			generations.set(victim, RECLAIMING);
+			reuse(victim, fancyHash);
+			evictions.incrementAndGet();
+			return table[victim];
+		}
+	}
+
+	/** Returns the first slot in the bucket for fancyHash. */
+	private int firstSlot(long fancyHash) {
+		return ((int) fancyHash & IGNORE_SIGN_BIT) % (table.length / BUCKET_SIZE)
+				* BUCKET_SIZE;
+	}
+
+	/**
+	 * Claims the free slot for the node with fancyHash and returns the
+	 * initialized node, or returns null if another thread claimed the slot
+	 * first.
+	 */
+	private SearchNode allocate(int slot, long fancyHash) {
+		if (!hashes.compareAndSet(slot, FREE, fancyHash)) {
+			return null;
+		}
+		generations.set(slot, generation);
+		parents.set(slot, NO_PARENT);
+		final SearchNode n = table[slot];
+		n.clear(fancyHash, coords);
+		nodesInUse.incrementAndGet();
+		ready.set(slot, 1);
+		return n;
+	}
+
+	/** Returns all of the ListNodes in node's list of children to the pool. */
+	private void freeChildren(SearchNode node) {
+		ListNode<SearchNode> n = node.getChildren();
+		while (n != null) {
+			n = listNodes.free(n);
+		}
+	}
+
+	/**
+	 * Returns the number of nodes evicted since the current generation
+	 * started.
+	 */
+	int getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of failed allocations since the current generation
+	 * started.
+	 */
+	int getFailedAllocations() {
+		return failedAllocations.get();
+	}
+
+	/** Returns the node in the given slot. */
+	SearchNode getNode(int slot) {
+		return table[slot];
+	}
+
+	/** Returns the number of nodes in the table. */
 	int getCapacity() {
 		return table.length;
 	}
 
+	/** Returns true if one of parent's children has fancyHash. */
+	private static boolean hasChildWithHash(SearchNode parent, long fancyHash) {
+		ListNode<SearchNode> n = parent.getChildren();
+		while (n != null) {
+			final SearchNode child = n.getKey();
+			if (child != null && child.getFancyHash() == fancyHash) {
+				return true;
+			}
+			n = n.getNext();
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the node in slot, with hash h, may be evicted: it is a
+	 * leaf, and it is not the root or the pinned node.
+	 */
+	private boolean isEvictable(int slot, long h) {
+		return ready.get(slot) == 1 && h != markRoot && h != pinnedHash
+				&& table[slot].getChildren() == null;
+	}
+
+	/**
+	 * Returns true if the node in slot is known to be unreachable, i.e., it is
+	 * from an earlier generation than the current one and marking is finished.
+	 */
+	private boolean isStale(int slot) {
+		final int g = generation;
+		return markedGeneration == g && generations.get(slot) < g
+				&& ready.get(slot) == 1;
+	}
+
+	/**
+	 * Marks the nodes reachable from node with generation g. Returns false if
+	 * a newer generation started before marking was finished.
+	 */
+	private boolean markGeneration(SearchNode node, int g) {
+		if (node == null) {
+			return true;
+		}
+		if (generation != g) {
+			return false;
+		}
+		final int slot = slotOf(node.getFancyHash());
+		if (slot < 0 || visited[slot] == g) {
+			return true;
+		}
+		visited[slot] = g;
+		raise(slot, g);
+		ListNode<SearchNode> child = node.getChildren();
+		while (child != null) {
+			if (!markGeneration(child.getKey(), g)) {
+				return false;
+			}
+			child = child.getNext();
+		}
+		return true;
+	}
+
 	/**
 	 * Marks all nodes reachable from root, so they will survive sweep().
 	 * Returns the number of nodes marked.
@@ -121,31 +539,326 @@ public final class TranspositionTable {
 
 	/** Returns the number of table nodes currently in use. */
 	int getNodesInUse() {
-		return nodesInUse;
+		return nodesInUse.get();
 	}
-	
+
+	/**
+	 * Repeatedly waits for a new generation to start, then marks the nodes
+	 * reachable from its root (and from the pinned node). Returns when the
+	 * marker thread is interrupted by shutdown().
+	 */
+	private void markRepeatedly() {
+		while (true) {
+			final int g;
+			final long root;
+			synchronized (this) {
+				while (markedGeneration == generation) {
+					try {
+						wait();
+					} catch (final InterruptedException e) {
+						return;
+					}
+				}
+				g = generation;
+				root = markRoot;
+			}
+			if (markGeneration(findIfPresent(root), g)
+					&& (pinnedHash == FREE || markGeneration(
+							findIfPresent(pinnedHash), g))) {
+				synchronized (this) {
+					if (generation == g) {
+						markedGeneration = g;
+						notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps the node with fancyHash, and all nodes reachable from it, from ever
+	 * being swept. This lets a persistent table keep the tree for the start of
+	 * the game from one game to the next.
+	 */
+	public void pin(long fancyHash) {
+		pinnedHash = fancyHash;
+	}
+
+	/**
+	 * Raises the generation of the node in slot to at least g. Returns false if
+	 * the slot has already been claimed for reclamation.
+	 */
+	private boolean raise(int slot, int g) {
+		while (true) {
+			final int old = generations.get(slot);
+			if (old == RECLAIMING) {
+				return false;
+			}
+			if (old >= g || generations.compareAndSet(slot, old, g)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Takes over the slot of a stale node for the node with fancyHash. Returns
+	 * false if another thread touched the slot first.
+	 */
+	private boolean reclaim(int slot, long fancyHash) {
+		final int g = generations.get(slot);
+		if (g == RECLAIMING || g >= generation
+				|| !generations.compareAndSet(slot, g, RECLAIMING)) {
+			return false;
+		}
+		reuse(slot, fancyHash);
+		reclaimed.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Removes child from parent's list of children, returning its ListNode to
+	 * the pool. Returns false if child is not in the list. Callers must
+	 * synchronize on parent.
+	 */
+	private boolean removeChild(SearchNode parent, SearchNode child) {
+		ListNode<SearchNode> previous = null;
+		ListNode<SearchNode> n = parent.getChildren();
+		while (n != null) {
+			if (n.getKey() == child) {
+				final ListNode<SearchNode> next = n.getNext();
+				if (previous != null) {
+					previous.setNext(listNodes.free(n));
+				} else if (next != null) {
+					// Giving an OffHeapSearchNode a new head would record that
+					// child again, so the second ListNode is removed instead
+					n.setKey(next.getKey());
+					n.setNext(listNodes.free(next));
+				} else {
+					listNodes.free(n);
+					parent.setChildren(null);
+				}
+				return true;
+			}
+			previous = n;
+			n = n.getNext();
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a slot in the bucket starting at first for the node with
+	 * fancyHash, when the bucket is full or holds stale nodes. Returns the
+	 * node, or null if no slot can be found.
+	 */
+	private SearchNode replace(int first, long fancyHash) {
+		synchronized (locks[first / BUCKET_SIZE % locks.length]) {
+			// Look again, now that no other thread can replace a node in this
+			// bucket
+			int victim = -1;
+			int fewestRuns = Integer.MAX_VALUE;
+			for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+				final long h = hashes.get(slot);
+				if (h == fancyHash) {
+					final SearchNode n = acquire(slot, fancyHash);
+					if (n != null) {
+						return n;
+					}
+				} else if (h == FREE) {
+					final SearchNode n = allocate(slot, fancyHash);
+					if (n != null) {
+						return n;
+					}
+				} else if (isStale(slot)) {
+					if (reclaim(slot, fancyHash)) {
+						return table[slot];
+					}
+				} else if (isEvictable(slot, h)) {
+					final int runs = table[slot].getTotalRuns();
+					if (runs < fewestRuns) {
+						fewestRuns = runs;
+						victim = slot;
+					}
+				}
+			}
+			// While the marker is running, it may be traversing any node's
+			// children, so no node can be evicted
+			if (victim < 0 || markedGeneration != generation) {
+				failedAllocations.incrementAndGet();
+				return null;
+			}
+			// Other claims on a slot in this bucket are made under the same
+			// lock, so this keeps touch() from tagging the victim from now on
+			generations.set(victim, RECLAIMING);
+			reuse(victim, fancyHash);
+			evictions.incrementAndGet();
+			return table[victim];
+		}
+	}
+
+	/**
+	 * Replaces the node in slot, which is in use and has been claimed by
+	 * setting its generation to RECLAIMING, with a new node for fancyHash,
+	 * unlinking it from its recorded parent and returning its children to the
+	 * pool.
+	 */
+	private void reuse(int slot, long fancyHash) {
+		ready.set(slot, 0);
+		// The hash must change before the recorded link is removed (see
+		// addChild())
+		hashes.set(slot, fancyHash);
+		unlink(slot);
+		final SearchNode n = table[slot];
+		synchronized (n) {
+			freeChildren(n);
+			n.clear(fancyHash, coords);
+		}
+		ready.set(slot, 1);
+		// Only now can other threads tag the node, and they will see the new
+		// hash
+		generations.set(slot, generation);
+	}
+
+	/**
+	 * Puts any nodes that are already in use (because their data were restored
+	 * from a file) into the table, and relinks them to their children.
+	 */
+	private void restore() {
+		for (int i = 0; i < table.length; i++) {
+			final SearchNode node = table[i];
+			if (node.isInUse()) {
+				assert node.getFancyHash() != FREE;
+				node.setMarked(false);
+				hashes.set(i, node.getFancyHash());
+				ready.set(i, 1);
+				nodesInUse.incrementAndGet();
+			}
+		}
+		for (int i = 0; i < table.length; i++) {
+			if (table[i].isInUse() && table[i] instanceof OffHeapSearchNode) {
+				((OffHeapSearchNode) table[i]).restoreChildren(this);
+			}
+		}
+		if (nodesInUse.get() > 0) {
+			Logging.log("Restored " + nodesInUse + " nodes");
+		}
+	}
+
+	/**
+	 * Returns the slot holding the node with fancyHash, or -1 if there is none.
+	 */
+	private int slotOf(long fancyHash) {
+		final int first = firstSlot(fancyHash);
+		for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+			if (hashes.get(slot) == fancyHash) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Starts a new generation rooted at the node with fancyHash (usually the
+	 * root after a move has been accepted). Nodes reachable from the root are
+	 * marked in the background; unreachable ones are reclaimed lazily.
+	 */
+	synchronized void startGeneration(long fancyHash) {
+		Logging.log("Nodes in use " + nodesInUse + "/" + table.length
+				+ ", reclaimed " + reclaimed.getAndSet(0) + ", evicted "
+				+ evictions.getAndSet(0) + ", table full "
+				+ failedAllocations.getAndSet(0) + " times in generation "
+				+ generation);
+		generation++;
+		markRoot = fancyHash;
+		if (marker == null) {
+			marker = new Thread() {
+				@Override
+				public void run() {
+					markRepeatedly();
+				}
+			};
+			marker.setDaemon(true);
+			marker.setPriority(Thread.MIN_PRIORITY);
+			marker.start();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Stops the marker thread, if any, and waits for it to end. A new one is
+	 * started if another generation begins.
+	 */
+	void shutdown() {
+		final Thread t;
+		synchronized (this) {
+			t = marker;
+			marker = null;
+		}
+		if (t != null) {
+			t.interrupt();
+			try {
+				t.join();
+			} catch (final InterruptedException e) {
+				// Stop waiting; the marker still ends
+			}
+		}
+	}
+
 	/**
 	 * After markNodesUnreachableFrom(), frees all unused SearchNodes (tagging
 	 * them as not in use) and associated ListNodes (returning them to the
 	 * pool).
 	 */
 	void sweep() {
-		Logging.log("Nodes in use " + nodesInUse + "/" + table.length + " (" + (nodesInUse* 100)/table.length  + "%)");
+		awaitMarking();
+		if (pinnedHash != FREE) {
+			markNodesReachableFrom(findIfPresent(pinnedHash));
+		}
+		Logging.log("Nodes in use " + nodesInUse + "/" + table.length + " (" + (nodesInUse.get() * 100)/table.length  + "%)");
 		for (int i = 0; i < table.length; i++) {
 			final SearchNode node = table[i];
 			if (node.isInUse()) {
 				if (node.isMarked()) {
 					node.setMarked(false);
 				} else {
-					ListNode<SearchNode> n = node.getChildren();
-					while (n != null) {
-						n = listNodes.free(n);
-					}
+					freeChildren(node);
 					node.free();
-					nodesInUse--;
+					ready.set(i, 0);
+					hashes.set(i, FREE);
+					parents.set(i, NO_PARENT);
+					nodesInUse.decrementAndGet();
 				}
 			}
 		}
 	}
 
+	/**
+	 * Tags the node in slot as belonging to the current generation, so that it
+	 * cannot be reclaimed during this generation. Returns false if the slot has
+	 * already been claimed for reclamation.
+	 */
+	private boolean touch(int slot) {
+		return raise(slot, generation);
+	}
+
+	/**
+	 * Removes the node in slot, which is being replaced, from the child
+	 * list of the parent that last added it, and clears that parent's hasChild
+	 * flag for the move leading to it.
+	 */
+	private void unlink(int slot) {
+		final long link = parents.getAndSet(slot, NO_PARENT);
+		if (link == NO_PARENT) {
+			return;
+		}
+		final SearchNode child = table[slot];
+		final SearchNode parent = table[(int) (link >>> 16)];
+		final short p = (short) link;
+		synchronized (parent) {
+			// The parent may itself have been reused since it added the child
+			if (removeChild(parent, child) && p != NO_POINT) {
+				parent.clearHasChild(p);
+			}
+		}
+	}
+
 }
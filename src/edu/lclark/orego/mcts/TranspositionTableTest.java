@@ -50,10 +50,103 @@ public class TranspositionTableTest {
 
 	@Test
 	public void testAllocationFailsWhenNoNodesLeft() {
-		for (int i = 0; i <= table.getCapacity(); i++) {
+		for (int i = 0; i < table.getCapacity(); i++) {
 			table.findOrAllocate(i);
 		}
+		// Only leaves can be evicted, so give every node a child
+		for (int i = 0; i < table.getCapacity(); i++) {
+			table.addChild(table.findIfPresent(i),
+					table.findIfPresent((i + 1) % table.getCapacity()));
+		}
 		assertNull(table.findOrAllocate(table.getCapacity() + 1));
+		assertEquals(1, table.getFailedAllocations());
+	}
+
+	@Test
+	public void testEvictionWhenFull() {
+		final int buckets = table.getCapacity() / TranspositionTable.BUCKET_SIZE;
+		// Hashes 0, buckets, 2 * buckets, ... share the first bucket; the root
+		// is elsewhere
+		final SearchNode root = table.findOrAllocate(1L);
+		for (int i = 0; i < TranspositionTable.BUCKET_SIZE; i++) {
+			table.findOrAllocate(i * buckets);
+			assertTrue(table.addChild(root, (short) (i + 1), i * buckets));
+		}
+		final SearchNode busy = table.findIfPresent(0L);
+		busy.update((short) 3, 10, 5);
+		final SearchNode n = table.findOrAllocate(TranspositionTable.BUCKET_SIZE
+				* buckets);
+		assertNotNull(n);
+		assertEquals(1, table.getEvictions());
+		assertEquals(0, table.getFailedAllocations());
+		// The first leaf with the fewest runs was evicted, even though it was
+		// allocated in this generation
+		assertSame(busy, table.findIfPresent(0L));
+		assertNull(table.findIfPresent(buckets));
+		assertSame(n, table.findIfPresent(TranspositionTable.BUCKET_SIZE
+				* buckets));
+		// The evicted node was unlinked from its parent
+		assertTrue(root.hasChild((short) 1));
+		assertFalse(root.hasChild((short) 2));
+		int children = 0;
+		ListNode<SearchNode> child = root.getChildren();
+		while (child != null) {
+			assertNotSame(n, child.getKey());
+			children++;
+			child = child.getNext();
+		}
+		assertEquals(TranspositionTable.BUCKET_SIZE - 1, children);
+		// The child can be grown again
+		table.findOrAllocate(buckets);
+		assertTrue(table.addChild(root, (short) 2, buckets));
+		assertTrue(root.hasChild((short) 2));
+	}
+
+	@Test
+	public void testStaleHasChildFlag() {
+		final int buckets = table.getCapacity() / TranspositionTable.BUCKET_SIZE;
+		final SearchNode first = table.findOrAllocate(1L);
+		final SearchNode second = table.findOrAllocate(2L);
+		// Hashes buckets, 2 * buckets, ... share the first bucket
+		for (int i = 1; i <= TranspositionTable.BUCKET_SIZE; i++) {
+			table.findOrAllocate(i * buckets);
+		}
+		// The child is reached from both parents; second links it last
+		final SearchNode child = table.findIfPresent(buckets);
+		assertTrue(table.addChild(first, (short) 3, buckets));
+		assertTrue(table.addChild(second, (short) 4, buckets));
+		// Leave only the child and a spare with more runs as leaves in the
+		// bucket
+		final SearchNode spare = table.findIfPresent(2 * buckets);
+		spare.update((short) 5, 10, 5);
+		for (int i = 3; i <= TranspositionTable.BUCKET_SIZE; i++) {
+			table.addChild(table.findIfPresent(i * buckets), first);
+		}
+		final SearchNode n = table
+				.findOrAllocate((TranspositionTable.BUCKET_SIZE + 1) * buckets);
+		assertSame(child, n);
+		assertFalse(second.hasChild((short) 4));
+		// The other parent still has its flag, pointing at a node that now
+		// represents another position
+		assertTrue(first.hasChild((short) 3));
+		// Grow the child again, in the spare's slot
+		table.addChild(n, first);
+		final SearchNode regrown = table.findOrAllocate(buckets);
+		assertSame(spare, regrown);
+		assertTrue(table.addChild(first, (short) 3, buckets));
+		assertSame(regrown, first.getChildren().getKey());
+	}
+
+	@Test
+	public void testAddChildWhenListNodesRunOut() {
+		final SearchNode parent = table.findOrAllocate(0L);
+		final SearchNode child = table.findOrAllocate(1L);
+		// There are three list nodes per table slot
+		for (int i = 0; i < 3 * table.getCapacity(); i++) {
+			assertTrue(table.addChild(parent, child));
+		}
+		assertFalse(table.addChild(parent, (short) 3, 1L));
+		assertFalse(parent.hasChild((short) 3));
 	}
 
 	@Test
@@ -138,4 +231,73 @@ public class TranspositionTableTest {
 		assertNotNull(table.findIfPresent(hash));
 	}
 
+	@Test
+	public void testConcurrentAllocation() throws InterruptedException {
+		final int threads = 4;
+		final int hashes = 100;
+		final SearchNode[][] found = new SearchNode[threads][hashes];
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int id = i;
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int h = 0; h < hashes; h++) {
+						found[id][h] = table.findOrAllocate(h);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+		// Every thread should get the same node for each hash
+		for (int h = 0; h < hashes; h++) {
+			for (int i = 0; i < threads; i++) {
+				assertSame(found[0][h], found[i][h]);
+			}
+			assertEquals(h, found[0][h].getFancyHash());
+		}
+		assertEquals(hashes, table.getNodesInUse());
+	}
+
+	@Test
+	public void testLazyReclamation() {
+		final SearchNode root = table.findOrAllocate(1L);
+		final SearchNode child = table.findOrAllocate(2L);
+		table.addChild(root, child);
+		final SearchNode unreachable = table.findOrAllocate(3L);
+		table.addChild(unreachable, table.findOrAllocate(4L));
+		table.startGeneration(1L);
+		table.awaitMarking();
+		// Nothing is freed until the slot is needed
+		assertEquals(4, table.getNodesInUse());
+		assertSame(child, table.findIfPresent(2L));
+		// This hash starts probing at the slot of the unreachable node
+		final SearchNode n = table.findOrAllocate(3L + table.getCapacity());
+		assertSame(unreachable, n);
+		assertNull(table.findIfPresent(3L));
+		assertEquals(3L + table.getCapacity(), n.getFancyHash());
+		assertNull(n.getChildren());
+		assertEquals(4, table.getNodesInUse());
+		// Nodes found during the search are kept
+		assertSame(child, table.findOrAllocate(2L));
+		assertSame(root, table.findOrAllocate(1L));
+	}
+
+	@Test
+	public void testFoundNodeIsNotReclaimed() {
+		table.findOrAllocate(1L);
+		final SearchNode unreachable = table.findOrAllocate(3L);
+		table.startGeneration(1L);
+		table.awaitMarking();
+		// Finding the node tags it with the current generation
+		assertSame(unreachable, table.findIfPresent(3L));
+		final SearchNode n = table.findOrAllocate(3L + table.getCapacity());
+		assertNotSame(unreachable, n);
+		assertSame(unreachable, table.findIfPresent(3L));
+		assertEquals(3L, unreachable.getFancyHash());
+	}
+
 }
@@ -8,6 +8,12 @@ public interface TreeUpdater {
 	/** Returns this object to its original state. */
 	public void clear();
 
+	/**
+	 * Incorporates into the tree any results of mcRunnable's runs that have
+	 * been held back. Called when mcRunnable stops running.
+	 */
+	public void flush(McRunnable mcRunnable);
+
 	/** Returns the number of runs required before a child is created. */
 	public int getGestation();
 
@@ -14,32 +14,63 @@ public final class UctDescender extends AbstractDescender {
 	}
 
 	/**
-	 * Returns the UCT upper bound for node. This is the UCB1-TUNED policy,
-	 * explained in the tech report by Gelly, et al, "Modification of UCT with
-	 * Patterns in Monte-Carlo Go". The formula is at the bottom of p. 5 in that
-	 * paper.
+	 * @see AbstractDescender#AbstractDescender(Board, TranspositionTable, int,
+	 *      int, float)
 	 */
-	@Override
-	public float searchValue(SearchNode node, short move) {
+	public UctDescender(Board board, TranspositionTable table, int biasDelay,
+			int virtualLoss, float virtualLossWinRate) {
+		super(board, table, biasDelay, virtualLoss, virtualLossWinRate);
+	}
+
+	/**
+	 * Returns the UCT upper bound for a move with win rate barX over the given
+	 * number of runs, from a node whose total runs have the given log. This is
+	 * the UCB1-TUNED policy, explained in the tech report by Gelly, et al,
+	 * "Modification of UCT with Patterns in Monte-Carlo Go". The formula is at
+	 * the bottom of p. 5 in that paper.
+	 */
+	private static float uct(double barX, int runs, double logParentRunCount) {
 		// The variable names here are chosen for consistency with the tech
 		// report
-		final double barX = node.getWinRate(move);
 		if (barX < 0) { // if the move has been excluded
 			return NEGATIVE_INFINITY;
 		}
-		final double logParentRunCount = log(node.getTotalRuns());
 		// In the paper, term1 is the mean of the SQUARES of the rewards; since
 		// all rewards are 0 or 1 here, this is equivalent to the mean of the
 		// rewards, i.e., the win rate.
 		final double term1 = barX;
 		final double term2 = -(barX * barX);
-		final double term3 = sqrt(2 * logParentRunCount / node.getRuns(move));
+		final double term3 = sqrt(2 * logParentRunCount / runs);
 		final double v = term1 + term2 + term3; // This equation is above Eq. 1
 		assert v >= 0 : "Negative variability in UCT";
-		final double factor1 = logParentRunCount / node.getRuns(move);
+		final double factor1 = logParentRunCount / runs;
 		final double factor2 = min(0.25, v);
 		final double uncertainty = 0.4 * sqrt(factor1 * factor2);
 		return (float) (uncertainty + barX);
 	}
 
+	/** Returns the UCT upper bound for move from node. */
+	@Override
+	public float searchValue(SearchNode node, short move) {
+		return uct(node.getWinRate(move), node.getRuns(move),
+				log(node.getTotalRuns()));
+	}
+
+	/**
+	 * Evaluates UCT for all of the moves, taking the log of the node's total
+	 * runs only once.
+	 */
+	@Override
+	void searchValues(SearchNode node, SearchValues values) {
+		values.loadStats(node);
+		final int n = values.size();
+		final int[] runs = values.getRuns();
+		final float[] wins = values.getWins();
+		final float[] result = values.getValues();
+		final double logParentRunCount = log(node.getTotalRuns());
+		for (int i = 0; i < n; i++) {
+			result[i] = uct(wins[i] / runs[i], runs[i], logParentRunCount);
+		}
+	}
+
 }
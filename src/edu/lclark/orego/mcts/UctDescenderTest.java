@@ -1,6 +1,7 @@
 package edu.lclark.orego.mcts;
 
 import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
 import static org.junit.Assert.*;
 
 import org.junit.Before;
@@ -68,6 +69,31 @@ public class UctDescenderTest {
 		assertEquals(at("d2"), runnable.getHistoryObserver().get(0));
 	}
 
+	@Test
+	public void testWidening() {
+		descender.setWidening(2, 10);
+		// Playing c3 makes the points around it feasible
+		player.acceptMove(at("c3"));
+		SearchNode root = updater.getRoot();
+		root.update(at("d3"), 10, 9);
+		root.update(at("c2"), 10, 8);
+		root.setBiasUpdated(true);
+		McRunnable runnable = player.getMcRunnable(0);
+		runnable.copyDataFrom(player.getBoard());
+		assertEquals(at("d3"), descender.bestSearchMove(root, runnable));
+		MoveRanking ranking = root.getMoveRanking();
+		assertEquals(at("d3"), ranking.getMoves()[0]);
+		assertEquals(at("c2"), ranking.getMoves()[1]);
+		assertEquals(2, ranking.getAdmitted());
+		// b3 now looks better than d3, but it has not been admitted
+		root.update(at("b3"), 9, 9);
+		assertEquals(at("d3"), descender.bestSearchMove(root, runnable));
+		// After 10 more runs, another move is admitted
+		root.update(at("b3"), 1, 1);
+		descender.bestSearchMove(root, runnable);
+		assertEquals(3, ranking.getAdmitted());
+	}
+
 	@Test
 	public void testUpdateBias() {
 		assertEquals("Total runs: 60\n", updater.toString(5));
@@ -77,15 +103,62 @@ public class UctDescenderTest {
 			updater.updateTree(BLACK, runnable);
 		}
 		assertEquals(
-				"Total runs: 160\nB1:     101/    102 (0.9902)\n  Total runs: 150\n  A1:       0/     92 (0.0109)\n    Total runs: 200\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n",
+				"Total runs: 160\nB1:     101/    102 (0.9902)\n  Total runs: 150\n  A1:       1/     92 (0.0109)\n    Total runs: 200\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n",
 				updater.toString(5));
 		descender.fakeDescend(runnable, at("b1"), at("a1"), at("a2"));
 		updater.updateTree(BLACK, runnable);
 		assertEquals(
-				"Total runs: 161\nB1:     102/    103 (0.9903)\n  Total runs: 151\n  A1:       0/     93 (0.0108)\n    Total runs: 201\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n    A2:      42/     43 (0.9767)\n      Total runs: 60\n",
+				"Total runs: 161\nB1:     102/    103 (0.9903)\n  Total runs: 151\n  A1:       1/     93 (0.0108)\n    Total runs: 201\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n    A2:      42/     43 (0.9767)\n      Total runs: 60\n",
 				updater.toString(5));
 	}
 
+	@Test
+	public void testSearchValues() {
+		McRunnable runnable = player.getMcRunnable(0);
+		for (int i = 0; i < 20; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.acceptMove(at(i % 3 == 0 ? "b1" : "c4"));
+			runnable.acceptMove(at("a2"));
+			updater.updateTree(i % 2 == 0 ? BLACK : WHITE, runnable);
+		}
+		SearchNode root = updater.getRoot();
+		root.exclude(at("e5"));
+		SearchValues values = runnable.getSearchValues();
+		values.setMoves(board.getVacantPoints());
+		descender.searchValues(root, values);
+		for (int i = 0; i < values.size(); i++) {
+			assertEquals(descender.searchValue(root, values.getMove(i)),
+					values.getValue(i), 0.0001);
+		}
+	}
+
+	@Test
+	public void testTopMoves() {
+		descender.setTopMoves(2, 1000);
+		// Playing c3 makes the points around it feasible
+		player.acceptMove(at("c3"));
+		SearchNode root = updater.getRoot();
+		root.update(at("d3"), 20, 18);
+		McRunnable runnable = player.getMcRunnable(0);
+		runnable.copyDataFrom(player.getBoard());
+		assertEquals(at("d3"), descender.bestSearchMove(root, runnable));
+		TopMoves top = root.getTopMoves();
+		assertEquals(2, top.size());
+		assertEquals(at("d3"), top.getMoves()[0]);
+		// A list that is still fresh is consulted instead of the whole board
+		SearchValues values = runnable.getSearchValues();
+		values.setMoves(runnable.getBoard().getVacantPoints());
+		for (int i = 0; i < values.size(); i++) {
+			values.getValues()[i] = values.getMove(i) == at("c2") ? 1 : 0;
+		}
+		root.setTopMoves(new TopMoves(values, 1, root.getTotalRuns()));
+		assertEquals(at("c2"), descender.bestSearchMove(root, runnable));
+		// Once the list expires, the whole board is evaluated again
+		descender.setTopMoves(2, 1);
+		root.update(at("d3"), 1, 1);
+		assertEquals(at("d3"), descender.bestSearchMove(root, runnable));
+	}
+
 	@Test
 	public void testSuggesters() {
 		String[] diagram = {
@@ -104,4 +177,27 @@ public class UctDescenderTest {
 						mover.selectAndPlayOneMove(new MersenneTwisterFast(), true)));
 	}
 
+	@Test
+	public void testVirtualLoss() {
+		CoordinateSystem coords = player.getBoard().getCoordinateSystem();
+		TranspositionTable table = new TranspositionTable(100,
+				new SimpleSearchNodeBuilder(coords), coords);
+		descender = new UctDescender(player.getBoard(), table, 75, 3, 0);
+		updater = new SimpleTreeUpdater(player.getBoard(), table, 12);
+		player.setTreeDescender(descender);
+		player.setTreeUpdater(updater);
+		McRunnable runnable = player.getMcRunnable(0);
+		SearchNode root = updater.getRoot();
+		runnable.copyDataFrom(player.getBoard());
+		descender.descend(runnable);
+		short move = runnable.getHistoryObserver().get(0);
+		// The move chosen has three extra runs, all losses
+		assertEquals(5, root.getRuns(move));
+		assertEquals(1, root.getWins(move), 0.001);
+		// Updating the tree removes the virtual loss and adds the real run
+		updater.updateTree(BLACK, runnable);
+		assertEquals(3, root.getRuns(move));
+		assertEquals(2, root.getWins(move), 0.001);
+	}
+
 }
@@ -0,0 +1,81 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.Legality.OK;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.Legality;
+import edu.lclark.orego.feature.FeasibleMovesObserver;
+import edu.lclark.orego.feature.NotEyeLike;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortList;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Makes random moves that pass the usual playout filter (not eyelike, and
+ * either on the third or fourth line or near another stone). Samples from the
+ * candidates maintained by a FeasibleMovesObserver, so it does not have to
+ * copy and test every vacant point.
+ */
+@SuppressWarnings("serial")
+public final class FeasibleMover implements Mover {
+
+	/**
+	 * Number of candidates drawn directly (possibly with repetition) before
+	 * falling back to drawing without replacement.
+	 */
+	private static final int DIRECT_DRAWS = 4;
+
+	private final Board board;
+
+	private final ShortList candidates;
+
+	private final NotEyeLike notEyeLike;
+
+	private final FeasibleMovesObserver observer;
+
+	public FeasibleMover(Board board, FeasibleMovesObserver observer) {
+		this.board = board;
+		this.observer = observer;
+		notEyeLike = new NotEyeLike(board);
+		candidates = new ShortList(board.getCoordinateSystem().getArea());
+	}
+
+	/**
+	 * Plays p, a candidate, if it is not eyelike and is legal. Returns true if
+	 * p was played.
+	 */
+	private boolean playIfFeasible(short p, boolean fast) {
+		// Suicide is caught by the legality check
+		if (!notEyeLike.at(p)) {
+			return false;
+		}
+		final Legality legality = fast ? board.playFast(p) : board.play(p);
+		return legality == OK;
+	}
+
+	@Override
+	public short selectAndPlayOneMove(MersenneTwisterFast random, boolean fast) {
+		final ShortSet moves = observer.getCandidates();
+		if (moves.size() > 0) {
+			// Almost every candidate is feasible, so it is rarely necessary to
+			// copy the set
+			for (int i = 0; i < DIRECT_DRAWS; i++) {
+				final short p = moves.get(random.nextInt(moves.size()));
+				if (playIfFeasible(p, fast)) {
+					return p;
+				}
+			}
+			candidates.clear();
+			candidates.addAll(moves);
+			while (candidates.size() > 0) {
+				final short p = candidates.removeRandom(random);
+				if (playIfFeasible(p, fast)) {
+					return p;
+				}
+			}
+		}
+		board.pass();
+		return PASS;
+	}
+
+}
@@ -6,10 +6,12 @@ import edu.lclark.orego.feature.CaptureSuggester;
 import edu.lclark.orego.feature.Conjunction;
 import edu.lclark.orego.feature.Disjunction;
 import edu.lclark.orego.feature.EscapeSuggester;
+import edu.lclark.orego.feature.FeasibleMovesObserver;
 import edu.lclark.orego.feature.HistoryObserver;
 import edu.lclark.orego.feature.NearAnotherStone;
 import edu.lclark.orego.feature.NotEyeLike;
 import edu.lclark.orego.feature.OnThirdOrFourthLine;
+import edu.lclark.orego.feature.PatternObserver;
 import edu.lclark.orego.feature.PatternSuggester;
 import edu.lclark.orego.feature.Predicate;
 
@@ -35,7 +37,8 @@ public final class MoverFactory {
 			AtariObserver atariObserver, HistoryObserver historyObserver) {
 		return new SuggesterMover(board, new EscapeSuggester(board,
 				atariObserver), new SuggesterMover(board, new PatternSuggester(
-				board, historyObserver), capturer(board, atariObserver)));
+				board, historyObserver, new PatternObserver(board)), capturer(
+				board, atariObserver)));
 	}
 
 	/**
@@ -50,6 +53,14 @@ public final class MoverFactory {
 		return new PredicateMover(board, f);
 	}
 
+	/**
+	 * Like feasible(board), but samples from the candidates maintained by
+	 * observer instead of testing vacant points.
+	 */
+	public static Mover feasible(Board board, FeasibleMovesObserver observer) {
+		return new FeasibleMover(board, observer);
+	}
+
 	/** Plays randomly except for eyelike points. */
 	public static Mover simpleRandom(Board board) {
 		return new PredicateMover(board, new NotEyeLike(board));
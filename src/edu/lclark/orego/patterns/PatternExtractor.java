@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.List;
 
 import edu.lclark.orego.core.*;
+import edu.lclark.orego.feature.PatternObserver;
 import edu.lclark.orego.sgf.SgfParser;
 import edu.lclark.orego.thirdparty.MersenneTwisterFast;
 import edu.lclark.orego.util.ShortList;
@@ -100,6 +101,9 @@ public class PatternExtractor {
 
 	private final SgfParser parser;
 
+	/** Keeps track of the pattern around each point. */
+	private final PatternObserver patterns;
+
 	private final MersenneTwisterFast random;
 
 	/** runs[i] is the number of times move i was selected. */
@@ -125,6 +129,7 @@ public class PatternExtractor {
 	public PatternExtractor(boolean verbose) {
 		board = new Board(19);
 		coords = board.getCoordinateSystem();
+		patterns = new PatternObserver(board);
 		runs = new int[PATTERN_COUNT];
 		wins = new int[PATTERN_COUNT];
 		random = new MersenneTwisterFast();
@@ -271,21 +276,12 @@ public class PatternExtractor {
 	 * not, only runs is updated.
 	 */
 	void updateTables(boolean winner, short move) {
-		short[] neighbors = coords.getNeighbors(move);
+		// Each neighbor's color is 0 (enemy), 1 (friendly), 2 (vacant), or 3
+		// (off board)
+		char pattern = patterns.getPattern(move);
 		int[] colors = new int[8];
-		for (int i = 0; i < neighbors.length; i++) {
-			// Color of neighbor
-			Color color = board.getColorAt(neighbors[i]);
-			if (color == board.getColorToPlay()) {
-				// Friendly stone
-				colors[i] = 1;
-			} else if (color == board.getColorToPlay().opposite()) {
-				// Enemy stone
-				colors[i] = 0;
-			} else {
-				// Vacant or off board
-				colors[i] = color.index();
-			}
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = (pattern >>> 2 * i) & 3;
 		}
 		updateRotations(winner, colors);
 		updateRotations(winner, reflectAcrossDiagonal(colors));
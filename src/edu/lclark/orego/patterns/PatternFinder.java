@@ -171,9 +171,9 @@ public final class PatternFinder {
 					short point = coords.at(newRow, newColumn);
 					Color color = board.getColorAt(point);
 					if (color == board.getColorToPlay()) {
-						if (board.getLiberties(point).size() == 1) {
+						if (board.getLibertyCount(point) == 1) {
 							result ^= POINT_HASHES[FRIENDLY_IN_ATARI][j];
-						} else if (board.getLiberties(point).size() == 2) {
+						} else if (board.getLibertyCount(point) == 2) {
 							result ^= POINT_HASHES[FRIENDLY_2_LIBERTIES][j];
 						} else {
 							result ^= POINT_HASHES[FRIENDLY_3_OR_MORE_LIBERTIES][j];
@@ -181,9 +181,9 @@ public final class PatternFinder {
 						stonesSeen++;
 					} else if (color == board.getColorToPlay().opposite()) {
 						int lastMoveIncrease = lastMove == point ? LAST_MOVE_INCREASE : 0;
-						if (board.getLiberties(point).size() == 1) {
+						if (board.getLibertyCount(point) == 1) {
 							result ^= POINT_HASHES[ENEMY_IN_ATARI + lastMoveIncrease][j];
-						} else if (board.getLiberties(point).size() == 2) {
+						} else if (board.getLibertyCount(point) == 2) {
 							result ^= POINT_HASHES[ENEMY_2_LIBERTIES + lastMoveIncrease][j];
 						} else {
 							result ^= POINT_HASHES[ENEMY_3_OR_MORE_LIBERTIES + lastMoveIncrease][j];
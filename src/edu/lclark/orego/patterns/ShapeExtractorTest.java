@@ -2,6 +2,9 @@ package edu.lclark.orego.patterns;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -18,8 +21,10 @@ public class ShapeExtractorTest {
 	}
 
 	@Test
-	public void test() {
-		String outputFile = "test-books/3x3PatternTest.data";
+	public void test() throws IOException {
+		final File file = File.createTempFile("orego", ".data");
+		file.deleteOnExit();
+		String outputFile = file.getPath();
 		extractor.buildPatternData("sgf-test-files/19/PatternTest.sgf", outputFile);
 		ShapeTable table = new ShapeTable(outputFile, 0.99f);
 		Board board = new Board(9);
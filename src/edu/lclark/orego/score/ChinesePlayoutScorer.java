@@ -6,13 +6,19 @@ import static edu.lclark.orego.core.StoneColor.WHITE;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.Color;
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.AreaScoreObserver;
 
 /**
- * Scores using Chinese rules (area scoring).
+ * Scores using Chinese rules (area scoring). If an AreaScoreObserver is
+ * provided, the score is read from it in constant time; otherwise, the board
+ * is scanned.
  */
 @SuppressWarnings("serial")
 public final class ChinesePlayoutScorer implements PlayoutScorer {
 
+	/** Keeps track of the area score, or null if the board is scanned. */
+	private final AreaScoreObserver areaScore;
+
 	private final Board board;
 
 	/**
@@ -22,6 +28,16 @@ public final class ChinesePlayoutScorer implements PlayoutScorer {
 	private final double komi;
 
 	public ChinesePlayoutScorer(Board board, double komi) {
+		this(board, komi, null);
+	}
+
+	/**
+	 * @param areaScore
+	 *            Observer of board that keeps track of the area score.
+	 */
+	public ChinesePlayoutScorer(Board board, double komi,
+			AreaScoreObserver areaScore) {
+		this.areaScore = areaScore;
 		this.board = board;
 		this.komi = -komi;
 	}
@@ -33,6 +49,9 @@ public final class ChinesePlayoutScorer implements PlayoutScorer {
 
 	@Override
 	public double score() {
+		if (areaScore != null) {
+			return komi + areaScore.getScore();
+		}
 		final CoordinateSystem coords = board.getCoordinateSystem();
 		double result = komi;
 		for (final short p : coords.getAllPointsOnBoard()) {
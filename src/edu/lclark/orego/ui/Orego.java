@@ -43,6 +43,13 @@ import edu.lclark.orego.util.ShortSet;
  * convenience, a boolean feature can be set to true simply as
  * <code>feature</code>.
  * <dl>
+ * <dt>areascore</dt>
+ * <dd>Toggles keeping the area score incrementally during playouts, for
+ * scoring and mercy cutoffs, instead of scanning the board at the end of each
+ * playout. Defaults to false.</dd>
+ * <dt>asyncbias</dt>
+ * <dd>Toggles computing heuristic biases on a separate thread, so that search
+ * threads do not wait for them. Defaults to false.</dd>
  * <dt>biasdelay</dt>
  * <dd>Number of runs required through a node before heuristic biases are added.
  * Because of initial wins and losses given to every move, any value less than
@@ -52,6 +59,9 @@ import edu.lclark.orego.util.ShortSet;
  * <dt>book</dt>
  * <dd>Toggles whether Orego will play moves from a fuseki book at the beginning
  * of the game. Defaults to true.</dd>
+ * <dt>bufferedupdates</dt>
+ * <dd>Number of runs each thread collects before incorporating them into the
+ * tree, all at once. 0 (the default) incorporates each run immediately.</dd>
  * <dt>grace</dt>
  * <dd>Toggles coup de grace mode. When the opposing player passes, Orego will
  * attempt to clear the board of enemy dead stones, or pass if it can win with
@@ -65,6 +75,10 @@ import edu.lclark.orego.util.ShortSet;
  * <dd>Toggles Last Good Reply with Forgetting (level 2). During playouts, Orego
  * tracks successful replies to a move or a chain of two moves, for use in
  * future playouts. Defaults to true.</dd>
+ * <dt>lightplayouts</dt>
+ * <dd>Toggles light playouts. After the first move beyond the tree, playouts
+ * continue with uniformly random, non-eye-filling moves on a stripped-down
+ * board, which is much faster but weaker. Defaults to false.</dd>
  * <dt>log-file</dt>
  * <dd>Toggles logging, which records logs in the specified folder. If not set,
  * nothing will be logged.</dd>
@@ -75,6 +89,12 @@ import edu.lclark.orego.util.ShortSet;
  * <dt>msec</dt>
  * <dd>Sets the milliseconds that Orego takes to decide a move. Not relevant
  * when using time management. Defaults to 1000 milliseconds.</dd>
+ * <dt>offheap</dt>
+ * <dd>Toggles storing search nodes outside the Java heap, which reduces
+ * garbage collection and startup time. Defaults to false.</dd>
+ * <dt>playoutsperdescent</dt>
+ * <dd>Number of playouts played from each leaf of the tree before the results
+ * are incorporated, all at once. Defaults to 1.</dd>
  * <dt>pondering</dt>
  * <dd>Toggles whether Orego thinks during the opponent's turn. Defaults to
  * false.</dd>
@@ -82,11 +102,40 @@ import edu.lclark.orego.util.ShortSet;
  * <dd>Toggles Rapid Action Value Estimation. Defaults to true.</dd>
  * <dt>shape</dt>
  * <dd>Toggles the SHAPE pattern suggester for 5x5 patterns.</dd>
+ * <dt>sparsenodes</dt>
+ * <dd>Toggles sparse search nodes, which store statistics only for the moves
+ * explored from them, so several times as many nodes fit in the same memory.
+ * Defaults to false.</dd>
+ * <dt>tablefile</dt>
+ * <dd>Keeps the transposition table (off the heap) in the specified file, so
+ * that a restarted Orego resumes from its earlier statistics. The tree for the
+ * empty board is kept from game to game.</dd>
  * <dt>threads</dt>
  * <dd>The number of threads Orego uses to think. Defaults to 2.</dd>
  * <dt>time-management</dt>
  * <dd>Set the type of time manager to be used by Orego. If not specified, Orego
  * will rely on msec. Options are uniform (the default) and exiting.</dd>
+ * <dt>topmoves</dt>
+ * <dd>Number of best moves listed at each node with more than biasdelay runs.
+ * Selection from such a node only looks at the listed moves unless a move
+ * outside the list might be better. 0 (the default) looks at every move.</dd>
+ * <dt>topmovesinterval</dt>
+ * <dd>Number of runs through a node after which its list of best moves is
+ * refreshed. Defaults to 100.</dd>
+ * <dt>virtualloss</dt>
+ * <dd>Number of virtual runs added to a move while a thread is descending
+ * through it, so that other threads tend to explore different moves. 0 (the
+ * default) turns virtual loss off.</dd>
+ * <dt>virtuallossmode</dt>
+ * <dd>Result of each virtual run: loss (the default) or tie.</dd>
+ * <dt>wideningmoves</dt>
+ * <dd>Number of moves considered from each node under progressive widening.
+ * The moves are ranked once the node's bias is applied, and more are admitted
+ * as runs accumulate. 0 (the default) considers every move.</dd>
+ * <dt>wideningruns</dt>
+ * <dd>Runs, after a node's moves are ranked, at which progressive widening
+ * admits one more move. Each further move takes 1.4 times as many runs.
+ * Defaults to 40.</dd>
  * </dl>
  */
 public final class Orego {
@@ -236,6 +285,7 @@ public final class Orego {
 				player.clear();
 				acknowledge();
 			} else if (width >= 2 && width <= 19) {
+				player.shutdown();
 				player = null; // So the old transposition table can be reclaimed
 				playerBuilder = playerBuilder.boardWidth(width);
 				player = playerBuilder.build();
@@ -339,6 +389,7 @@ public final class Orego {
 				log("Done clearing player");
 			} else {
 				log("Rebuilding player");
+				player.shutdown();
 				player = null; // So the old transposition table can be reclaimed
 				playerBuilder = playerBuilder.komi(komi);
 				player = playerBuilder.build();
@@ -374,6 +425,7 @@ public final class Orego {
 			for(int i =0; i <1000; i++){
 				player.getMcRunnable(0).performMcRun(true);
 			}
+			player.flushUpdates(player.getMcRunnable(0));
 			acknowledge();
 		} else if (command.equals("play")) {
 			// Both ggo and Goban send "black f4" instead of "play black f4".
@@ -444,12 +496,18 @@ public final class Orego {
 				right = "true";
 			}
 			// Handle properties
-			if (left.equals("biasdelay")) {
+			if (left.equals("areascore")) {
+				playerBuilder.areaScore(parseBoolean(right));
+			} else if (left.equals("asyncbias")) {
+				playerBuilder.asyncBias(parseBoolean(right));
+			} else if (left.equals("biasdelay")) {
 				playerBuilder.biasDelay(parseInt(right));
 			} else if (left.equals("boardsize")) {
 				playerBuilder.boardWidth(parseInt(right));
 			} else if (left.equals("book")) {
 				playerBuilder.openingBook(parseBoolean(right));
+			} else if (left.equals("bufferedupdates")) {
+				playerBuilder.bufferedUpdates(parseInt(right));
 			} else if (left.equals("cgtc")) {
 				cgtc = parseBoolean(right);
 			} else if (left.equals("grace")) {
@@ -460,6 +518,8 @@ public final class Orego {
 				playerBuilder.komi(parseDouble(right));
 			} else if (left.equals("lgrf2")) {
 				playerBuilder.lgrf2(parseBoolean(right));
+			} else if (left.equals("lightplayouts")) {
+				playerBuilder.lightPlayouts(parseBoolean(right));
 			} else if (left.equals("liveshape")) {
 				playerBuilder.liveShape(parseBoolean(right));
 			} else if (left.equals("log-file")) {
@@ -468,6 +528,10 @@ public final class Orego {
 				playerBuilder.memorySize(parseInt(right));
 			} else if (left.equals("msec")) {
 				playerBuilder.msecPerMove(parseInt(right));
+			} else if (left.equals("offheap")) {
+				playerBuilder.offHeap(parseBoolean(right));
+			} else if (left.equals("playoutsperdescent")) {
+				playerBuilder.playoutsPerDescent(parseInt(right));
 			} else if (left.equals("ponder")) {
 				playerBuilder.ponder(parseBoolean(right));
 			} else if (left.equals("rave")) {
@@ -480,10 +544,26 @@ public final class Orego {
 				playerBuilder.shapeMinStones(parseInt(right));
 			} else if (left.equals("shape-scaling-factor")) {
 				playerBuilder.shapeScalingFactor(parseFloat(right));
+			} else if (left.equals("sparsenodes")) {
+				playerBuilder.sparseNodes(parseBoolean(right));
+			} else if (left.equals("tablefile")) {
+				playerBuilder.tableFile(right);
 			} else if (left.equals("threads")) {
 				playerBuilder.threads(parseInt(right));
 			} else if (left.equals("time-management")) {
 				playerBuilder.timeManagement(right);
+			} else if (left.equals("topmoves")) {
+				playerBuilder.topMoves(parseInt(right));
+			} else if (left.equals("topmovesinterval")) {
+				playerBuilder.topMovesInterval(parseInt(right));
+			} else if (left.equals("virtualloss")) {
+				playerBuilder.virtualLoss(parseInt(right));
+			} else if (left.equals("virtuallossmode")) {
+				playerBuilder.virtualLossMode(right);
+			} else if (left.equals("wideningmoves")) {
+				playerBuilder.wideningMoves(parseInt(right));
+			} else if (left.equals("wideningruns")) {
+				playerBuilder.wideningRuns(parseInt(right));
 			} else {
 				throw new IllegalArgumentException(
 						"Unknown command line argument: " + left);
@@ -73,6 +73,18 @@ public final class ShortList implements Serializable {
 		System.arraycopy(that.data, 0, data, 0, size);
 	}
 
+	/**
+	 * Like copyDataFrom(that), but assumes that the first start elements of
+	 * this list are already the same as those of that, so only the rest are
+	 * copied.
+	 */
+	public void copyDataFrom(ShortList that, int start) {
+		size = that.size;
+		if (size > start) {
+			System.arraycopy(that.data, start, data, start, size - start);
+		}
+	}
+
 	/** Returns the ith element of this list. */
 	public short get(int i) {
 		assert i < size;
@@ -72,7 +72,11 @@ public final class ShortSet implements Serializable {
 	public void copyDataFrom(ShortSet that) {
 		size = that.size;
 		System.arraycopy(that.data, 0, data, 0, size);
-		System.arraycopy(that.locations, 0, locations, 0, locations.length);
+		// Only the locations of present keys matter, so this takes time
+		// proportional to the size of the set rather than its capacity
+		for (int i = 0; i < size; i++) {
+			locations[data[i]] = (short) i;
+		}
 	}
 
 	@Override
@@ -123,13 +127,32 @@ public final class ShortSet implements Serializable {
 	/**
 	 * Removes key, which is known to be present, from this set. This is faster
 	 * than remove.
+	 * 
+	 * @return The index where key was stored, for use with restore().
 	 */
-	public void removeKnownPresent(int key) {
+	public int removeKnownPresent(int key) {
 		size--;
 		final short location = locations[key];
 		final short replacement = data[size];
 		data[location] = replacement;
 		locations[replacement] = location;
+		return location;
+	}
+
+	/**
+	 * Exactly reverses the most recent removeKnownPresent(), which removed key
+	 * from index i, so that the elements are in their previous order.
+	 */
+	public void restore(short key, int i) {
+		if (i < size) {
+			// Move back the element that took key's place
+			final short replacement = data[i];
+			data[size] = replacement;
+			locations[replacement] = (short) size;
+		}
+		data[i] = key;
+		locations[key] = (short) i;
+		size++;
 	}
 
 	/** Returns the number of elements in this set. */
@@ -248,6 +248,29 @@ public class ShortSetTest {
 		assertFalse(other.equals(set));
 	}
 	
+	@Test
+	public void testRestore() {
+		set.add((short)4);
+		set.add((short)5);
+		set.add((short)6);
+		// Remove an element from the middle, then put it back
+		int i = set.removeKnownPresent(4);
+		assertEquals("{6, 5}", set.toString());
+		set.restore((short)4, i);
+		assertEquals("{4, 5, 6}", set.toString());
+		assertTrue(set.contains((short)4));
+		assertTrue(set.contains((short)6));
+		// Removing the last element should also be reversible, even if the
+		// slot it occupied has since been reused
+		i = set.removeKnownPresent(6);
+		set.add((short)7);
+		set.removeKnownPresent(7);
+		set.restore((short)6, i);
+		assertEquals("{4, 5, 6}", set.toString());
+		assertTrue(set.contains((short)6));
+		assertFalse(set.contains((short)7));
+	}
+
 	@Test(expected=UnsupportedOperationException.class)
 	public void testHashCode() {
 		set.hashCode();